@@ -2,8 +2,10 @@ package ru.practicum.later;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LaterApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,20 @@
+package ru.practicum.later.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Адаптивное ограничение запросов (later.admission.*). Отключается свойством
+// later.admission.enabled=false.
+@Configuration
+@ConditionalOnProperty(prefix = "later.admission", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+
+    @Bean
+    AdmissionControlInterceptor admissionControlInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+        return new AdmissionControlInterceptor(properties, registry);
+    }
+}
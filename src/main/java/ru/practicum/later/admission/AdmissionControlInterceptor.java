@@ -0,0 +1,117 @@
+package ru.practicum.later.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Отклоняет запрос к обработчику с @AdmissionControlled сразу, с 429 и Retry-After,
+// если в работе уже столько запросов, сколько допускает адаптивный лимит.
+// Иначе запросы копились бы в очереди Tomcat, пока не истекут у всех клиентов.
+class AdmissionControlInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+    private static final String ADMITTED = AdmissionControlInterceptor.class.getName() + ".ADMITTED";
+
+    private final AdmissionProperties properties;
+    private final MeterRegistry registry;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    AdmissionControlInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Раньше ограничений по классам нагрузки: отказ здесь ничего не стоит.
+        registry.addInterceptor(this).order(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        AdmissionControlled annotation = AnnotatedElementUtils.findMergedAnnotation(
+                ((HandlerMethod) handler).getMethod(), AdmissionControlled.class);
+        if (annotation == null) {
+            return true;
+        }
+        Limiter limiter = limiters.computeIfAbsent(annotation.value(), this::createLimiter);
+        int inflight = limiter.gradient.tryAcquire();
+        if (inflight < 0) {
+            limiter.rejected.increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(limiter.gradient.retryAfterSeconds()));
+            return false;
+        }
+        request.setAttribute(ADMITTED, new Admission(limiter.gradient, System.nanoTime(), inflight));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Admission admission = takeAdmission(request);
+        if (admission != null) {
+            admission.limiter.release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Admission admission = takeAdmission(request);
+        if (admission == null) {
+            return;
+        }
+        admission.limiter.release();
+        // Запрос, отклонённый дальше по цепочке без выполнения, о задержке ничего не говорит.
+        if (response.getStatus() != HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            admission.limiter.onSample(System.nanoTime() - admission.startNanos, admission.inflight);
+        }
+    }
+
+    private static Admission takeAdmission(HttpServletRequest request) {
+        Admission admission = (Admission) request.getAttribute(ADMITTED);
+        if (admission != null) {
+            request.removeAttribute(ADMITTED);
+        }
+        return admission;
+    }
+
+    private Limiter createLimiter(String name) {
+        GradientLimiter gradient = new GradientLimiter(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getSmoothing(), properties.getLongWindow());
+        Tags tags = Tags.of("name", name);
+        Gauge.builder("later.admission.limit", gradient, GradientLimiter::limit).tags(tags).register(registry);
+        Gauge.builder("later.admission.inflight", gradient, GradientLimiter::inflight).tags(tags).register(registry);
+        Counter rejected = Counter.builder("later.admission.rejected").tags(tags).register(registry);
+        return new Limiter(gradient, rejected);
+    }
+
+    @RequiredArgsConstructor
+    private static class Limiter {
+        private final GradientLimiter gradient;
+        private final Counter rejected;
+    }
+
+    @RequiredArgsConstructor
+    private static class Admission {
+        private final GradientLimiter limiter;
+        private final long startNanos;
+        private final int inflight;
+    }
+}
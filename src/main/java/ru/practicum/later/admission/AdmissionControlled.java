@@ -0,0 +1,14 @@
+package ru.practicum.later.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Ставит перед обработчиком контроллера адаптивный ограничитель одновременных
+// запросов. Обработчики с одинаковым именем делят один ограничитель.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+    String value();
+}
@@ -0,0 +1,25 @@
+package ru.practicum.later.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties("later.admission")
+class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 200;
+
+    // Доля нового значения лимита при каждом пересчёте.
+    private double smoothing = 0.2;
+
+    // Число ответов, по которым считается долгое среднее время ответа.
+    private int longWindow = 600;
+}
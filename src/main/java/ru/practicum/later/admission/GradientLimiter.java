@@ -0,0 +1,92 @@
+package ru.practicum.later.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Лимит одновременных запросов, подстраивающийся под измеренное время ответа.
+// Долгое среднее время ответа сравнивается с текущим: пока они близки, лимит
+// растёт на корень из себя, а когда запросы начинают стоять в очереди и текущее
+// время растёт, лимит уменьшается пропорционально (но не больше чем вдвое за шаг).
+// Изменения сглаживаются, чтобы одиночные медленные запросы не обрушивали лимит.
+class GradientLimiter {
+    private static final int SHORT_WINDOW = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final int longWindow;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile double limit;
+    private volatile double shortRttNanos;
+
+    // Изменяются только в onSample под блокировкой.
+    private double longRttNanos;
+    private long samples;
+
+    GradientLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, int longWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.longWindow = longWindow;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // Возвращает число запросов в работе вместе с этим, либо -1, если лимит исчерпан.
+    int tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                return -1;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    void release() {
+        inflight.decrementAndGet();
+    }
+
+    synchronized void onSample(long rttNanos, int inflightAtStart) {
+        samples++;
+        if (samples == 1) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / Math.min(samples, longWindow);
+            shortRttNanos += (rttNanos - shortRttNanos) / Math.min(samples, SHORT_WINDOW);
+        }
+        // Нагрузка спала и время ответа вернулось к норме: долгое среднее догоняет его
+        // быстрее, иначе лимит ещё долго рос бы без оглядки на задержку.
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        // Запросов было заметно меньше лимита - время ответа ничего не говорит о том,
+        // выдержит ли сервис больше.
+        if (inflightAtStart < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / shortRttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    // Через сколько секунд имеет смысл повторить отклонённый запрос: примерно
+    // за текущее время ответа место в лимите освободится.
+    long retryAfterSeconds() {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds((long) Math.ceil(shortRttNanos));
+        return Math.max(1, seconds + 1);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.practicum.later.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Ограничивает число одновременных запросов одного класса нагрузки. Запрос ждёт
+// свободного места не дольше maxWaitMs, иначе отклоняется.
+class Bulkhead {
+    private final int limit;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    Bulkhead(WorkloadClass workload, int limit, long maxWaitMs, MeterRegistry registry) {
+        this.limit = limit;
+        this.maxWaitMs = maxWaitMs;
+        // Честная очередь: при насыщении запросы получают место в порядке прихода.
+        this.permits = new Semaphore(limit, true);
+
+        Tags tags = Tags.of("workload", workload.tag());
+        Gauge.builder("later.bulkhead.limit", () -> limit).tags(tags).register(registry);
+        Gauge.builder("later.bulkhead.active", permits, p -> limit - p.availablePermits()).tags(tags).register(registry);
+        Gauge.builder("later.bulkhead.waiting", permits, Semaphore::getQueueLength).tags(tags).register(registry);
+        this.waitTimer = Timer.builder("later.bulkhead.wait").tags(tags).register(registry);
+        this.rejected = Counter.builder("later.bulkhead.rejected").tags(tags).register(registry);
+    }
+
+    boolean tryAcquire() {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.increment();
+        }
+        return acquired;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    int limit() {
+        return limit;
+    }
+}
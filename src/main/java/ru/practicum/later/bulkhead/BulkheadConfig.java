@@ -0,0 +1,44 @@
+package ru.practicum.later.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Ограничения одновременных запросов по классам нагрузки (later.bulkhead.*).
+// Отключаются свойством later.bulkhead.enabled=false.
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "later.bulkhead", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    @Bean
+    BulkheadInterceptor bulkheadInterceptor(BulkheadProperties properties,
+                                            MeterRegistry registry,
+                                            ObjectProvider<HikariDataSource> pools) {
+        Map<WorkloadClass, Bulkhead> bulkheads = new EnumMap<>(WorkloadClass.class);
+        for (WorkloadClass workload : WorkloadClass.values()) {
+            BulkheadProperties.Limit limit = properties.of(workload);
+            if (limit.getMaxConcurrent() <= 0) {
+                throw new IllegalStateException("later.bulkhead." + workload.tag()
+                        + ".max-concurrent must be positive: " + limit.getMaxConcurrent());
+            }
+            bulkheads.put(workload, new Bulkhead(workload, limit.getMaxConcurrent(), limit.getMaxWaitMs(), registry));
+        }
+
+        int ingest = bulkheads.get(WorkloadClass.INGEST).limit();
+        pools.orderedStream()
+                .filter(pool -> pool.getMaximumPoolSize() <= ingest)
+                .forEach(pool -> log.warn("Pool {} has {} connections, ingest may take all of them (limit {})",
+                        pool.getPoolName(), pool.getMaximumPoolSize(), ingest));
+        return new BulkheadInterceptor(bulkheads);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.later.bulkhead;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+// Пропускает запрос к обработчику, только если в его классе нагрузки есть место,
+// иначе отвечает 503 с Retry-After. Место освобождается по завершении обработки.
+class BulkheadInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+    private static final String ACQUIRED = BulkheadInterceptor.class.getName() + ".ACQUIRED";
+
+    private final Map<WorkloadClass, Bulkhead> bulkheads;
+
+    BulkheadInterceptor(Map<WorkloadClass, Bulkhead> bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Повторный проход после асинхронной обработки только дописывает ответ.
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        WorkloadClass workload = workloadOf((HandlerMethod) handler);
+        if (workload == null) {
+            return true;
+        }
+        Bulkhead bulkhead = bulkheads.get(workload);
+        if (!bulkhead.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+        request.setAttribute(ACQUIRED, bulkhead);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        release(request);
+    }
+
+    private static void release(HttpServletRequest request) {
+        Bulkhead bulkhead = (Bulkhead) request.getAttribute(ACQUIRED);
+        if (bulkhead != null) {
+            request.removeAttribute(ACQUIRED);
+            bulkhead.release();
+        }
+    }
+
+    private static WorkloadClass workloadOf(HandlerMethod handler) {
+        Bulkheaded annotation = AnnotatedElementUtils.findMergedAnnotation(handler.getMethod(), Bulkheaded.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(handler.getBeanType(), Bulkheaded.class);
+        }
+        return annotation == null ? null : annotation.value();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.later.bulkhead;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties("later.bulkhead")
+class BulkheadProperties {
+
+    private boolean enabled = true;
+
+    // Лимит добавления вещей должен быть заметно меньше размера пула соединений:
+    // тогда медленные загрузки страниц не займут все соединения и чтение не встанет.
+    private Limit ingest = new Limit(4, 100);
+
+    private Limit read = new Limit(32, 1000);
+
+    private Limit notes = new Limit(8, 500);
+
+    Limit of(WorkloadClass workload) {
+        switch (workload) {
+            case INGEST:
+                return ingest;
+            case READ:
+                return read;
+            case NOTES:
+                return notes;
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + workload);
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Limit {
+        private int maxConcurrent;
+        private long maxWaitMs;
+    }
+}
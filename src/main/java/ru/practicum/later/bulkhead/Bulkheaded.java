@@ -0,0 +1,14 @@
+package ru.practicum.later.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Относит обработчик контроллера к классу нагрузки. Аннотация на методе
+// важнее аннотации на классе; обработчики без неё не ограничиваются.
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkheaded {
+    WorkloadClass value();
+}
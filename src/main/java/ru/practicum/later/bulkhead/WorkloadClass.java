@@ -0,0 +1,15 @@
+package ru.practicum.later.bulkhead;
+
+// Классы нагрузки, у каждого из которых свой лимит одновременных запросов.
+public enum WorkloadClass {
+    // Добавление вещей: транзакция держит соединение, пока загружается страница.
+    INGEST,
+    // Короткие чтения и правки списка вещей.
+    READ,
+    // Заметки и поиск по ним.
+    NOTES;
+
+    String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.later.common;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends LaterApplicationException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.later.common;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+// Форматирует моменты времени с кэшированием готовых строк по номеру секунды.
+// Подходит только для шаблонов без долей секунды: все моменты одной секунды
+// должны давать одну и ту же строку.
+// Кэш прямого отображения: каждая секунда попадает в свою ячейку, при коллизии
+// строка просто вычисляется заново. Записи неизменяемые, поэтому гонки между
+// потоками приводят лишь к лишнему форматированию, но не к неверному результату.
+public final class CachingInstantFormatter {
+    private static final int DEFAULT_SLOTS = 4096;
+
+    private final DateTimeFormatter formatter;
+    private final Entry[] entries;
+    private final int mask;
+
+    public CachingInstantFormatter(DateTimeFormatter formatter) {
+        this(formatter, DEFAULT_SLOTS);
+    }
+
+    public CachingInstantFormatter(DateTimeFormatter formatter, int slots) {
+        if (slots <= 0 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("The number of slots must be a power of two: " + slots);
+        }
+        this.formatter = formatter;
+        this.entries = new Entry[slots];
+        this.mask = slots - 1;
+    }
+
+    public String format(Instant instant) {
+        long second = instant.getEpochSecond();
+        int slot = (int) (second & mask);
+        Entry entry = entries[slot];
+        if (entry != null && entry.second == second) {
+            return entry.text;
+        }
+        String text = formatter.format(instant);
+        entries[slot] = new Entry(second, text);
+        return text;
+    }
+
+    private static final class Entry {
+        private final long second;
+        private final String text;
+
+        private Entry(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
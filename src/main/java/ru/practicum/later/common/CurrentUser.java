@@ -0,0 +1,57 @@
+package ru.practicum.later.common;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+// Пользователь, от имени которого выполняется текущая работа: по заголовку
+// X-Later-User-Id запроса или явно заданный для потоков вне запроса
+// (например, для асинхронной записи тела ответа).
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CurrentUser {
+    public static final String HEADER = "X-Later-User-Id";
+
+    private static final ThreadLocal<Long> EXPLICIT = new ThreadLocal<>();
+
+    // Вне запроса и без явно заданного пользователя - null.
+    public static Long id() {
+        Long explicit = EXPLICIT.get();
+        if (explicit != null) {
+            return explicit;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        String header = ((ServletRequestAttributes) attributes).getRequest().getHeader(HEADER);
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static <E extends Exception> void runAs(long userId, Task<E> task) throws E {
+        Long previous = EXPLICIT.get();
+        EXPLICIT.set(userId);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                EXPLICIT.remove();
+            } else {
+                EXPLICIT.set(previous);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task<E extends Exception> {
+        void run() throws E;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.later.common;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+// Способ записи моментов времени в ответах.
+// По умолчанию - ISO-8601 в UTC с точностью до секунды ("2023-11-14T22:13:20Z"),
+// машинные клиенты могут запросить миллисекунды от начала эпохи заголовком
+// X-Later-Timestamp-Format: epoch-millis.
+public enum TimestampFormat {
+    ISO_8601,
+    EPOCH_MILLIS;
+
+    public static final String HEADER = "X-Later-Timestamp-Format";
+
+    // Неизвестные значения не считаются ошибкой - отдаём формат по умолчанию.
+    public static TimestampFormat of(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("epoch-millis")) {
+            return EPOCH_MILLIS;
+        }
+        return ISO_8601;
+    }
+
+    // Формат, запрошенный текущим HTTP-запросом; вне запроса - ISO-8601.
+    public static TimestampFormat current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return of(((ServletRequestAttributes) attributes).getRequest().getHeader(HEADER));
+        }
+        return ISO_8601;
+    }
+}
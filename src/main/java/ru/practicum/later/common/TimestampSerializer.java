@@ -0,0 +1,26 @@
+package ru.practicum.later.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+// Сериализатор полей-моментов в DTO. Формат можно зафиксировать атрибутом
+// ObjectWriter с ключом TimestampFormat.class - так делают, например, при записи
+// событий в outbox, которые не должны зависеть от заголовков запроса.
+// Иначе используется формат, запрошенный текущим HTTP-запросом.
+public class TimestampSerializer extends StdSerializer<Instant> {
+
+    public TimestampSerializer() {
+        super(Instant.class);
+    }
+
+    @Override
+    public void serialize(Instant value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        Object fixed = provider.getAttribute(TimestampFormat.class);
+        TimestampFormat format = fixed instanceof TimestampFormat ? (TimestampFormat) fixed : TimestampFormat.current();
+        Timestamps.write(generator, value, format);
+    }
+}
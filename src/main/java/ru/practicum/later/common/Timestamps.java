@@ -0,0 +1,32 @@
+package ru.practicum.later.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// Единая точка записи моментов времени во всех DTO и JSON-ответах.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Timestamps {
+    private static final CachingInstantFormatter isoFormatter = new CachingInstantFormatter(DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ssX")
+            .withZone(ZoneOffset.UTC));
+
+    public static String toIso(Instant instant) {
+        return isoFormatter.format(instant);
+    }
+
+    public static void write(JsonGenerator generator, Instant instant, TimestampFormat format) throws IOException {
+        if (instant == null) {
+            generator.writeNull();
+        } else if (format == TimestampFormat.EPOCH_MILLIS) {
+            generator.writeNumber(instant.toEpochMilli());
+        } else {
+            generator.writeString(toIso(instant));
+        }
+    }
+}
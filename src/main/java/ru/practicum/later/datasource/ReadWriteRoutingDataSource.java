@@ -0,0 +1,60 @@
+package ru.practicum.later.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.later.common.CurrentUser;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Направляет соединения read-only транзакций на реплику, остальные - на основной сервер.
+// Реплика не используется, если она отстала больше допустимого или если текущий
+// пользователь недавно что-то записал и должен увидеть собственные изменения.
+// Работает только за LazyConnectionDataSourceProxy: соединение должно браться
+// после того, как менеджер транзакций выставит признак read-only.
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadYourWritesTracker writesTracker;
+
+    ReadWriteRoutingDataSource(DataSource primary,
+                               DataSource replica,
+                               ReplicaLagMonitor lagMonitor,
+                               ReadYourWritesTracker writesTracker) {
+        this.lagMonitor = lagMonitor;
+        this.writesTracker = writesTracker;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Route.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriteOnCommit();
+            return Route.PRIMARY;
+        }
+        Long userId = CurrentUser.id();
+        if (userId != null && writesTracker.isSticky(userId)) {
+            return Route.PRIMARY;
+        }
+        return lagMonitor.isReplicaUsable() ? Route.REPLICA : Route.PRIMARY;
+    }
+
+    private void rememberWriteOnCommit() {
+        Long userId = CurrentUser.id();
+        if (userId == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                writesTracker.recordWrite(userId);
+            }
+        });
+    }
+
+    enum Route { PRIMARY, REPLICA }
+}
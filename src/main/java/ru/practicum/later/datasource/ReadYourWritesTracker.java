@@ -0,0 +1,36 @@
+package ru.practicum.later.datasource;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.practicum.later.common.CurrentUser;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Помнит время последней записи каждого пользователя. В течение окна после
+// записи его чтения идут на основной сервер, чтобы он не увидел на реплике
+// состояние до собственного изменения.
+class ReadYourWritesTracker {
+    static final String USER_ID_HEADER = CurrentUser.HEADER;
+
+    private final Map<Long, Long> lastWriteMillis = new ConcurrentHashMap<>();
+    private final long windowMs;
+
+    ReadYourWritesTracker(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    void recordWrite(long userId) {
+        lastWriteMillis.put(userId, System.currentTimeMillis());
+    }
+
+    boolean isSticky(long userId) {
+        Long writtenAt = lastWriteMillis.get(userId);
+        return writtenAt != null && System.currentTimeMillis() - writtenAt < windowMs;
+    }
+
+    @Scheduled(fixedDelayString = "${later.datasource.replica.sticky-window-ms:5000}")
+    void purgeExpired() {
+        long threshold = System.currentTimeMillis() - windowMs;
+        lastWriteMillis.values().removeIf(writtenAt -> writtenAt < threshold);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.later.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+// Периодически измеряет отставание реплики. Пока отставание выше порога
+// или реплика недоступна, чтение идёт с основного сервера.
+@Slf4j
+class ReplicaLagMonitor {
+    // Если реплика получила и применила весь WAL, отставание нулевое, даже когда
+    // последняя транзакция была давно: иначе простаивающая база выглядела бы отставшей.
+    private static final String LAG_QUERY = "select case " +
+            "when not pg_is_in_recovery() then 0 " +
+            "when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+            "else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0) end";
+
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+
+    private volatile boolean replicaUsable;
+
+    ReplicaLagMonitor(DataSource replica, long maxLagMs) {
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+    }
+
+    boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    @Scheduled(fixedDelayString = "${later.datasource.replica.lag-check-delay-ms:1000}")
+    void check() {
+        boolean usable;
+        try {
+            Double lagMs = replica.queryForObject(LAG_QUERY, Double.class);
+            usable = lagMs != null && lagMs <= maxLagMs;
+            if (!usable && replicaUsable) {
+                log.warn("Replica lag {} ms exceeds {} ms, reading from the primary", lagMs, maxLagMs);
+            }
+        } catch (RuntimeException e) {
+            usable = false;
+            if (replicaUsable) {
+                log.warn("Replica is unavailable, reading from the primary", e);
+            }
+        }
+        replicaUsable = usable;
+    }
+}
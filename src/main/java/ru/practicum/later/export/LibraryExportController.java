@@ -0,0 +1,29 @@
+package ru.practicum.later.export;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.later.common.CurrentUser;
+import ru.practicum.later.common.TimestampFormat;
+
+@RestController
+@RequiredArgsConstructor
+public class LibraryExportController {
+    private final LibraryExporter libraryExporter;
+
+    @GetMapping(value = "/items/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestHeader("X-Later-User-Id") long userId) {
+        // Тело пишется в другом потоке, без заголовков запроса, поэтому пользователь
+        // (по нему выбирается шард с его данными) и формат времени задаются явно.
+        TimestampFormat timestampFormat = TimestampFormat.current();
+        StreamingResponseBody body = out -> CurrentUser.runAs(userId,
+                () -> libraryExporter.export(userId, timestampFormat, out));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.later.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.common.Timestamps;
+import ru.practicum.later.item.ItemRepository;
+import ru.practicum.later.item.model.Item;
+import ru.practicum.later.item.model.ItemTag;
+import ru.practicum.later.note.ItemNote;
+import ru.practicum.later.note.ItemNoteRepository;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Выгружает вещи, теги и заметки пользователя в формате NDJSON:
+// по одному JSON-объекту на строку, поле type определяет вид записи.
+// Строки читаются курсором и сразу пишутся в ответ, поэтому расход памяти
+// не зависит от размера библиотеки.
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class LibraryExporter {
+    private final ItemRepository itemRepository;
+    private final ItemNoteRepository itemNoteRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public void export(long userId, TimestampFormat timestampFormat, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+
+            try (Stream<Item> items = itemRepository.streamByUserId(userId)) {
+                for (Iterator<Item> it = items.iterator(); it.hasNext(); ) {
+                    Item item = it.next();
+                    writeItem(generator, item, timestampFormat);
+                    // Отсоединяем сущность, чтобы контекст персистентности не рос с каждой строкой.
+                    // Страница загружена вместе с вещью, а отсоединение на неё не распространяется.
+                    entityManager.detach(item.getPage());
+                    entityManager.detach(item);
+                }
+            }
+
+            try (Stream<ItemTag> tags = itemRepository.streamTagsByUserId(userId)) {
+                for (Iterator<ItemTag> it = tags.iterator(); it.hasNext(); ) {
+                    writeTag(generator, it.next());
+                }
+            }
+
+            try (Stream<ItemNote> notes = itemNoteRepository.streamByItemUserId(userId)) {
+                for (Iterator<ItemNote> it = notes.iterator(); it.hasNext(); ) {
+                    ItemNote note = it.next();
+                    writeNote(generator, note, timestampFormat);
+                    entityManager.detach(note.getItem());
+                    entityManager.detach(note);
+                }
+            }
+        }
+    }
+
+    private void writeItem(JsonGenerator generator, Item item, TimestampFormat timestampFormat) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "item");
+        generator.writeNumberField("id", item.getId());
+        generator.writeStringField("normalUrl", item.getUrl());
+        generator.writeStringField("resolvedUrl", item.getResolvedUrl());
+        generator.writeStringField("mimeType", item.getMimeType());
+        generator.writeStringField("title", item.getTitle());
+        generator.writeBooleanField("hasImage", item.isHasImage());
+        generator.writeBooleanField("hasVideo", item.isHasVideo());
+        generator.writeBooleanField("unread", item.isUnread());
+        generator.writeFieldName("dateResolved");
+        Timestamps.write(generator, item.getDateResolved(), timestampFormat);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeTag(JsonGenerator generator, ItemTag tag) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "tag");
+        generator.writeNumberField("itemId", tag.getItemId());
+        generator.writeStringField("name", tag.getName());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeNote(JsonGenerator generator, ItemNote note, TimestampFormat timestampFormat) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "note");
+        generator.writeNumberField("id", note.getId());
+        generator.writeNumberField("itemId", note.getItem().getId());
+        generator.writeStringField("text", note.getText());
+        generator.writeFieldName("dateOfNote");
+        Timestamps.write(generator, note.getDateOfNote(), timestampFormat);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
@@ -0,0 +1,54 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.sharding.Shards;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// Потоки фоновой загрузки страниц (UrlMetadataRefresher, ResolveRetryWorker). Загрузка
+// ждёт сайтов минутами, поэтому не занимает ни общий поток @Scheduled (на нём
+// OutboxRelay и ReplicaLagMonitor), ни пул обхода шардов для запросов пользователей.
+// Планировщик и пул не объявлены бинами: единственный TaskScheduler в контексте
+// Spring взял бы и для всех @Scheduled.
+@Component
+class BackgroundFetchExecutor implements DisposableBean {
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private final ExecutorService shardExecutor;
+
+    BackgroundFetchExecutor(@Value("${background-fetch.shard-threads:4}") int shardThreads) {
+        // По потоку на каждую периодическую задачу, чтобы долгий проход одной не сдвигал другую.
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("background-fetch-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        this.shardExecutor = Executors.newFixedThreadPool(shardThreads, task -> {
+            Thread thread = new Thread(task, "background-fetch-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Как @Scheduled(fixedDelay, initialDelay = fixedDelay): исключение прохода
+    // записывается в лог, следующий проход выполняется в срок.
+    void scheduleWithFixedDelay(Runnable task, long delayMs) {
+        scheduler.scheduleWithFixedDelay(task, Instant.now().plusMillis(delayMs), Duration.ofMillis(delayMs));
+    }
+
+    <T> List<T> onEachShard(Shards shards, Supplier<T> task) {
+        return shards.onEachShard(task, shardExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+        shardExecutor.shutdownNow();
+    }
+}
@@ -1,24 +1,58 @@
 package ru.practicum.later.item;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.type.StandardBasicTypes;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.persistence.EntityManager;
 import java.net.http.HttpClient;
 import java.time.Duration;
 
 @Configuration
+@EnableConfigurationProperties(ResolutionProperties.class)
 public class Config {
 
     @Value("${url-metadata-retriever.read_timeout-sec:120}")
     private int readTimeout;
 
+    @Value("${url-metadata-retriever.metrics.max-hosts:100}")
+    private int maxHostTags;
+
+    // HTTP/2 выбирается явно: с сайтом, который его поддерживает, все запросы
+    // (HEAD, затем GET) идут по одному соединению без повторного рукопожатия.
+    // Сайты без HTTP/2 обслуживаются по HTTP/1.1. Перенаправления выполняет
+    // MeteredHttpClient, чтобы проверить хост каждого шага.
     @Bean
-    public HttpClient httpClient() {
-        return HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.ALWAYS)
+    public HttpClient httpClient(DnsCache dnsCache, MeterRegistry registry) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
                 .connectTimeout(Duration.ofSeconds(readTimeout))
                 .build();
+        return new MeteredHttpClient(client, HttpClient.Redirect.ALWAYS, dnsCache, registry, maxHostTags);
+    }
+
+    @Bean
+    public JPAQueryFactory jpaQueryFactory(EntityManager entityManager) {
+        return new JPAQueryFactory(entityManager);
+    }
+
+    // HQL-функция collate_c(строка): сравнение по байтам UTF-8 (сопоставление "C").
+    // Слияние вещей с разных шардов сравнивает строки в Java, и порядок базы должен
+    // с ним совпадать независимо от сопоставления, с которым она создана.
+    @Bean
+    public HibernatePropertiesCustomizer collateFunctionCustomizer() {
+        MetadataBuilderContributor contributor = builder -> builder.applySqlFunction(ItemServiceImpl.COLLATE_C,
+                new SQLFunctionTemplate(StandardBasicTypes.STRING, "?1 collate \"C\""));
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.METADATA_BUILDER_CONTRIBUTOR, contributor);
     }
 
 }
@@ -0,0 +1,116 @@
+package ru.practicum.later.item;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Кэш DNS для загрузки страниц со своими сроками жизни ответов, в том числе
+// отрицательных: адрес с несуществующим хостом повторно не ждёт таймаута DNS,
+// а сразу получает ошибку. HttpClient в Java 11 не позволяет подменить резолвер,
+// поэтому кэш проверяет хост перед запросом (и перед каждым перенаправлением,
+// см. MeteredHttpClient), а адрес для соединения клиент берёт из кэша JVM, который
+// заполнил тот же поиск. Сроки кэша JVM (networkaddress.cache.*) общие для всего
+// процесса, в том числе для соединений с БД при переключении сервера, поэтому здесь
+// они не меняются: промах этого кэша может обслужить и кэш JVM. Время поисков видно
+// в метриках later.retriever.dns.*.
+@Component
+class DnsCache {
+    private final Resolver resolver;
+    private final LongSupplier nanoClock;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Timer foundLookups;
+    private final Timer notFoundLookups;
+    private final MeterRegistry registry;
+
+    @Autowired
+    DnsCache(@Value("${url-metadata-retriever.dns.ttl-sec:300}") long ttlSec,
+             @Value("${url-metadata-retriever.dns.negative-ttl-sec:60}") long negativeTtlSec,
+             @Value("${url-metadata-retriever.dns.max-entries:10000}") int maxEntries,
+             MeterRegistry registry) {
+        this(InetAddress::getAllByName, System::nanoTime, ttlSec, negativeTtlSec, maxEntries, registry);
+    }
+
+    DnsCache(Resolver resolver, LongSupplier nanoClock, long ttlSec, long negativeTtlSec, int maxEntries,
+             MeterRegistry registry) {
+        this.resolver = resolver;
+        this.nanoClock = nanoClock;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSec);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSec);
+        this.maxEntries = maxEntries;
+        this.registry = registry;
+        this.foundLookups = Timer.builder("later.retriever.dns.lookup").tag("result", "found").register(registry);
+        this.notFoundLookups = Timer.builder("later.retriever.dns.lookup").tag("result", "not_found").register(registry);
+    }
+
+    InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = nanoClock.getAsLong();
+        Entry cached = entries.get(host);
+        if (cached != null && cached.expiresAt - now > 0) {
+            count(cached.addresses == null ? "negative_hit" : "hit");
+            return cached.get(host);
+        }
+        count("miss");
+
+        long start = nanoClock.getAsLong();
+        Entry resolved;
+        try {
+            resolved = new Entry(resolver.lookup(host), start + ttlNanos);
+            foundLookups.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        } catch (UnknownHostException e) {
+            resolved = new Entry(null, start + negativeTtlNanos);
+            notFoundLookups.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        }
+        if (entries.size() >= maxEntries) {
+            evictExpired(now);
+        }
+        entries.put(host, resolved);
+        return resolved.get(host);
+    }
+
+    // Если после удаления устаревших записей места всё равно нет, кэш сбрасывается
+    // целиком: это дешевле учёта порядка обращений на каждом поиске.
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt - now <= 0);
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+
+    private void count(String cache) {
+        registry.counter("later.retriever.dns.requests", "cache", cache).increment();
+    }
+
+    @FunctionalInterface
+    interface Resolver {
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    private static class Entry {
+        private final InetAddress[] addresses;
+        private final long expiresAt;
+
+        Entry(InetAddress[] addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+
+        InetAddress[] get(String host) throws UnknownHostException {
+            if (addresses == null) {
+                throw new UnknownHostException(host);
+            }
+            return addresses;
+        }
+    }
+}
@@ -0,0 +1,651 @@
+package ru.practicum.later.item;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Заголовок страницы и наличие картинок и видео прямо по байтам ответа, без построения
+// DOM. Разбор повторяет правила токенизатора Jsoup для того, что влияет на эти три факта:
+// комментарии, содержимое script/style/textarea, кавычки в атрибутах, ссылки на символы
+// в заголовке. Заголовок берётся только из head, как в Document.title(). Просмотр
+// останавливается, как только все три факта известны. Всё, что разбирается неоднозначно
+// (незакрытый комментарий или тег, заголовок вне head, незнакомая ссылка на символ,
+// кодировка, несовместимая с ASCII), отдаётся Jsoup: sniff возвращает null.
+final class HtmlSniffer {
+    private static final Malformed MALFORMED = new Malformed();
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    // Jsoup ищет meta с кодировкой только в первых 5 КБ документа.
+    private static final int META_SCAN_LIMIT = 5 * 1024 - 1;
+
+    private static final byte[] IMG = ascii("img");
+    private static final byte[] VIDEO = ascii("video");
+    private static final byte[] IMAGE = ascii("image");
+    private static final byte[] TITLE = ascii("title");
+    private static final byte[] META = ascii("meta");
+    private static final byte[] SCRIPT = ascii("script");
+    private static final byte[] PLAINTEXT = ascii("plaintext");
+    private static final byte[] FRAMESET = ascii("frameset");
+    private static final byte[] NOSCRIPT = ascii("noscript");
+    private static final byte[] SELECT = ascii("select");
+    private static final byte[] TEMPLATE = ascii("template");
+    private static final byte[] BODY = ascii("body");
+    private static final byte[] HTML = ascii("html");
+    private static final byte[] BR = ascii("br");
+    private static final byte[] COMMENT_OPEN = ascii("<!--");
+    private static final byte[] CDATA_OPEN = ascii("<![CDATA[");
+    private static final byte[] CHARSET = ascii("charset");
+    private static final byte[] HTTP_EQUIV = ascii("http-equiv");
+    private static final byte[] CONTENT = ascii("content");
+    private static final byte[] CONTENT_TYPE = ascii("content-type");
+    // Элементы, содержимое которых - текст до закрывающего тега, а не разметка.
+    private static final byte[][] RAW_TEXT = {SCRIPT, ascii("style"), TITLE, ascii("textarea"), ascii("xmp"),
+            ascii("iframe"), ascii("noembed"), ascii("noframes")};
+    // Элементы, которые не закрывают head (раздел "in head" спецификации HTML).
+    private static final byte[][] HEAD_CONTENT = {HTML, ascii("head"), ascii("base"), ascii("basefont"),
+            ascii("bgsound"), ascii("link"), META, TITLE, NOSCRIPT, ascii("noframes"), ascii("style"),
+            SCRIPT, TEMPLATE};
+    // Именованные ссылки, которые встречаются в заголовках; с любой другой заголовок разбирает Jsoup.
+    private static final Map<String, Character> ENTITIES = Map.ofEntries(
+            Map.entry("amp", '&'), Map.entry("lt", '<'), Map.entry("gt", '>'), Map.entry("quot", '"'),
+            Map.entry("apos", '\''), Map.entry("nbsp", '\u00A0'),
+            Map.entry("laquo", '«'), Map.entry("raquo", '»'), Map.entry("ldquo", '“'),
+            Map.entry("rdquo", '”'), Map.entry("lsquo", '‘'), Map.entry("rsquo", '’'),
+            Map.entry("bdquo", '„'), Map.entry("mdash", '—'), Map.entry("ndash", '–'),
+            Map.entry("hellip", '…'), Map.entry("middot", '·'), Map.entry("bull", '•'),
+            Map.entry("copy", '©'), Map.entry("reg", '®'), Map.entry("trade", '™'));
+
+    private final byte[] html;
+    private final int length;
+    private int pos;
+    private boolean headEnded;
+    private int titleStart = -1;
+    private int titleEnd = -1;
+    private boolean hasImage;
+    private boolean hasVideo;
+    // Кодировка из первого meta, который её указывает; null, пока такого не было.
+    private String metaCharset;
+    // Атрибуты текущего meta.
+    private int charsetStart;
+    private int charsetEnd;
+    private int contentStart;
+    private int contentEnd;
+    private boolean contentType;
+
+    private HtmlSniffer(byte[] html) {
+        this.html = html;
+        this.length = html.length;
+    }
+
+    // charset - кодировка из Content-Type ответа или null.
+    static Result parse(byte[] html, Charset charset) {
+        Result sniffed = sniff(html, charset);
+        return sniffed != null ? sniffed : parseWithJsoup(html, charset);
+    }
+
+    static Result sniff(byte[] html, Charset charset) {
+        return new HtmlSniffer(html).scan(charset);
+    }
+
+    // Без кодировки в заголовках Jsoup определяет её сам: по BOM, meta или <?xml?>.
+    static Result parseWithJsoup(byte[] html, Charset charset) {
+        try {
+            Document doc = Jsoup.parse(new ByteArrayInputStream(html), charset == null ? null : charset.name(), "");
+            return new Result(doc.title(),
+                    !doc.getElementsByTag("img").isEmpty(),
+                    !doc.getElementsByTag("video").isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Result scan(Charset headerCharset) {
+        Charset charset = headerCharset;
+        if (startsWith(0, UTF8_BOM)) {
+            charset = StandardCharsets.UTF_8;
+            pos = 3;
+        } else if (length >= 2 && ((html[0] == (byte) 0xFE && html[1] == (byte) 0xFF)
+                || (html[0] == (byte) 0xFF && html[1] == (byte) 0xFE))) {
+            return null;
+        }
+        if (charset != null && !isAsciiCompatible(charset)) {
+            return null;
+        }
+
+        try {
+            while (pos < length && !isDone(charset)) {
+                if (html[pos] == '<') {
+                    markup(charset);
+                } else if (headEnded) {
+                    skipText();
+                } else {
+                    // Ссылка на символ до body может оказаться пробелом, который head не закрывает.
+                    if (html[pos] == '&') {
+                        throw MALFORMED;
+                    }
+                    if (!isWhitespace(html[pos])) {
+                        headEnded = true;
+                    }
+                    pos++;
+                }
+            }
+            if (charset == null) {
+                charset = StandardCharsets.UTF_8;
+                if (metaCharset != null) {
+                    charset = supportedCharset(metaCharset);
+                    if (charset == null || !isAsciiCompatible(charset)) {
+                        return null;
+                    }
+                }
+            }
+            return new Result(titleStart < 0 ? "" : title(charset), hasImage, hasVideo);
+        } catch (Malformed e) {
+            return null;
+        }
+    }
+
+    // Просмотр можно закончить, когда найдены картинка, видео и заголовок, а кодировка
+    // заголовка уже не изменится: известна или заголовок записан одним ASCII.
+    private boolean isDone(Charset charset) {
+        return hasImage && hasVideo && (titleStart >= 0 || headEnded)
+                && (charset != null || metaCharset != null || pos > META_SCAN_LIMIT
+                || titleStart < 0 || isAscii(titleStart, titleEnd));
+    }
+
+    private void skipText() {
+        while (pos < length && html[pos] != '<') {
+            pos++;
+        }
+    }
+
+    private void markup(Charset charset) {
+        int p = pos + 1;
+        if (p >= length) {
+            pos = length;
+            return;
+        }
+        byte c = html[p];
+        if (c == '!') {
+            declaration();
+        } else if (c == '?') {
+            // <?xml encoding=...?> может задавать кодировку для Jsoup.
+            if (charset == null && metaCharset == null) {
+                throw MALFORMED;
+            }
+            pos = after('>', p);
+        } else if (c == '/') {
+            endTag(p + 1);
+        } else if (isAsciiLetter(c)) {
+            startTag(p);
+        } else {
+            // Одиночный '<' - обычный текст.
+            headEnded = true;
+            pos = p;
+        }
+    }
+
+    private void declaration() {
+        if (startsWith(pos, COMMENT_OPEN)) {
+            int p = pos + COMMENT_OPEN.length;
+            // <!--> и <!---> - пустые комментарии.
+            if (p < length && html[p] == '>') {
+                pos = p + 1;
+                return;
+            }
+            if (p + 1 < length && html[p] == '-' && html[p + 1] == '>') {
+                pos = p + 2;
+                return;
+            }
+            for (; p + 2 < length; p++) {
+                if (html[p] == '-' && html[p + 1] == '-') {
+                    if (html[p + 2] == '>') {
+                        pos = p + 3;
+                        return;
+                    }
+                    if (html[p + 2] == '!') {
+                        throw MALFORMED;
+                    }
+                }
+            }
+            throw MALFORMED;
+        }
+        if (startsWith(pos, CDATA_OPEN)) {
+            throw MALFORMED;
+        }
+        // DOCTYPE и прочие <!...> - до первого '>'.
+        pos = after('>', pos + 2);
+    }
+
+    private void endTag(int nameStart) {
+        if (nameStart >= length) {
+            throw MALFORMED;
+        }
+        if (!isAsciiLetter(html[nameStart])) {
+            // </> пропускается, остальное - комментарий до '>'.
+            pos = after('>', nameStart);
+            return;
+        }
+        int nameEnd = tagNameEnd(nameStart);
+        if (is(nameStart, nameEnd, BODY) || is(nameStart, nameEnd, HTML) || is(nameStart, nameEnd, BR)) {
+            headEnded = true;
+        }
+        pos = nameEnd;
+        attributes(false);
+    }
+
+    private void startTag(int nameStart) {
+        int nameEnd = tagNameEnd(nameStart);
+        pos = nameEnd;
+        // <image> Jsoup превращает в img не везде, после <plaintext> и <frameset> разметка
+        // перестаёт действовать, теги внутри noscript в head он оставляет текстом, а внутри
+        // select и template раскладывает по своим правилам - такие документы разбирает Jsoup.
+        if (is(nameStart, nameEnd, IMAGE) || is(nameStart, nameEnd, PLAINTEXT) || is(nameStart, nameEnd, FRAMESET)
+                || is(nameStart, nameEnd, SELECT) || is(nameStart, nameEnd, TEMPLATE)
+                || (!headEnded && is(nameStart, nameEnd, NOSCRIPT))) {
+            throw MALFORMED;
+        }
+        if (is(nameStart, nameEnd, IMG)) {
+            hasImage = true;
+        } else if (is(nameStart, nameEnd, VIDEO)) {
+            hasVideo = true;
+        }
+        if (!headEnded && !isAnyOf(nameStart, nameEnd, HEAD_CONTENT)) {
+            headEnded = true;
+        }
+
+        boolean meta = is(nameStart, nameEnd, META);
+        if (meta) {
+            charsetStart = -1;
+            contentStart = -1;
+            contentType = false;
+        }
+        attributes(meta);
+        if (meta) {
+            onMeta();
+        }
+
+        boolean rawContent = isAnyOf(nameStart, nameEnd, RAW_TEXT);
+        // Закрытый сразу <title/> или <script/> Jsoup понимает не так, как браузер.
+        if (rawContent && html[pos - 2] == '/') {
+            throw MALFORMED;
+        }
+        if (is(nameStart, nameEnd, TITLE)) {
+            if (titleStart < 0) {
+                if (headEnded) {
+                    throw MALFORMED;
+                }
+                titleStart = pos;
+                titleEnd = rawText(nameStart, nameEnd);
+                return;
+            }
+        }
+        if (rawContent) {
+            int end = rawText(nameStart, nameEnd);
+            // В script после "<!--" действуют особые правила закрытия, их разбирает Jsoup.
+            if (is(nameStart, nameEnd, SCRIPT) && indexOf(COMMENT_OPEN, nameEnd, end) >= 0) {
+                throw MALFORMED;
+            }
+        }
+    }
+
+    private int tagNameEnd(int p) {
+        while (p < length && !isWhitespace(html[p]) && html[p] != '/' && html[p] != '>') {
+            checkNotTagOpen(p++);
+        }
+        if (p >= length) {
+            throw MALFORMED;
+        }
+        return p;
+    }
+
+    // '<' внутри тега Jsoup местами считает началом нового тега.
+    private void checkNotTagOpen(int p) {
+        if (html[p] == '<') {
+            throw MALFORMED;
+        }
+    }
+
+    // Пропускает атрибуты до конца тега; у meta запоминает нужные значения.
+    private void attributes(boolean meta) {
+        while (true) {
+            skipWhitespace();
+            byte c = html[pos];
+            if (c == '>') {
+                pos++;
+                return;
+            }
+            if (c == '/') {
+                pos++;
+                continue;
+            }
+            checkNotTagOpen(pos);
+            int nameStart = pos++;
+            while (pos < length && !isWhitespace(html[pos]) && html[pos] != '/' && html[pos] != '='
+                    && html[pos] != '>') {
+                checkNotTagOpen(pos++);
+            }
+            int nameEnd = pos;
+            skipWhitespace();
+            // Атрибут без значения равносилен пустому значению.
+            int valueStart = nameEnd;
+            int valueEnd = nameEnd;
+            if (html[pos] == '=') {
+                pos++;
+                skipWhitespace();
+                c = html[pos];
+                if (c == '"' || c == '\'') {
+                    valueStart = pos + 1;
+                    valueEnd = indexOf(c, valueStart);
+                    if (valueEnd < 0) {
+                        throw MALFORMED;
+                    }
+                    pos = valueEnd + 1;
+                } else {
+                    valueStart = pos;
+                    while (pos < length && !isWhitespace(html[pos]) && html[pos] != '>') {
+                        checkNotTagOpen(pos++);
+                    }
+                    valueEnd = pos;
+                }
+            }
+            if (meta) {
+                metaAttribute(nameStart, nameEnd, valueStart, valueEnd);
+            }
+        }
+    }
+
+    // Повторный атрибут с тем же именем Jsoup отбрасывает, поэтому берётся первый.
+    private void metaAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (is(nameStart, nameEnd, CHARSET)) {
+            if (charsetStart < 0) {
+                charsetStart = valueStart;
+                charsetEnd = valueEnd;
+            }
+        } else if (is(nameStart, nameEnd, CONTENT)) {
+            if (contentStart < 0) {
+                contentStart = valueStart;
+                contentEnd = valueEnd;
+            }
+        } else if (is(nameStart, nameEnd, HTTP_EQUIV)) {
+            while (valueStart < valueEnd && isWhitespace(html[valueStart])) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && isWhitespace(html[valueEnd - 1])) {
+                valueEnd--;
+            }
+            contentType = is(valueStart, valueEnd, CONTENT_TYPE);
+        }
+    }
+
+    // Как и Jsoup, кодировкой документа считается первая найденная в meta: сначала
+    // из content у http-equiv="content-type", затем из атрибута charset.
+    private void onMeta() {
+        if (metaCharset != null || pos > META_SCAN_LIMIT) {
+            return;
+        }
+        String found = null;
+        if (contentType && contentStart >= 0) {
+            found = charsetFromContentType(contentStart, contentEnd);
+        }
+        if (found == null && charsetStart >= 0) {
+            found = new String(html, charsetStart, charsetEnd - charsetStart, StandardCharsets.ISO_8859_1).trim();
+        }
+        if (found != null) {
+            metaCharset = found;
+        }
+    }
+
+    private String charsetFromContentType(int start, int end) {
+        int at = indexOf(CHARSET, start, end);
+        while (at >= 0) {
+            boolean wordStart = at == start || !isAsciiLetterOrDigit(html[at - 1]);
+            int p = at + CHARSET.length;
+            if (wordStart && p < end && html[p] == '=') {
+                p++;
+                while (p < end && isWhitespace(html[p])) {
+                    p++;
+                }
+                if (p < end && (html[p] == '"' || html[p] == '\'')) {
+                    p++;
+                }
+                int valueStart = p;
+                while (p < end && !isWhitespace(html[p]) && html[p] != ',' && html[p] != ';'
+                        && html[p] != '"' && html[p] != '\'') {
+                    p++;
+                }
+                return new String(html, valueStart, p - valueStart, StandardCharsets.ISO_8859_1);
+            }
+            at = indexOf(CHARSET, at + 1, end);
+        }
+        return null;
+    }
+
+    // Пропускает содержимое до закрывающего тега с тем же именем и возвращает, где оно кончилось.
+    private int rawText(int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        for (int p = indexOf((byte) '<', pos); p >= 0; p = indexOf((byte) '<', p + 1)) {
+            int q = p + 2 + nameLength;
+            if (q < length && html[p + 1] == '/' && equalsIgnoreCase(p + 2, nameStart, nameLength)
+                    && (isWhitespace(html[q]) || html[q] == '/' || html[q] == '>')) {
+                pos = q;
+                attributes(false);
+                return p;
+            }
+        }
+        throw MALFORMED;
+    }
+
+    private String title(Charset charset) {
+        String raw = new String(html, titleStart, titleEnd - titleStart, charset);
+        StringBuilder title = new StringBuilder(raw.length());
+        boolean space = false;
+        int i = 0;
+        while (i < raw.length()) {
+            int c = raw.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == '&') {
+                int semicolon = raw.indexOf(';', i);
+                if (i < raw.length() && raw.charAt(i) == '#') {
+                    if (semicolon < 0) {
+                        throw MALFORMED;
+                    }
+                    c = numericReference(raw, i + 1, semicolon);
+                    i = semicolon + 1;
+                } else if (i < raw.length() && isAsciiLetter(raw.charAt(i))) {
+                    Character named = semicolon < 0 ? null : ENTITIES.get(raw.substring(i, semicolon));
+                    if (named == null) {
+                        throw MALFORMED;
+                    }
+                    c = named;
+                    i = semicolon + 1;
+                }
+            }
+            // Пробелы схлопываются и обрезаются по краям, как в Document.title(). Управляющие
+            // и невидимые символы (мягкий перенос, пробел нулевой ширины) Jsoup обрабатывает
+            // по-своему, такой заголовок разбирает он.
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0') {
+                space = title.length() > 0;
+                continue;
+            }
+            if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || c == '\u200B' || c == '\u00AD') {
+                throw MALFORMED;
+            }
+            if (space) {
+                title.append(' ');
+                space = false;
+            }
+            title.appendCodePoint(c);
+        }
+        return title.toString();
+    }
+
+    private static int numericReference(String raw, int start, int end) {
+        boolean hex = start < end && (raw.charAt(start) == 'x' || raw.charAt(start) == 'X');
+        int digitsStart = hex ? start + 1 : start;
+        if (digitsStart == end || end - digitsStart > 6) {
+            throw MALFORMED;
+        }
+        int value = 0;
+        for (int i = digitsStart; i < end; i++) {
+            int digit = Character.digit(raw.charAt(i), hex ? 16 : 10);
+            if (digit < 0) {
+                throw MALFORMED;
+            }
+            value = value * (hex ? 16 : 10) + digit;
+        }
+        if (value > Character.MAX_CODE_POINT || (value >= 0xD800 && value <= 0xDFFF)) {
+            throw MALFORMED;
+        }
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && isWhitespace(html[pos])) {
+            pos++;
+        }
+        if (pos >= length) {
+            throw MALFORMED;
+        }
+    }
+
+    private int after(char c, int from) {
+        int at = indexOf((byte) c, from);
+        if (at < 0) {
+            throw MALFORMED;
+        }
+        return at + 1;
+    }
+
+    private int indexOf(byte c, int from) {
+        for (int p = from; p < length; p++) {
+            if (html[p] == c) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte[] lowerCase, int from, int to) {
+        for (int p = from; p + lowerCase.length <= to; p++) {
+            if (equalsIgnoreCase(p, lowerCase)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int at, byte[] prefix) {
+        if (at + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (html[at + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean is(int start, int end, byte[] lowerCase) {
+        return end - start == lowerCase.length && equalsIgnoreCase(start, lowerCase);
+    }
+
+    private boolean isAnyOf(int start, int end, byte[][] names) {
+        for (byte[] name : names) {
+            if (is(start, end, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean equalsIgnoreCase(int at, byte[] lowerCase) {
+        if (at + lowerCase.length > length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            if (toLowerCase(html[at + i]) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int at, int otherAt, int count) {
+        for (int i = 0; i < count; i++) {
+            if (toLowerCase(html[at + i]) != toLowerCase(html[otherAt + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAscii(int start, int end) {
+        for (int p = start; p < end; p++) {
+            if (html[p] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiLetter(byte c) {
+        return isAsciiLetter((char) c);
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiLetterOrDigit(byte c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static byte toLowerCase(byte c) {
+        return c >= 'A' && c <= 'Z' ? (byte) (c + ('a' - 'A')) : c;
+    }
+
+    // Разметку можно искать по байтам, только если ASCII-символы кодируются одним
+    // байтом и эти байты не встречаются внутри других символов.
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name();
+        return name.equals("UTF-8") || name.equals("US-ASCII") || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125") || name.startsWith("KOI8-");
+    }
+
+    private static Charset supportedCharset(String name) {
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @lombok.Value
+    static class Result {
+        String title;
+        boolean hasImage;
+        boolean hasVideo;
+    }
+
+    // Сигнал "разобрать через Jsoup": один экземпляр без стека, бросается на каждом
+    // неоднозначном документе.
+    private static final class Malformed extends RuntimeException {
+        private Malformed() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.later.item;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+
+// Срок свежести ответа по его заголовкам (RFC 9111): сколько ещё ответ можно считать
+// актуальным. Метаданные страницы общие для всех пользователей, поэтому сервис
+// ведёт себя как общий кэш и предпочитает s-maxage.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class HttpFreshness {
+    // Эвристика для ответов только с Last-Modified: десятая часть возраста документа.
+    private static final int HEURISTIC_FRACTION = 10;
+
+    // Возвращает null, если сервер ничего не сказал о свежести ответа.
+    static Duration ttl(HttpHeaders headers, Instant now) {
+        Duration lifetime = lifetime(headers, now);
+        if (lifetime == null) {
+            return null;
+        }
+        Duration remaining = lifetime.minus(age(headers));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private static Duration lifetime(HttpHeaders headers, Instant now) {
+        Long maxAge = null;
+        Long sharedMaxAge = null;
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                String name = directive.trim().toLowerCase(Locale.ROOT);
+                if (name.equals("no-store") || name.equals("no-cache")) {
+                    return Duration.ZERO;
+                }
+                if (name.startsWith("s-maxage=")) {
+                    sharedMaxAge = seconds(name.substring("s-maxage=".length()));
+                } else if (name.startsWith("max-age=")) {
+                    maxAge = seconds(name.substring("max-age=".length()));
+                }
+            }
+        }
+        if (sharedMaxAge != null) {
+            return Duration.ofSeconds(sharedMaxAge);
+        }
+        if (maxAge != null) {
+            return Duration.ofSeconds(maxAge);
+        }
+
+        Instant date = date(headers, "Date").orElse(now);
+        Optional<String> expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            // Неразбираемый Expires (например, "0") означает уже устаревший ответ.
+            return parseDate(expires.get())
+                    .map(expiresAt -> Duration.between(date, expiresAt))
+                    .orElse(Duration.ZERO);
+        }
+        return date(headers, "Last-Modified")
+                .filter(lastModified -> lastModified.isBefore(date))
+                .map(lastModified -> Duration.between(lastModified, date).dividedBy(HEURISTIC_FRACTION))
+                .orElse(null);
+    }
+
+    private static Duration age(HttpHeaders headers) {
+        return headers.firstValue("Age")
+                .map(HttpFreshness::seconds)
+                .map(Duration::ofSeconds)
+                .orElse(Duration.ZERO);
+    }
+
+    private static Long seconds(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim().replace("\"", "")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Optional<Instant> date(HttpHeaders headers, String name) {
+        return headers.firstValue(name).flatMap(HttpFreshness::parseDate);
+    }
+
+    private static Optional<Instant> parseDate(String value) {
+        try {
+            return Optional.of(ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
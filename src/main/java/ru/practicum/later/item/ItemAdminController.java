@@ -0,0 +1,19 @@
+package ru.practicum.later.item;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/items")
+@RequiredArgsConstructor
+public class ItemAdminController {
+    private final UrlCanonicalBackfill canonicalBackfill;
+
+    // Выполняется синхронно, по одной транзакции на пользователя.
+    @PostMapping("/canonicalize-urls")
+    public UrlCanonicalBackfill.Result canonicalizeUrls() {
+        return canonicalBackfill.run();
+    }
+}
@@ -1,9 +1,19 @@
 package ru.practicum.later.item;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.later.admission.AdmissionControlled;
+import ru.practicum.later.bulkhead.Bulkheaded;
+import ru.practicum.later.bulkhead.WorkloadClass;
+import ru.practicum.later.common.TimestampFormat;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.dto.ItemChangesDto;
 import ru.practicum.later.item.dto.ItemDto;
 import ru.practicum.later.item.dto.ModifyItemRequest;
 
@@ -12,25 +22,79 @@ import java.util.List;
 @RestController
 @RequestMapping("/items")
 @RequiredArgsConstructor
+@Bulkheaded(WorkloadClass.READ)
 public class ItemController {
     private final ItemService itemService;
+    private final ItemVersions itemVersions;
+    private final ItemResponseCache responseCache;
+    private final ItemListJsonWriter listWriter;
 
-    @GetMapping
-    public List<ItemDto> get(@RequestHeader("X-Later-User-Id") long userId,
-                             @RequestParam(defaultValue = "unread") String state,
-                             @RequestParam(defaultValue = "all") String contentType,
-                             @RequestParam(defaultValue = "newest") String sort,
-                             @RequestParam(defaultValue = "10") int limit,
-                             @RequestParam(required = false) List<String> tags) {
-        return itemService.getItems(GetItemRequest.of(userId, state, contentType, sort, limit, tags));
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> get(@RequestHeader("X-Later-User-Id") long userId,
+                                      @RequestParam(defaultValue = "unread") String state,
+                                      @RequestParam(defaultValue = "all") String contentType,
+                                      @RequestParam(defaultValue = "newest") String sort,
+                                      @RequestParam(defaultValue = "10") int limit,
+                                      @RequestParam(required = false) List<String> tags,
+                                      WebRequest webRequest) {
+        GetItemRequest req = GetItemRequest.of(userId, state, contentType, sort, limit, tags);
+        TimestampFormat timestampFormat = TimestampFormat.current();
+
+        // Версию читаем до выполнения запроса и с основного сервера: если вещи изменятся
+        // в процессе, следующий запрос клиента придёт уже с устаревшим ETag и получит новые данные.
+        long version = itemVersions.current(userId);
+        String etag = itemVersions.etag(userId, version, timestampFormat);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        byte[] body = responseCache.get(req, timestampFormat, version,
+                () -> listWriter.toJson(itemService.getItemRows(req, version), timestampFormat));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy("X-Later-User-Id", TimestampFormat.HEADER)
+                .body(body);
+    }
+
+    @GetMapping(params = "lastName", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] get(@RequestParam String lastName,
+                      @RequestParam(defaultValue = "newest") String sort,
+                      @RequestParam(defaultValue = "0") int from,
+                      @RequestParam(defaultValue = "10") int size) {
+        ItemRows rows = itemService.getUserItemRows(lastName, GetItemRequest.Sort.valueOf(sort.toUpperCase()), from, size);
+        return listWriter.toJson(rows, TimestampFormat.current());
+    }
+
+    // Полная выборка по префиксу фамилии без постраничной разбивки - построчно в NDJSON.
+    @GetMapping(params = {"lastName", "stream=true"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam String lastName,
+                                                        @RequestParam(defaultValue = "newest") String sort) {
+        GetItemRequest.Sort order = GetItemRequest.Sort.valueOf(sort.toUpperCase());
+        // Тело пишется в другом потоке, где заголовки запроса уже недоступны.
+        TimestampFormat timestampFormat = TimestampFormat.current();
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = listWriter.createLineGenerator(out)) {
+                itemService.streamUserItemRows(lastName, order,
+                        rows -> listWriter.writeLines(rows, timestampFormat, generator));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
-    @GetMapping(params = "lastName")
-    public List<ItemDto> get(@RequestParam String lastName) {
-        return itemService.getUserItems(lastName);
+    @GetMapping("/changes")
+    public ItemChangesDto getChanges(@RequestHeader("X-Later-User-Id") long userId,
+                                     @RequestParam(defaultValue = "0") long since,
+                                     @RequestParam(defaultValue = "100") int limit) {
+        return itemService.getChanges(userId, since, limit);
     }
 
+    // Перегрузку отсекает адаптивный лимит (429), а ограничитель ingest лишь не даёт
+    // загрузкам занять весь пул соединений (см. later.admission.* в настройках).
     @PostMapping
+    @Bulkheaded(WorkloadClass.INGEST)
+    @AdmissionControlled("ingest")
     public ItemDto add(@RequestHeader("X-Later-User-Id") Long userId,
                        @RequestBody AddItemRequest request) {
         return itemService.addNewItem(userId, request);
@@ -46,4 +110,4 @@ public class ItemController {
                               @RequestBody ModifyItemRequest request) {
         return itemService.changeItem(userId, request);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package ru.practicum.later.item;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.model.Item;
+import ru.practicum.later.item.model.ItemFlags;
+import ru.practicum.later.item.model.ItemTag;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Индекс строится лениво при первом запросе пользователя с фильтром по тегам
+// и дальше поддерживается изменениями из ItemServiceImpl после фиксации транзакций.
+// Каждый индекс помечен версией списка (ItemVersions), на которой он построен:
+// перед использованием она сверяется с версией в БД, и если список успели
+// изменить другой узел или фоновая задача, индекс строится заново.
+// Индексы хранятся для ограниченного числа пользователей и вытесняются по LRU.
+@Component
+class ItemFilterIndex {
+    private final ItemRepository repository;
+    private final ItemVersions itemVersions;
+    private final Map<Long, Entry> indexes;
+
+    @Value("${item-filter-index.max-keyed-candidates:1000}")
+    private int maxKeyedCandidates;
+
+    ItemFilterIndex(ItemRepository repository,
+                    ItemVersions itemVersions,
+                    @Value("${item-filter-index.max-users:10000}") int maxUsers) {
+        this.repository = repository;
+        this.itemVersions = itemVersions;
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    // Возвращает идентификаторы подходящих вещей, если их немного
+    // и страницу можно выбрать по ключу. Иначе - пустой Optional,
+    // и фильтрация остаётся на стороне БД.
+    Optional<List<Long>> findCandidateIds(GetItemRequest req) {
+        UserItemIndex index = currentIndex(req.getUserId());
+        Roaring64NavigableMap candidates = index.select(req.getState(), req.getContentType(), req.getTags());
+        if (candidates.getLongCardinality() > maxKeyedCandidates) {
+            return Optional.empty();
+        }
+        List<Long> ids = new ArrayList<>((int) candidates.getLongCardinality());
+        candidates.forEach(ids::add);
+        return Optional.of(ids);
+    }
+
+    // version - версия списка, полученная изменением от ItemVersions.bump.
+    void itemSaved(Item item, long version) {
+        long userId = item.getUser().getId();
+        long itemId = item.getId();
+        boolean unread = item.isUnread();
+        String mimeType = item.getMimeType();
+        Set<String> tags = new HashSet<>(item.getTags());
+        afterCommit(() -> apply(userId, version, index -> index.put(itemId, unread, mimeType, tags)));
+    }
+
+    void itemDeleted(long userId, long itemId, long version) {
+        afterCommit(() -> apply(userId, version, index -> index.remove(itemId)));
+    }
+
+    // Версия списка сменилась, но поля, по которым строится индекс, остались прежними.
+    void unchanged(long userId, long version) {
+        afterCommit(() -> apply(userId, version, index -> { }));
+    }
+
+    // Индекс пользователя перестраивается при следующем запросе - когда изменились
+    // данные сразу многих его вещей, например тип общей страницы.
+    void forget(long userId) {
+        afterCommit(() -> {
+            synchronized (indexes) {
+                indexes.remove(userId);
+            }
+        });
+    }
+
+    private UserItemIndex currentIndex(long userId) {
+        long version = itemVersions.current(userId);
+        synchronized (indexes) {
+            Entry entry = indexes.get(userId);
+            if (entry != null && entry.version == version) {
+                return entry.index;
+            }
+        }
+        // Построение идёт вне блокировки. Данные читаются после версии, поэтому
+        // они не старше неё; если они успели уйти дальше, версия в БД уже больше
+        // и индекс перестроится при следующей проверке.
+        UserItemIndex index = load(userId);
+        synchronized (indexes) {
+            Entry entry = indexes.get(userId);
+            if (entry == null || entry.version < version) {
+                indexes.put(userId, new Entry(index, version));
+            }
+        }
+        return index;
+    }
+
+    // Изменение применяется, только если индекс построен на непосредственно
+    // предшествующей версии. Иначе он уже её учитывает или отстал
+    // и будет перестроен при следующем запросе.
+    private void apply(long userId, long version, Consumer<UserItemIndex> change) {
+        synchronized (indexes) {
+            Entry entry = indexes.get(userId);
+            if (entry != null && entry.version == version - 1) {
+                change.accept(entry.index);
+                entry.version = version;
+            }
+        }
+    }
+
+    private UserItemIndex load(long userId) {
+        UserItemIndex index = new UserItemIndex();
+        for (ItemFlags flags : repository.findFlagsByUserId(userId)) {
+            index.put(flags.getId(), flags.isUnread(), flags.getMimeType(), Set.of());
+        }
+        for (ItemTag tag : repository.findTagsByUserId(userId)) {
+            index.addTag(tag.getItemId(), tag.getName());
+        }
+        return index;
+    }
+
+    private static class Entry {
+        private final UserItemIndex index;
+        private long version;
+
+        Entry(UserItemIndex index, long version) {
+            this.index = index;
+            this.version = version;
+        }
+    }
+
+    // Изменения применяются к индексу только после успешной фиксации,
+    // чтобы откаченная транзакция не оставила в нём следов.
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
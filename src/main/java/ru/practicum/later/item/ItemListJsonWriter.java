@@ -0,0 +1,112 @@
+package ru.practicum.later.item;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.common.LaterApplicationException;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.common.Timestamps;
+import ru.practicum.later.item.model.ItemView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+// Пишет список вещей в JSON прямо из строк выборки, минуя ItemDto и рефлексию Jackson.
+// Формат совпадает с сериализацией ItemDto: те же поля в том же порядке.
+@Component
+class ItemListJsonWriter {
+    // Заранее закодированные имена полей - генератор копирует их байты без повторного экранирования.
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NORMAL_URL = new SerializedString("normalUrl");
+    private static final SerializedString RESOLVED_URL = new SerializedString("resolvedUrl");
+    private static final SerializedString MIME_TYPE = new SerializedString("mimeType");
+    private static final SerializedString TITLE = new SerializedString("title");
+    private static final SerializedString HAS_IMAGE = new SerializedString("hasImage");
+    private static final SerializedString HAS_VIDEO = new SerializedString("hasVideo");
+    private static final SerializedString UNREAD = new SerializedString("unread");
+    private static final SerializedString DATE_RESOLVED = new SerializedString("dateResolved");
+    private static final SerializedString TAGS = new SerializedString("tags");
+
+    // Примерный размер одной вещи в JSON - чтобы буфер не перевыделялся на типичных страницах.
+    private static final int ESTIMATED_ITEM_SIZE = 384;
+
+    private final JsonFactory jsonFactory;
+
+    ItemListJsonWriter(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    byte[] toJson(ItemRows rows, TimestampFormat timestampFormat) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(2, rows.getItems().size() * ESTIMATED_ITEM_SIZE));
+        try {
+            write(rows, timestampFormat, out);
+        } catch (IOException e) {
+            throw new LaterApplicationException("Cannot serialize the list of items", e);
+        }
+        return out.toByteArray();
+    }
+
+    void write(ItemRows rows, TimestampFormat timestampFormat, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartArray();
+            for (ItemView item : rows.getItems()) {
+                writeItem(generator, item, rows.tagsOf(item), timestampFormat);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Генератор для NDJSON: вещи пишутся по одной на строку без обрамляющего массива.
+    JsonGenerator createLineGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    void writeLines(ItemRows rows, TimestampFormat timestampFormat, JsonGenerator generator) throws IOException {
+        for (ItemView item : rows.getItems()) {
+            writeItem(generator, item, rows.tagsOf(item), timestampFormat);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private void writeItem(JsonGenerator generator, ItemView item, List<String> tags,
+                           TimestampFormat timestampFormat) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeNumber(item.getId());
+        writeStringField(generator, NORMAL_URL, item.getUrl());
+        writeStringField(generator, RESOLVED_URL, item.getResolvedUrl());
+        writeStringField(generator, MIME_TYPE, item.getMimeType());
+        writeStringField(generator, TITLE, item.getTitle());
+        generator.writeFieldName(HAS_IMAGE);
+        generator.writeBoolean(item.isHasImage());
+        generator.writeFieldName(HAS_VIDEO);
+        generator.writeBoolean(item.isHasVideo());
+        generator.writeFieldName(UNREAD);
+        generator.writeBoolean(item.isUnread());
+        generator.writeFieldName(DATE_RESOLVED);
+        Timestamps.write(generator, item.getDateResolved(), timestampFormat);
+        generator.writeFieldName(TAGS);
+        generator.writeStartArray();
+        for (int i = 0; i < tags.size(); i++) {
+            generator.writeString(tags.get(i));
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeStringField(JsonGenerator generator, SerializedString name, String value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+}
@@ -4,10 +4,8 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import ru.practicum.later.item.dto.ItemDto;
 import ru.practicum.later.item.model.Item;
-import ru.practicum.later.user.User;
+import ru.practicum.later.item.model.ItemView;
 
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -15,24 +13,6 @@ import java.util.Set;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 final class ItemMapper {
-    private static final DateTimeFormatter dtFormatter = DateTimeFormatter
-            .ofPattern("yyyy.MM.dd hh:mm:ss")
-            .withZone(ZoneOffset.UTC);
-
-    public static Item mapToItem(UrlMetaDataRetriever.UrlMetadata result, User user, Set<String> tags) {
-        Item item = new Item();
-        item.setUser(user);
-        item.setUrl(result.getNormalUrl());
-        item.setResolvedUrl(result.getResolvedUrl());
-        item.setMimeType(result.getMimeType());
-        item.setTitle(result.getTitle());
-        item.setHasImage(result.isHasImage());
-        item.setHasVideo(result.isHasVideo());
-        item.setDateResolved(result.getDateResolved());
-        item.setTags(tags);
-        return item;
-    }
-
     public static ItemDto mapToItemDto(Item item) {
         return ItemDto.builder()
                 .id(item.getId())
@@ -43,12 +23,35 @@ final class ItemMapper {
                 .hasVideo(item.isHasVideo())
                 .mimeType(item.getMimeType())
                 .unread(item.isUnread())
-                .dateResolved(dtFormatter.format(item.getDateResolved()))
+                .dateResolved(item.getDateResolved())
                 // Нужно скопировать все элементы в новую коллекцию - чтобы запустить механизм ленивой загрузки.
                 .tags(new HashSet<>(item.getTags()))
                 .build();
     }
 
+    public static ItemDto mapToItemDto(ItemView item, Set<String> tags) {
+        return ItemDto.builder()
+                .id(item.getId())
+                .title(item.getTitle())
+                .normalUrl(item.getUrl())
+                .resolvedUrl(item.getResolvedUrl())
+                .hasImage(item.isHasImage())
+                .hasVideo(item.isHasVideo())
+                .mimeType(item.getMimeType())
+                .unread(item.isUnread())
+                .dateResolved(item.getDateResolved())
+                .tags(tags)
+                .build();
+    }
+
+    public static List<ItemDto> mapToItemDto(ItemRows rows) {
+        List<ItemDto> dtos = new ArrayList<>(rows.getItems().size());
+        for (ItemView item : rows.getItems()) {
+            dtos.add(mapToItemDto(item, new HashSet<>(rows.tagsOf(item))));
+        }
+        return dtos;
+    }
+
     public static List<ItemDto> mapToItemDto(Iterable<Item> items) {
         List<ItemDto> dtos = new ArrayList<>();
         for (Item item : items) {
@@ -1,33 +1,108 @@
 package ru.practicum.later.item;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.later.item.model.Item;
 import ru.practicum.later.item.model.ItemCountByUser;
+import ru.practicum.later.item.model.ItemFlags;
 import ru.practicum.later.item.model.ItemInfo;
-import ru.practicum.later.user.User;
+import ru.practicum.later.item.model.ItemTag;
+import ru.practicum.later.item.model.ItemView;
 
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface ItemRepository extends JpaRepository<Item, Long>, QuerydslPredicateExecutor<Item> {
 
+    // Метаданные страницы нужны почти всегда вместе с вещью, поэтому выборки сущностей
+    // загружают её тем же запросом, а не отдельным на каждую вещь.
+    @EntityGraph(attributePaths = "page")
     List<Item> findByUserId(long userId);
 
-    Optional<Item> findByUserIdAndUrl(long userId, String url);
+    // Один и тот же адрес мог в разное время привести на разные страницы,
+    // поэтому вещей с ним может быть несколько - берём последнюю.
+    @EntityGraph(attributePaths = "page")
+    Optional<Item> findFirstByUserIdAndUrlOrderByIdDesc(long userId, String url);
 
-    List<ItemInfo> findAllByUserId(Long userId);
+    Optional<Item> findByUserIdAndPageId(long userId, long pageId);
+
+    @Query("select it.url from Item as it where it.user.id = ?1")
+    List<String> findUrlsByUserId(long userId);
 
-    Optional<Item> findByUserAndResolvedUrl(User user, String resolvedUrl);
+    @EntityGraph(attributePaths = "page")
+    Optional<Item> findByUserIdAndId(long userId, long id);
 
+    // Потоковые выборки для выгрузки библиотеки: драйвер читает строки
+    // порциями через курсор, а не загружает весь результат в память.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
     @Query("select it " +
             "from Item as it " +
-            "join it.user as u " +
-            "where u.lastName like concat(?1, '%') ")
-    List<Item> findItemsByLastNamePrefix(String lastNamePrefix);
+            "join fetch it.page " +
+            "where it.user.id = ?1 " +
+            "order by it.id")
+    Stream<Item> streamByUserId(long userId);
+
+    // Теги читаются напрямую из tags по user_id: колонка не отображена
+    // в Item.tags, а без неё Postgres не отсечёт лишние секции tags.
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "select t.item_id as \"itemId\", t.name as \"name\" " +
+            "from tags as t " +
+            "where t.user_id = ?1 " +
+            "order by t.item_id", nativeQuery = true)
+    Stream<ItemTag> streamTagsByUserId(long userId);
+
+    List<ItemInfo> findAllByUserId(Long userId);
+
+    String VIEW_COLUMNS = "select it.id as id, it.url as url, it.unread as unread, " +
+            "p.resolvedUrl as resolvedUrl, p.mimeType as mimeType, p.title as title, " +
+            "p.hasImage as hasImage, p.hasVideo as hasVideo, p.dateResolved as dateResolved " +
+            "from Item as it join it.page as p ";
+
+    @Query(VIEW_COLUMNS + "where it.user.id = ?1 order by it.id")
+    List<ItemView> findViewsByUserIdOrderById(long userId);
+
+    @Query(VIEW_COLUMNS + "where it.id in ?1")
+    List<ItemView> findViewsByIdIn(Collection<Long> ids);
+
+    @Query(VIEW_COLUMNS + "where it.user.id = ?1 and it.id in ?2")
+    List<ItemView> findViewsByUserIdAndIdIn(long userId, Collection<Long> ids);
+
+    @Query("select it.id as id, it.unread as unread, it.page.mimeType as mimeType " +
+            "from Item as it " +
+            "where it.user.id = ?1")
+    List<ItemFlags> findFlagsByUserId(long userId);
+
+    @Query(value = "select t.item_id as \"itemId\", t.name as \"name\" " +
+            "from tags as t " +
+            "where t.user_id = ?1", nativeQuery = true)
+    List<ItemTag> findTagsByUserId(long userId);
+
+    @Query(value = "select t.item_id as \"itemId\", t.name as \"name\" " +
+            "from tags as t " +
+            "where t.user_id = ?1 and t.item_id in ?2", nativeQuery = true)
+    List<ItemTag> findTagsByUserIdAndItemIdIn(long userId, Collection<Long> itemIds);
+
+    @Query("select it.id as itemId, t as name " +
+            "from Item as it " +
+            "join it.tags as t " +
+            "where it.id in ?1")
+    List<ItemTag> findTagsByItemIdIn(Collection<Long> itemIds);
 
     @Query("select new ru.practicum.later.item.model.ItemCountByUser(it.user.id, count(it.id))" +
             "from Item as it "+
@@ -42,5 +117,26 @@ public interface ItemRepository extends JpaRepository<Item, Long>, QuerydslPredi
             "group by it.user_id", nativeQuery = true)
     List<ItemCountByUser> countByUserRegistered(LocalDate dateFrom, LocalDate dateTo);
 
-    void deleteByUserIdAndId(long userId, long itemId);
+    long deleteByUserIdAndId(long userId, long itemId);
+
+    @Query("select distinct it.user.id from Item as it")
+    List<Long> findUserIdsWithItems();
+
+    // Заметки удаляемых дубликатов переходят к оставшейся вещи и попадают в ленту изменений.
+    @Modifying
+    @Query(value = "update item_notes set item_id = ?3, change_seq = nextval('change_seq') " +
+            "where user_id = ?1 and item_id in ?2", nativeQuery = true)
+    int moveNotes(long userId, Collection<Long> itemIds, long targetItemId);
+
+    @EntityGraph(attributePaths = "page")
+    List<Item> findByUserIdAndChangeSeqGreaterThan(long userId, long changeSeq, Pageable page);
+
+    // Метаданные страницы входят в вещи всех сохранивших её пользователей,
+    // поэтому после их изменения вещи попадают в ленту изменений.
+    @Modifying
+    @Query(value = "update items set change_seq = nextval('change_seq') where url_id = ?1", nativeQuery = true)
+    int bumpChangeSeqByPageId(long pageId);
+
+    @Query(value = "select nextval('change_seq')", nativeQuery = true)
+    long nextChangeSeq();
 }
\ No newline at end of file
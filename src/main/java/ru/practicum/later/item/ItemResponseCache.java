@@ -0,0 +1,50 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.item.dto.GetItemRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Кэш сериализованных ответов GET /items. Версия списка (ItemVersions) входит в ключ,
+// поэтому после изменения вещей старые записи просто перестают запрашиваться
+// и вытесняются по LRU. Версия общая для всех узлов, а тело под ней строится
+// из данных не старше неё, так что запись не устаревает, пока версия прежняя.
+@Component
+class ItemResponseCache {
+    private final Map<Key, byte[]> entries;
+
+    ItemResponseCache(@Value("${item-response-cache.max-entries:1000}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    byte[] get(GetItemRequest request, TimestampFormat timestampFormat, long version, Supplier<byte[]> loader) {
+        Key key = new Key(request.normalized(), timestampFormat, version);
+        synchronized (entries) {
+            byte[] cached = entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] body = loader.get();
+        synchronized (entries) {
+            entries.put(key, body);
+        }
+        return body;
+    }
+
+    @lombok.Value
+    private static class Key {
+        GetItemRequest request;
+        TimestampFormat timestampFormat;
+        long version;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.later.item;
+
+import lombok.Value;
+import ru.practicum.later.item.model.ItemView;
+
+import java.util.List;
+import java.util.Map;
+
+// Результат выборки списка вещей в том виде, в каком он пришёл из БД:
+// проекции в порядке выдачи и теги, сгруппированные по идентификатору вещи.
+@Value
+class ItemRows {
+    List<ItemView> items;
+    Map<Long, List<String>> tagsByItemId;
+
+    static ItemRows empty() {
+        return new ItemRows(List.of(), Map.of());
+    }
+
+    List<String> tagsOf(ItemView item) {
+        return tagsByItemId.getOrDefault(item.getId(), List.of());
+    }
+}
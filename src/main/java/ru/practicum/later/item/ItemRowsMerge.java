@@ -0,0 +1,160 @@
+package ru.practicum.later.item;
+
+import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.model.ItemView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Сливает упорядоченные выборки вещей с разных шардов в одну: каждый раз берётся
+// меньшая из голов, так что выборка каждого шарда расходуется строго с начала
+// и в том порядке, в каком её отдала БД. Вещи переносимого пользователя есть
+// на двух шардах с одинаковыми id и данными - в общем порядке такой повтор
+// идёт подряд и отбрасывается.
+class ItemRowsMerge {
+    private final Comparator<ItemView> order;
+    private final List<Deque<ItemView>> heads = new ArrayList<>();
+    private final ItemView[] lastFetched;
+    private final boolean[] exhausted;
+    private final Map<Long, List<String>> tags = new HashMap<>();
+    private Long lastTakenId;
+
+    ItemRowsMerge(GetItemRequest.Sort sort, int shards) {
+        this.order = order(sort);
+        this.lastFetched = new ItemView[shards];
+        this.exhausted = new boolean[shards];
+        for (int i = 0; i < shards; i++) {
+            heads.add(new ArrayDeque<>());
+        }
+    }
+
+    // last - больше порций с этого шарда не будет.
+    void add(int shard, ItemRows rows, boolean last) {
+        List<ItemView> items = rows.getItems();
+        heads.get(shard).addAll(items);
+        tags.putAll(rows.getTagsByItemId());
+        if (!items.isEmpty()) {
+            lastFetched[shard] = items.get(items.size() - 1);
+        }
+        if (last) {
+            exhausted[shard] = true;
+        }
+    }
+
+    // Выборка шарда не закончилась, а всё полученное с него уже выдано.
+    boolean needsMore(int shard) {
+        return !exhausted[shard] && heads.get(shard).isEmpty();
+    }
+
+    // Последняя полученная с шарда вещь - с неё продолжается его выборка.
+    ItemView lastFetched(int shard) {
+        return lastFetched[shard];
+    }
+
+    boolean isDone() {
+        for (int i = 0; i < heads.size(); i++) {
+            if (!exhausted[i] || !heads.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Пропускает до count вещей в общем порядке и возвращает, сколько пропущено:
+    // меньше count, если следующей вещи пока нет среди полученных.
+    int skip(int count) {
+        int skipped = 0;
+        while (skipped < count && poll() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    // Выдаёт до limit вещей в общем порядке. Останавливается, когда у незаконченного
+    // шарда кончились полученные вещи: следующая может быть там.
+    ItemRows take(int limit) {
+        List<ItemView> items = new ArrayList<>();
+        Map<Long, List<String>> taken = new HashMap<>();
+        ItemView item;
+        while (items.size() < limit && (item = poll()) != null) {
+            items.add(item);
+            List<String> itemTags = tags.remove(item.getId());
+            if (itemTags != null) {
+                taken.put(item.getId(), itemTags);
+            }
+        }
+        return new ItemRows(items, taken);
+    }
+
+    // Следующая вещь в общем порядке; null, если вещей больше нет или следующую
+    // пока нельзя определить.
+    private ItemView poll() {
+        while (true) {
+            Deque<ItemView> next = null;
+            for (int i = 0; i < heads.size(); i++) {
+                Deque<ItemView> head = heads.get(i);
+                if (head.isEmpty()) {
+                    if (!exhausted[i]) {
+                        return null;
+                    }
+                    continue;
+                }
+                if (next == null || order.compare(head.peekFirst(), next.peekFirst()) < 0) {
+                    next = head;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            ItemView item = next.pollFirst();
+            if (!item.getId().equals(lastTakenId)) {
+                lastTakenId = item.getId();
+                return item;
+            }
+            tags.remove(item.getId());
+        }
+    }
+
+    // Тот же порядок, что задаёт ItemServiceImpl.mergeOrderByClause: в Postgres NULL
+    // при сортировке по возрастанию идут последними, а по убыванию - первыми.
+    static Comparator<ItemView> order(GetItemRequest.Sort sort) {
+        Comparator<ItemView> byKey;
+        switch (sort) {
+            case TITLE:
+                byKey = Comparator.comparing(ItemView::getTitle, Comparator.nullsLast(ItemRowsMerge::compareCodePoints));
+                break;
+            case SITE:
+                byKey = Comparator.comparing(ItemView::getResolvedUrl, Comparator.nullsLast(ItemRowsMerge::compareCodePoints));
+                break;
+            case OLDEST:
+                byKey = Comparator.comparing(ItemView::getDateResolved, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case NEWEST:
+            default:
+                byKey = Comparator.comparing(ItemView::getDateResolved, Comparator.nullsFirst(Comparator.reverseOrder()));
+        }
+        return byKey.thenComparing(ItemView::getId);
+    }
+
+    // Сопоставление "C" сравнивает байты UTF-8, то есть кодовые точки. String.compareTo
+    // сравнивает единицы UTF-16 и расходится с ним на символах вне BMP.
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
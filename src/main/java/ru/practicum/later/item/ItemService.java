@@ -3,9 +3,13 @@ package ru.practicum.later.item;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.dto.ItemChangesDto;
 import ru.practicum.later.item.dto.ItemDto;
 import ru.practicum.later.item.dto.ModifyItemRequest;
+import ru.practicum.later.item.model.ItemCountByUser;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @Transactional(readOnly = true)
@@ -21,8 +25,36 @@ interface ItemService {
 
     List<ItemDto> getItems(GetItemRequest req);
 
+    ItemRows getItemRows(GetItemRequest req);
+
+    // Строки не старше версии списка minVersion (ItemVersions).
+    ItemRows getItemRows(GetItemRequest req, long minVersion);
+
+    @Transactional
     ItemDto changeItem(long userId, ModifyItemRequest request);
 
-    @Transactional(readOnly = true)
-    List<ItemDto> getUserItems(String lastName);
+    List<ItemDto> getUserItems(String lastNamePrefix, GetItemRequest.Sort sort, int from, int size);
+
+    ItemRows getUserItemRows(String lastNamePrefix, GetItemRequest.Sort sort, int from, int size);
+
+    void streamUserItemRows(String lastNamePrefix, GetItemRequest.Sort sort, RowsHandler handler) throws IOException;
+
+    ItemChangesDto getChanges(long userId, long since, int limit);
+
+    List<ItemCountByUser> countItemsByUser(String urlPattern);
+
+    List<ItemCountByUser> countItemsByUserRegistered(LocalDate dateFrom, LocalDate dateTo);
+
+    // Приводит адреса вещей пользователя к каноническому виду и сливает вещи,
+    // оказавшиеся одной страницей. Возвращает число удалённых дубликатов.
+    int mergeDuplicateUrls(long userId);
+
+    // Дополняет вещь, сохранённую с неполными метаданными, загруженной страницей.
+    // Если у пользователя уже есть вещь с этой страницей, вещи сливаются.
+    @Transactional
+    void completeResolution(long userId, long itemId, UrlMetaDataRetriever.UrlMetadata metadata);
+
+    interface RowsHandler {
+        void handle(ItemRows rows) throws IOException;
+    }
 }
@@ -1,38 +1,97 @@
 package ru.practicum.later.item;
 
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.common.BadRequestException;
 import ru.practicum.later.common.InsufficientPermissionException;
 import ru.practicum.later.common.NotFoundException;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.dto.ItemChangesDto;
 import ru.practicum.later.item.dto.ItemDto;
 import ru.practicum.later.item.dto.ModifyItemRequest;
 import ru.practicum.later.item.model.Item;
+import ru.practicum.later.item.model.ItemCountByUser;
+import ru.practicum.later.item.model.ItemTag;
+import ru.practicum.later.item.model.ItemTombstone;
+import ru.practicum.later.item.model.ItemView;
 import ru.practicum.later.item.model.QItem;
+import ru.practicum.later.item.model.WebPage;
+import ru.practicum.later.outbox.OutboxEventType;
+import ru.practicum.later.outbox.OutboxWriter;
+import ru.practicum.later.sharding.Shards;
 import ru.practicum.later.user.User;
 import ru.practicum.later.user.UserRepository;
 
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 class ItemServiceImpl implements ItemService {
     private final ItemRepository repository;
+    private final WebPageRepository pageRepository;
+    private final ItemTombstoneRepository tombstoneRepository;
     private final UserRepository userRepository;
     private final UrlMetaDataRetriever urlMetaDataRetriever;
+    private final ResolutionScheduler resolutionScheduler;
+    private final ItemFilterIndex filterIndex;
+    private final SavedUrlFilter savedUrls;
+    private final ItemUpserter upserter;
+    private final ResolveRetryQueue retryQueue;
+    private final RefreshPolicy refreshPolicy;
+    private final UrlCanonicalizer canonicalizer;
+    private final ItemVersions itemVersions;
+    private final OutboxWriter outboxWriter;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final EntityManager entityManager;
+
+    // Сколько идентификаторов подставлять в один запрос "id in (...)".
+    private static final int TAGS_BATCH_SIZE = 1000;
+
+    private static final int MAX_LAST_NAME_PAGE_SIZE = 100;
+    // Пропуск from вещей при нескольких шардах читает их все, поэтому он ограничен.
+    private static final int MAX_LAST_NAME_OFFSET = 10_000;
+
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    // HQL-функция, объявленная в Config: строка в сопоставлении "C".
+    static final String COLLATE_C = "collate_c";
 
     @Override
     public List<ItemDto> getItems(long userId) {
-        List<Item> userItems = repository.findByUserId(userId);
-        return ItemMapper.mapToItemDto(userItems);
+        List<ItemView> userItems = repository.findViewsByUserIdOrderById(userId);
+        return ItemMapper.mapToItemDto(new ItemRows(userItems, groupTags(repository.findTagsByUserId(userId))));
     }
 
     @Transactional
@@ -41,18 +100,69 @@ class ItemServiceImpl implements ItemService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new InsufficientPermissionException("You do not have permission to perform this operation"));
 
-        UrlMetaDataRetriever.UrlMetadata result = urlMetaDataRetriever.retrieve(request.getUrl());
-
-        Optional<Item> maybeExistingItem = repository.findByUserAndResolvedUrl(user, result.getResolvedUrl());
-        Item item;
-        if(maybeExistingItem.isEmpty()) {
-            item = repository.save(ItemMapper.mapToItem(result, user, request.getTags()));
-        } else {
-            item = maybeExistingItem.get();
-            if(request.getTags() != null && !request.getTags().isEmpty()) {
-                item.getTags().addAll(request.getTags());
-                repository.save(item);
+        // Повторное сохранение того же адреса (частый случай у расширений браузера)
+        // обходится без загрузки страницы, если только она ещё не загружена.
+        String url = canonicalizer.canonicalize(request.getUrl());
+        if (url != null && savedUrls.mightContain(userId, url)) {
+            Optional<Item> savedItem = repository.findFirstByUserIdAndUrlOrderByIdDesc(userId, url);
+            if (savedItem.isPresent() && savedItem.get().getDateResolved() != null) {
+                return addTags(savedItem.get(), request.getTags());
             }
+            // Строки этой вещи и её страницы меняет upserter в обход Hibernate: без отсоединения
+            // findByUserIdAndId ниже вернул бы прежние сущности со старыми метаданными и тегами.
+            savedItem.ifPresent(item -> {
+                entityManager.detach(item.getPage());
+                entityManager.detach(item);
+            });
+        }
+
+        // Временная ошибка сайта не возвращается клиенту: вещь сохраняется с одним
+        // адресом, а страница загружается позже из очереди повторов. Иначе клиенты
+        // повторяют запрос сами и во время сбоя сайта только добавляют ему нагрузки.
+        UrlMetaDataRetriever.UrlMetadata result;
+        TransientItemRetrieverException failure = null;
+        try {
+            result = resolutionScheduler.call(ResolutionPriority.INTERACTIVE, userId,
+                    () -> urlMetaDataRetriever.retrieve(url));
+        } catch (TransientItemRetrieverException e) {
+            failure = e;
+            result = UrlMetaDataRetrieverImpl.UrlMetadataImpl.builder()
+                    .normalUrl(url)
+                    .resolvedUrl(url)
+                    .build();
+        }
+
+        // Блокировка берётся после загрузки страницы, чтобы не держать её на время запроса к сайту.
+        String resolvedUrl = canonicalizer.canonicalize(result.getResolvedUrl());
+        itemVersions.lockWithPage(userId, resolvedUrl);
+        ItemUpserter.Result upserted = upserter.upsert(user.getId(), url, resolvedUrl, result, request.getTags());
+        if (upserted.isPageFilled()) {
+            // Заготовку страницы могли ждать вещи других пользователей: как и при
+            // обновлении в UrlMetadataRefresher, их вещи попадают в ленту изменений.
+            itemVersions.bumpByPage(upserted.getPageId()).keySet().forEach(filterIndex::forget);
+            repository.bumpChangeSeqByPageId(upserted.getPageId());
+        }
+        Item item = repository.findByUserIdAndId(user.getId(), upserted.getItemId()).orElseThrow();
+        if (failure != null && item.getDateResolved() == null) {
+            retryQueue.enqueue(userId, item.getId(), url, failure);
+        }
+        if (upserted.isInserted()) {
+            savedUrls.urlSaved(userId, item.getUrl());
+            return onItemSaved(item, OutboxEventType.ITEM_ADDED);
+        }
+        if (request.getTags() != null && !request.getTags().isEmpty()) {
+            return onItemSaved(item, OutboxEventType.ITEM_UPDATED);
+        }
+        return ItemMapper.mapToItemDto(item);
+    }
+
+    private ItemDto addTags(Item item, Set<String> tags) {
+        if(tags != null && !tags.isEmpty()) {
+            itemVersions.lock(item.getUser().getId());
+            item.getTags().addAll(tags);
+            item.setChangeSeq(repository.nextChangeSeq());
+            repository.save(item);
+            return onItemSaved(item, OutboxEventType.ITEM_UPDATED);
         }
         return ItemMapper.mapToItemDto(item);
     }
@@ -60,55 +170,422 @@ class ItemServiceImpl implements ItemService {
     @Transactional
     @Override
     public void deleteItem(long userId, long itemId) {
-        repository.deleteByUserIdAndId(userId, itemId);
+        itemVersions.lock(userId);
+        long deleted = repository.deleteByUserIdAndId(userId, itemId);
+        if(deleted > 0) {
+            recordDeletion(userId, itemId);
+            filterIndex.itemDeleted(userId, itemId, itemVersions.bump(userId));
+        }
+    }
+
+    @Transactional
+    @Override
+    public int mergeDuplicateUrls(long userId) {
+        itemVersions.lock(userId);
+        Map<String, List<Item>> byResolvedUrl = repository.findByUserId(userId).stream()
+                .filter(item -> item.getResolvedUrl() != null)
+                .collect(Collectors.groupingBy(item -> canonicalizer.canonicalize(item.getResolvedUrl()),
+                        LinkedHashMap::new, Collectors.toList()));
+
+        // Остаётся самая старая вещь группы; теги дубликатов добавляются к ней,
+        // непрочитанной она остаётся, только если непрочитаны все.
+        Map<Item, String> keepers = new LinkedHashMap<>();
+        int merged = 0;
+        for (Map.Entry<String, List<Item>> group : byResolvedUrl.entrySet()) {
+            List<Item> items = group.getValue();
+            items.sort(Comparator.comparing(Item::getId));
+            Item keeper = items.get(0);
+            List<Item> duplicates = items.subList(1, items.size());
+            boolean canonical = group.getKey().equals(keeper.getResolvedUrl())
+                    && Objects.equals(canonicalizer.canonicalize(keeper.getUrl()), keeper.getUrl());
+            if (duplicates.isEmpty() && canonical) {
+                continue;
+            }
+            if (!duplicates.isEmpty()) {
+                List<Long> duplicateIds = duplicates.stream().map(Item::getId).collect(Collectors.toList());
+                for (Item duplicate : duplicates) {
+                    keeper.getTags().addAll(duplicate.getTags());
+                    keeper.setUnread(keeper.isUnread() && duplicate.isUnread());
+                }
+                repository.moveNotes(userId, duplicateIds, keeper.getId());
+                for (Item duplicate : duplicates) {
+                    repository.delete(duplicate);
+                    recordDeletion(userId, duplicate.getId());
+                    filterIndex.itemDeleted(userId, duplicate.getId(), itemVersions.bump(userId));
+                }
+                merged += duplicates.size();
+            }
+            keepers.put(keeper, group.getKey());
+        }
+
+        // Дубликаты должны быть удалены в БД до смены адресов у оставшихся вещей,
+        // иначе сработает UNIQUE(user_id, url_id): Hibernate выполняет
+        // обновления раньше удалений.
+        repository.flush();
+        keepers.forEach((item, resolvedUrl) -> {
+            item.setUrl(canonicalizer.canonicalize(item.getUrl()));
+            item.setPage(pageFor(resolvedUrl, item.getPage()));
+            item.setChangeSeq(repository.nextChangeSeq());
+            repository.save(item);
+            savedUrls.urlSaved(userId, item.getUrl());
+            onItemSaved(item, OutboxEventType.ITEM_UPDATED);
+        });
+        return merged;
+    }
+
+    @Transactional
+    @Override
+    public void completeResolution(long userId, long itemId, UrlMetaDataRetriever.UrlMetadata metadata) {
+        // Как и в addNewItem: версии всех, кто ждёт ту же страницу, блокируются заранее
+        // в общем порядке - её заполнение попадёт и в их списки.
+        String resolvedUrl = canonicalizer.canonicalize(metadata.getResolvedUrl());
+        itemVersions.lockWithPage(userId, resolvedUrl);
+        Optional<Item> found = repository.findByUserIdAndId(userId, itemId);
+        if (found.isEmpty()) {
+            // Вещь удалили, пока она ждала загрузки.
+            return;
+        }
+        Item item = found.get();
+        WebPage placeholder = item.getPage();
+        WebPage page = resolvedUrl.equals(placeholder.getResolvedUrl())
+                ? placeholder
+                : pageRepository.findByResolvedUrl(resolvedUrl)
+                        .orElseGet(() -> pageRepository.save(new WebPage().setResolvedUrl(resolvedUrl)));
+        // Загруженные метаданные общей страницы обновляет только UrlMetadataRefresher.
+        boolean pageFilled = page.getDateResolved() == null;
+        if (pageFilled) {
+            refreshPolicy.fill(page, metadata);
+        }
+
+        Optional<Item> samePage = page.equals(placeholder)
+                ? Optional.empty()
+                : repository.findByUserIdAndPageId(userId, page.getId());
+        if (samePage.isPresent()) {
+            // Адрес привёл на страницу, которую пользователь уже сохранил под другим
+            // адресом: вещь-заготовка сливается с ней, как при слиянии дубликатов.
+            Item keeper = samePage.get();
+            keeper.getTags().addAll(item.getTags());
+            keeper.setUnread(keeper.isUnread() && item.isUnread());
+            keeper.setChangeSeq(repository.nextChangeSeq());
+            repository.moveNotes(userId, List.of(itemId), keeper.getId());
+            repository.delete(item);
+            recordDeletion(userId, itemId);
+            filterIndex.itemDeleted(userId, itemId, itemVersions.bump(userId));
+            onItemSaved(repository.save(keeper), OutboxEventType.ITEM_UPDATED);
+        } else {
+            item.setPage(page);
+            item.setChangeSeq(repository.nextChangeSeq());
+            onItemSaved(repository.save(item), OutboxEventType.ITEM_UPDATED);
+        }
+
+        if (pageFilled) {
+            // Заготовку могли ждать вещи других пользователей, как в addNewItem.
+            repository.flush();
+            itemVersions.bumpByPage(page.getId()).keySet().forEach(filterIndex::forget);
+            repository.bumpChangeSeqByPageId(page.getId());
+        }
+
+        if (!page.equals(placeholder)) {
+            // На заготовку могут ссылаться вещи других пользователей, ждущие своей загрузки.
+            repository.flush();
+            pageRepository.deleteIfUnreferenced(placeholder.getId());
+        }
+    }
+
+    // Страница общая для всех пользователей, поэтому её адрес не меняется на месте:
+    // вещь переводится на страницу с каноническим адресом, а если такой ещё нет -
+    // на новую с метаданными прежней.
+    private WebPage pageFor(String resolvedUrl, WebPage current) {
+        if (resolvedUrl.equals(current.getResolvedUrl())) {
+            return current;
+        }
+        return pageRepository.findByResolvedUrl(resolvedUrl)
+                .orElseGet(() -> new WebPage()
+                        .setResolvedUrl(resolvedUrl)
+                        .setMimeType(current.getMimeType())
+                        .setTitle(current.getTitle())
+                        .setHasImage(current.isHasImage())
+                        .setHasVideo(current.isHasVideo())
+                        .setDateResolved(current.getDateResolved())
+                        .setEtag(current.getEtag())
+                        .setLastModified(current.getLastModified())
+                        .setTtlSec(current.getTtlSec())
+                        .setRefreshAfter(current.getRefreshAfter()));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ItemDto> getItems(GetItemRequest req) {
+        return ItemMapper.mapToItemDto(getItemRows(req));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ItemRows getItemRows(GetItemRequest req) {
         QItem item = QItem.item;
 
         List<BooleanExpression> conditions = new ArrayList<>();
 
         conditions.add(item.user.id.eq(req.getUserId()));
 
-        GetItemRequest.State state = req.getState();
+        // Фильтр по тегам сначала считаем по битовому индексу: если кандидатов немного,
+        // то из БД достаточно выбрать страницу по списку идентификаторов.
+        Optional<List<Long>> candidateIds = req.hasTags()
+                ? filterIndex.findCandidateIds(req)
+                : Optional.empty();
 
-        if(!state.equals(GetItemRequest.State.ALL)) {
-            conditions.add(makeStateCondition(state));
-        }
+        if(candidateIds.isPresent()) {
+            if(candidateIds.get().isEmpty()) {
+                return ItemRows.empty();
+            }
+            conditions.add(item.id.in(candidateIds.get()));
+        } else {
+            GetItemRequest.State state = req.getState();
 
-        GetItemRequest.ContentType contentType = req.getContentType();
-        if(!contentType.equals(GetItemRequest.ContentType.ALL)) {
-            conditions.add(makeContentTypeCondition(contentType));
-        }
+            if(!state.equals(GetItemRequest.State.ALL)) {
+                conditions.add(makeStateCondition(state));
+            }
+
+            GetItemRequest.ContentType contentType = req.getContentType();
+            if(!contentType.equals(GetItemRequest.ContentType.ALL)) {
+                conditions.add(makeContentTypeCondition(contentType));
+            }
 
-        if(req.hasTags()) {
-            conditions.add(item.tags.any().in(req.getTags()));
+            if(req.hasTags()) {
+                conditions.add(item.tags.any().in(req.getTags()));
+            }
         }
 
         BooleanExpression finalCondition = conditions.stream()
                 .reduce(BooleanExpression::and)
                 .get();
 
-        Sort sort = makeOrderByClause(req.getSort());
-        PageRequest pageRequest = PageRequest.of(0, req.getLimit(), sort);
+        // Сначала выбираем только идентификаторы страницы, затем читаем по ним
+        // проекции и теги одним запросом каждое - без загрузки сущностей.
+        List<Long> pageIds = queryFactory
+                .select(item.id)
+                .from(item)
+                .where(finalCondition)
+                .orderBy(makeOrderByClause(req.getSort()), item.id.asc())
+                .limit(req.getLimit())
+                .fetch();
+        return loadUserItems(req.getUserId(), pageIds);
+    }
 
-        Iterable<Item> items = repository.findAll(finalCondition, pageRequest);
-        return ItemMapper.mapToItemDto(items);
+    // Тело ответа кэшируется под версией, прочитанной с основного сервера, поэтому
+    // строки не должны быть старше неё: пока реплика не дошла до этой версии,
+    // список читается с основного сервера.
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ItemRows getItemRows(GetItemRequest req, long minVersion) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        ItemRows rows = readOnly.execute(status ->
+                itemVersions.current(req.getUserId()) >= minVersion ? getItemRows(req) : null);
+        return rows != null ? rows : transactionTemplate.execute(status -> getItemRows(req));
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<ItemDto> getUserItems(String lastName) {
-        List<Item> foundItems = repository.findItemsByLastNamePrefix(lastName);
-        return ItemMapper.mapToItemDto(foundItems);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemDto> getUserItems(String lastNamePrefix, GetItemRequest.Sort sort, int from, int size) {
+        return ItemMapper.mapToItemDto(getUserItemRows(lastNamePrefix, sort, from, size));
     }
 
+    // Пользователи с таким префиксом фамилии могут быть на любом шарде. С одним шардом
+    // смещение выполняет сама база; с несколькими шарды читаются порциями от последней
+    // полученной с каждого вещи, пока слияние не пропустит from и не наберёт страницу.
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ItemRows getUserItemRows(String lastNamePrefix, GetItemRequest.Sort sort, int from, int size) {
+        if (from > MAX_LAST_NAME_OFFSET) {
+            throw new BadRequestException("from must not exceed " + MAX_LAST_NAME_OFFSET);
+        }
+        int skip = Math.max(from, 0);
+        int limit = Math.min(Math.max(size, 1), MAX_LAST_NAME_PAGE_SIZE);
+        if (shards.count() == 1) {
+            return shards.onEachShard(() -> lastNamePrefixRows(lastNamePrefix, sort, null, skip, limit)).get(0);
+        }
+        int chunk = Math.min(skip + limit, STREAM_CHUNK_SIZE);
+        ItemRowsMerge merge = new ItemRowsMerge(sort, shards.count());
+        List<ItemView> items = new ArrayList<>();
+        Map<Long, List<String>> tags = new HashMap<>();
+        int skipped = 0;
+        while (items.size() < limit && !merge.isDone()) {
+            fetchMore(lastNamePrefix, sort, merge, chunk);
+            skipped += merge.skip(skip - skipped);
+            if (skipped == skip) {
+                ItemRows taken = merge.take(limit - items.size());
+                items.addAll(taken.getItems());
+                tags.putAll(taken.getTagsByItemId());
+            }
+        }
+        return new ItemRows(items, tags);
+    }
+
+    // Каждый шард читается порциями по STREAM_CHUNK_SIZE: следующая порция начинается
+    // после последней полученной с него вещи, а клиенту уходит всё, что уже можно
+    // выдать в общем порядке. В памяти остаётся не больше порции на шард.
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamUserItemRows(String lastNamePrefix, GetItemRequest.Sort sort, RowsHandler handler) throws IOException {
+        ItemRowsMerge merge = new ItemRowsMerge(sort, shards.count());
+        do {
+            fetchMore(lastNamePrefix, sort, merge, STREAM_CHUNK_SIZE);
+            ItemRows ready = merge.take(Integer.MAX_VALUE);
+            if (!ready.getItems().isEmpty()) {
+                handler.handle(ready);
+            }
+        } while (!merge.isDone());
+    }
+
+    // Следующая порция из chunk вещей с каждого шарда, у которого кончились полученные.
+    private void fetchMore(String lastNamePrefix, GetItemRequest.Sort sort, ItemRowsMerge merge, int chunk) {
+        List<ItemRows> fetched = shards.onEachShardIndexed(shard -> merge.needsMore(shard)
+                ? lastNamePrefixRows(lastNamePrefix, sort, merge.lastFetched(shard), 0, chunk)
+                : null);
+        for (int shard = 0; shard < fetched.size(); shard++) {
+            ItemRows rows = fetched.get(shard);
+            if (rows != null) {
+                merge.add(shard, rows, rows.getItems().size() < chunk);
+            }
+        }
+    }
+
+    // Вещи пользователей с префиксом фамилии на текущем шарде - limit после after,
+    // начиная с offset. Задача обхода шардов выполняется в другом потоке и открывает
+    // транзакцию сама; идентификаторы и проекции читаются из одного снимка, поэтому
+    // их число совпадает.
+    private ItemRows lastNamePrefixRows(String lastNamePrefix, GetItemRequest.Sort sort, ItemView after,
+                                        int offset, int limit) {
+        TransactionTemplate snapshot = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        snapshot.setReadOnly(true);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        return snapshot.execute(status -> loadItems(lastNamePrefixQuery(lastNamePrefix, sort, after)
+                .offset(offset)
+                .limit(limit)
+                .fetch()));
+    }
+
+    // startsWith экранирует % и _ в префиксе и передаёт шаблон параметром, поэтому
+    // Postgres может использовать индекс users (last_name text_pattern_ops).
+    private JPAQuery<Long> lastNamePrefixQuery(String lastNamePrefix, GetItemRequest.Sort sort, ItemView after) {
+        QItem item = QItem.item;
+        return queryFactory
+                .select(item.id)
+                .from(item)
+                .where(item.user.lastName.startsWith(lastNamePrefix), after == null ? null : after(sort, after))
+                .orderBy(mergeOrderByClause(sort), item.id.asc());
+    }
+
+    // Порядок, в котором вещи шардов сливает ItemRowsMerge: строки сравниваются
+    // по кодовым точкам, как в сопоставлении "C", а не по сопоставлению базы.
+    private static OrderSpecifier<?> mergeOrderByClause(GetItemRequest.Sort sort) {
+        QItem item = QItem.item;
+        switch (sort) {
+            case TITLE: return collateC(item.page.title).asc();
+            case SITE: return collateC(item.page.resolvedUrl).asc();
+            case OLDEST: return item.page.dateResolved.asc();
+            case NEWEST:
+            default: return item.page.dateResolved.desc();
+        }
+    }
+
+    private static StringExpression collateC(StringExpression value) {
+        return Expressions.stringTemplate(COLLATE_C + "({0})", value);
+    }
+
+    // Условие "после вещи after" в порядке mergeOrderByClause и с тем же положением NULL:
+    // в Postgres они идут последними при сортировке по возрастанию и первыми - по убыванию.
+    private static BooleanExpression after(GetItemRequest.Sort sort, ItemView after) {
+        QItem item = QItem.item;
+        switch (sort) {
+            case TITLE: return after(collateC(item.page.title), after.getTitle(), false, after.getId());
+            case SITE: return after(collateC(item.page.resolvedUrl), after.getResolvedUrl(), false, after.getId());
+            case OLDEST: return after(item.page.dateResolved, after.getDateResolved(), false, after.getId());
+            case NEWEST:
+            default: return after(item.page.dateResolved, after.getDateResolved(), true, after.getId());
+        }
+    }
+
+    private static <T extends Comparable<?>> BooleanExpression after(ComparableExpression<T> key, T value,
+                                                                     boolean descending, long id) {
+        BooleanExpression laterId = QItem.item.id.gt(id);
+        if (value == null) {
+            BooleanExpression sameKey = key.isNull().and(laterId);
+            return descending ? key.isNotNull().or(sameKey) : sameKey;
+        }
+        BooleanExpression laterKey = descending ? key.lt(value) : key.gt(value).or(key.isNull());
+        return laterKey.or(key.eq(value).and(laterId));
+    }
+
+    // Обе выборки читаются из одного снимка, иначе изменение, зафиксированное
+    // между ними, попадёт в ответ наполовину, а курсор уйдёт дальше второй половины.
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public ItemChangesDto getChanges(long userId, long since, int limit) {
+        PageRequest page = PageRequest.of(0, limit + 1, Sort.by("changeSeq").ascending());
+        List<Item> changed = repository.findByUserIdAndChangeSeqGreaterThan(userId, since, page);
+        List<ItemTombstone> deleted = tombstoneRepository.findByUserIdAndChangeSeqGreaterThan(userId, since, page);
+
+        // Обе выборки упорядочены по change_seq - сливаем их и отдаём первые limit изменений,
+        // курсором становится номер последнего отданного изменения.
+        List<ItemDto> changedDtos = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        long cursor = since;
+        int i = 0;
+        int j = 0;
+        while(changedDtos.size() + deletedIds.size() < limit && (i < changed.size() || j < deleted.size())) {
+            boolean nextIsItem = j >= deleted.size()
+                    || (i < changed.size() && changed.get(i).getChangeSeq() < deleted.get(j).getChangeSeq());
+            if(nextIsItem) {
+                Item item = changed.get(i++);
+                changedDtos.add(ItemMapper.mapToItemDto(item));
+                cursor = item.getChangeSeq();
+            } else {
+                ItemTombstone tombstone = deleted.get(j++);
+                deletedIds.add(tombstone.getItemId());
+                cursor = tombstone.getChangeSeq();
+            }
+        }
+
+        return ItemChangesDto.builder()
+                .cursor(cursor)
+                .hasMore(i < changed.size() || j < deleted.size())
+                .changed(changedDtos)
+                .deleted(deletedIds)
+                .build();
+    }
+
+    // Пользователи разнесены по шардам целиком, поэтому счётчики с разных шардов
+    // не складываются, а объединяются. Пока пользователь переносится, он есть
+    // на двух шардах с одинаковыми данными - такой повтор схлопывается.
+    @Override
+    public List<ItemCountByUser> countItemsByUser(String urlPattern) {
+        return mergeCounts(shards.onEachShard(() -> repository.countItemsByUser(urlPattern)));
+    }
+
+    @Override
+    public List<ItemCountByUser> countItemsByUserRegistered(LocalDate dateFrom, LocalDate dateTo) {
+        return mergeCounts(shards.onEachShard(() -> repository.countByUserRegistered(dateFrom, dateTo)));
+    }
+
+    private static List<ItemCountByUser> mergeCounts(List<List<ItemCountByUser>> perShard) {
+        Map<Long, ItemCountByUser> byUser = new HashMap<>();
+        for (List<ItemCountByUser> counts : perShard) {
+            counts.forEach(count -> byUser.merge(count.getUserId(), count,
+                    (a, b) -> a.getCount() >= b.getCount() ? a : b));
+        }
+        return byUser.values().stream()
+                .sorted(Comparator.comparing(ItemCountByUser::getCount).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Transactional
     @Override
     public ItemDto changeItem(long userId, ModifyItemRequest request) {
         Optional<Item> maybeItem = getAndCheckPermissions(userId, request.getItemId());
         if(maybeItem.isPresent()) {
+            itemVersions.lock(userId);
             Item item = maybeItem.get();
 
             item.setUnread(!request.isRead());
@@ -119,20 +596,37 @@ class ItemServiceImpl implements ItemService {
             if(request.hasTags()) {
                 item.getTags().addAll(request.getTags());
             }
+            item.setChangeSeq(repository.nextChangeSeq());
             item = repository.save(item);
-            return ItemMapper.mapToItemDto(item);
+            return onItemSaved(item, OutboxEventType.ITEM_UPDATED);
         } else {
             throw new NotFoundException("The item with id " + request.getItemId() + " was not found");
         }
     }
 
+    private void recordDeletion(long userId, long itemId) {
+        ItemTombstone tombstone = new ItemTombstone()
+                .setItemId(itemId)
+                .setUserId(userId)
+                .setChangeSeq(repository.nextChangeSeq());
+        tombstoneRepository.save(tombstone);
+        outboxWriter.record(OutboxEventType.ITEM_DELETED, itemId, userId, Map.of("id", itemId));
+    }
+
+    private ItemDto onItemSaved(Item item, OutboxEventType eventType) {
+        ItemDto dto = ItemMapper.mapToItemDto(item);
+        long userId = item.getUser().getId();
+        outboxWriter.record(eventType, item.getId(), userId, dto);
+        filterIndex.itemSaved(item, itemVersions.bump(userId));
+        return dto;
+    }
+
+    // Вещь ищется вместе с пользователем, чтобы запрос попал в одну секцию items.
+    // Поиск по одному id нужен только для того, чтобы отличить чужую вещь от отсутствующей.
     private Optional<Item> getAndCheckPermissions(long userId, long itemId) {
-        Optional<Item> maybeItem = repository.findById(itemId);
-        if (maybeItem.isPresent()) {
-            Item item = maybeItem.get();
-            if(!item.getUser().getId().equals(userId)) {
-                throw new InsufficientPermissionException("You do not have permission to perform this operation");
-            }
+        Optional<Item> maybeItem = repository.findByUserIdAndId(userId, itemId);
+        if (maybeItem.isEmpty() && repository.existsById(itemId)) {
+            throw new InsufficientPermissionException("You do not have permission to perform this operation");
         }
         return maybeItem;
     }
@@ -146,22 +640,80 @@ class ItemServiceImpl implements ItemService {
     }
 
     private BooleanExpression makeContentTypeCondition(GetItemRequest.ContentType contentType) {
+        return QItem.item.page.mimeType.eq(mimeTypeOf(contentType));
+    }
+
+    static String mimeTypeOf(GetItemRequest.ContentType contentType) {
         if(contentType.equals(GetItemRequest.ContentType.ARTICLE)) {
-            return QItem.item.mimeType.eq("text");
+            return "text";
         } else if(contentType.equals(GetItemRequest.ContentType.IMAGE)) {
-            return QItem.item.mimeType.eq("image");
+            return "image";
         } else {
-            return QItem.item.mimeType.eq("video");
+            return "video";
         }
     }
 
-    private Sort makeOrderByClause(GetItemRequest.Sort sort) {
+    private OrderSpecifier<?> makeOrderByClause(GetItemRequest.Sort sort) {
         switch (sort) {
-            case TITLE: return Sort.by("title").ascending();
-            case SITE: return Sort.by("resolvedUrl").ascending();
-            case OLDEST: return Sort.by("dateResolved").ascending();
+            case TITLE: return QItem.item.page.title.asc();
+            case SITE: return QItem.item.page.resolvedUrl.asc();
+            case OLDEST: return QItem.item.page.dateResolved.asc();
             case NEWEST:
-            default: return Sort.by("dateResolved").descending();
+            default: return QItem.item.page.dateResolved.desc();
+        }
+    }
+
+    // Читает проекции вещей по идентификаторам и возвращает их в порядке ids.
+    // Вещи могут принадлежать разным пользователям, поэтому запросы идут во все секции.
+    private ItemRows loadItems(List<Long> ids) {
+        if(ids.isEmpty()) {
+            return ItemRows.empty();
+        }
+        List<ItemView> ordered = inOrder(ids, repository.findViewsByIdIn(ids));
+        return new ItemRows(ordered, loadTags(ordered, repository::findTagsByItemIdIn));
+    }
+
+    // То же для вещей одного пользователя: условие на user_id оставляет одну секцию.
+    private ItemRows loadUserItems(long userId, List<Long> ids) {
+        if(ids.isEmpty()) {
+            return ItemRows.empty();
+        }
+        List<ItemView> ordered = inOrder(ids, repository.findViewsByUserIdAndIdIn(userId, ids));
+        return new ItemRows(ordered, loadTags(ordered, batch -> repository.findTagsByUserIdAndItemIdIn(userId, batch)));
+    }
+
+    private static List<ItemView> inOrder(List<Long> ids, List<ItemView> views) {
+        Map<Long, ItemView> viewsById = views.stream()
+                .collect(Collectors.toMap(ItemView::getId, Function.identity()));
+        List<ItemView> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ItemView view = viewsById.get(id);
+            if(view != null) {
+                ordered.add(view);
+            }
+        }
+        return ordered;
+    }
+
+    private static Map<Long, List<String>> loadTags(List<ItemView> views,
+                                                    Function<Collection<Long>, List<ItemTag>> finder) {
+        List<Long> ids = views.stream()
+                .map(ItemView::getId)
+                .collect(Collectors.toList());
+        List<ItemTag> tags = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += TAGS_BATCH_SIZE) {
+            Collection<Long> batch = ids.subList(from, Math.min(from + TAGS_BATCH_SIZE, ids.size()));
+            tags.addAll(finder.apply(batch));
+        }
+        return groupTags(tags);
+    }
+
+    // Теги вещи хранятся как множество, повторов в выборке нет - достаточно списка.
+    private static Map<Long, List<String>> groupTags(List<ItemTag> tags) {
+        Map<Long, List<String>> tagsByItemId = new HashMap<>();
+        for (ItemTag tag : tags) {
+            tagsByItemId.computeIfAbsent(tag.getItemId(), id -> new ArrayList<>(4)).add(tag.getName());
         }
+        return tagsByItemId;
     }
 }
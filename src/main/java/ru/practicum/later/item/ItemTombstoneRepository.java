@@ -0,0 +1,12 @@
+package ru.practicum.later.item;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.later.item.model.ItemTombstone;
+
+import java.util.List;
+
+interface ItemTombstoneRepository extends JpaRepository<ItemTombstone, Long> {
+
+    List<ItemTombstone> findByUserIdAndChangeSeqGreaterThan(long userId, long changeSeq, Pageable page);
+}
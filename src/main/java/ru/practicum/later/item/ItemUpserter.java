@@ -0,0 +1,111 @@
+package ru.practicum.later.item;
+
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Добавляет вещь пользователя или дополняет тегами уже сохранённую с той же
+// страницей одним запросом. Проверка "найти, потом вставить" при одновременном
+// сохранении одного адреса падала на UNIQUE(user_id, url_id) уже после
+// загрузки страницы; здесь конфликт разрешает сама БД.
+@Component
+class ItemUpserter {
+    private static final String[] PAGE_COLUMNS = {"mime_type", "title", "has_image", "has_video", "date_resolved",
+            "etag", "last_modified", "ttl_sec", "refresh_after"};
+
+    // Страница общая для всех пользователей: если её уже сохранил кто-то другой,
+    // вещь ссылается на существующую строку. Загруженные раньше метаданные не меняются -
+    // их обновляет UrlMetadataRefresher вместе с вещами всех сохранивших страницу;
+    // заполняется только заготовка (date_resolved пуст), и тогда page_filled сообщает,
+    // что её могли ждать вещи других пользователей. old_page видит строку такой,
+    // какой она была до запроса. Идентификатор новой вещи берётся заранее: совпал
+    // с возвращённым - строка вставлена, иначе обновлена существующая. Номер изменения
+    // у существующей вещи меняется, только если пришли теги, - так же, как при
+    // добавлении тегов через сущность.
+    private static final String UPSERT = "with old_page as (" +
+            "    select u.date_resolved from urls as u where u.resolved_url = ?" +
+            "), " +
+            "page as (" +
+            "    insert into urls as u (resolved_url, " + String.join(", ", PAGE_COLUMNS) + ")" +
+            "    values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" +
+            "    on conflict (resolved_url) do update set " +
+            Arrays.stream(PAGE_COLUMNS)
+                    .map(column -> column + " = case when u.date_resolved is null and excluded.date_resolved is not null" +
+                            " then excluded." + column + " else u." + column + " end")
+                    .collect(Collectors.joining(", ")) +
+            "    returning u.id, u.date_resolved" +
+            "), " +
+            "new_item as (select nextval('item_id_seq') as id), " +
+            "upserted as (" +
+            "    insert into items as it (id, user_id, url, url_id, unread)" +
+            "    select new_item.id, ?, ?, page.id, true from new_item, page" +
+            "    on conflict (user_id, url_id) do update" +
+            "        set change_seq = case when cardinality(?) > 0 then nextval('change_seq') else it.change_seq end" +
+            "    returning it.id" +
+            "), " +
+            "added_tags as (" +
+            "    insert into tags (user_id, item_id, name)" +
+            "    select ?, upserted.id, t.name from upserted, unnest(?) as t(name)" +
+            "    on conflict (user_id, item_id, name) do nothing" +
+            ") " +
+            "select upserted.id, upserted.id = new_item.id as inserted, page.id as page_id, " +
+            "    page.date_resolved is not null" +
+            "        and exists (select 1 from old_page where old_page.date_resolved is null) as page_filled " +
+            "from upserted, new_item, page";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RefreshPolicy refreshPolicy;
+
+    // DataSource тот же, что у EntityManagerFactory, поэтому запрос идёт
+    // в соединении текущей JPA-транзакции.
+    ItemUpserter(DataSource dataSource, RefreshPolicy refreshPolicy) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.refreshPolicy = refreshPolicy;
+    }
+
+    // Адреса передаются отдельно от метаданных: в БД они попадают уже в каноническом виде.
+    Result upsert(long userId, String url, String resolvedUrl,
+                  UrlMetaDataRetriever.UrlMetadata metadata, Set<String> tags) {
+        String[] tagNames = tags == null ? new String[0] : tags.toArray(new String[0]);
+        return jdbcTemplate.query(UPSERT, ps -> {
+            Array tagArray = ps.getConnection().createArrayOf("varchar", tagNames);
+            ps.setString(1, resolvedUrl);
+            ps.setString(2, resolvedUrl);
+            ps.setString(3, metadata.getMimeType());
+            ps.setString(4, metadata.getTitle());
+            ps.setBoolean(5, metadata.isHasImage());
+            ps.setBoolean(6, metadata.isHasVideo());
+            ps.setTimestamp(7, metadata.getDateResolved() == null ? null : Timestamp.from(metadata.getDateResolved()));
+            ps.setString(8, metadata.getEtag());
+            ps.setString(9, metadata.getLastModified());
+            ps.setObject(10, metadata.getTtl() == null ? null : metadata.getTtl().getSeconds(), Types.BIGINT);
+            ps.setTimestamp(11, metadata.getDateResolved() == null ? null
+                    : Timestamp.from(refreshPolicy.refreshAfter(metadata.getDateResolved(), metadata.getTtl())));
+            ps.setLong(12, userId);
+            ps.setString(13, url);
+            ps.setArray(14, tagArray);
+            ps.setLong(15, userId);
+            ps.setArray(16, tagArray);
+        }, rs -> {
+            rs.next();
+            return new Result(rs.getLong("id"), rs.getBoolean("inserted"), rs.getLong("page_id"),
+                    rs.getBoolean("page_filled"));
+        });
+    }
+
+    @Value
+    static class Result {
+        long itemId;
+        boolean inserted;
+        long pageId;
+        boolean pageFilled;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.later.item;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.common.TimestampFormat;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Версия списка вещей пользователя - основа для ETag и ключ кэша ответов. Хранится
+// в БД (item_list_versions) и увеличивается в той же транзакции, что меняет вещи
+// или теги, поэтому её видят все узлы, а новая версия становится видна вместе
+// с изменением, не раньше. Строка версии блокируется до конца транзакции, так что
+// записи одного пользователя выполняются по очереди.
+@Component
+class ItemVersions {
+    private static final String CURRENT = "select version from item_list_versions where user_id = ?";
+    private static final String BUMP = "insert into item_list_versions as v (user_id, version) values (?, 1) " +
+            "on conflict (user_id) do update set version = v.version + 1 " +
+            "returning v.version";
+    // Берёт блокировку строки версии, не меняя её.
+    private static final String LOCK = "insert into item_list_versions as v (user_id, version) values (?, 0) " +
+            "on conflict (user_id) do update set version = v.version";
+    // Пользователь и все, кто уже сохранил страницу с этим адресом, - в порядке user_id.
+    private static final String LOCK_WITH_PAGE = "insert into item_list_versions as v (user_id, version) " +
+            "select ids.user_id, 0 from (" +
+            "    select cast(? as bigint) as user_id" +
+            "    union" +
+            "    select it.user_id from items as it join urls as u on u.id = it.url_id where u.resolved_url = ?" +
+            ") as ids order by ids.user_id " +
+            "on conflict (user_id) do update set version = v.version";
+    // Строки блокируются в порядке user_id, чтобы два обновления одной страницы
+    // не ждали друг друга крест-накрест.
+    private static final String BUMP_BY_PAGE = "insert into item_list_versions as v (user_id, version) " +
+            "select distinct it.user_id, 1 from items as it where it.url_id = ? order by it.user_id " +
+            "on conflict (user_id) do update set version = v.version + 1 " +
+            "returning v.user_id, v.version";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // DataSource тот же, что у EntityManagerFactory: внутри транзакции запросы идут
+    // в её соединении, вне транзакции - на основной сервер шарда пользователя.
+    ItemVersions(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    long current(long userId) {
+        List<Long> versions = jdbcTemplate.queryForList(CURRENT, Long.class, userId);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    String etag(long userId, long version, TimestampFormat timestampFormat) {
+        // Тела ответов в разных форматах дат различаются, поэтому и ETag у них разный.
+        String suffix = timestampFormat == TimestampFormat.EPOCH_MILLIS ? "-ms" : "";
+        return "\"" + userId + "-" + version + suffix + "\"";
+    }
+
+    // Записи одного пользователя берут номера изменений (change_seq) только под этой
+    // блокировкой, которая держится до фиксации. Поэтому номера его изменений
+    // становятся видны в порядке возрастания, и курсор ленты изменений не проскакивает
+    // номер, взятый ещё не зафиксированной транзакцией.
+    void lock(long userId) {
+        jdbcTemplate.update(LOCK, userId);
+    }
+
+    // То же перед сохранением страницы, которая может оказаться общей заготовкой:
+    // версии её пользователей придётся увеличить, и блокировки берутся заранее
+    // в общем порядке, а не по одной поверх уже взятой.
+    void lockWithPage(long userId, String resolvedUrl) {
+        jdbcTemplate.update(LOCK_WITH_PAGE, userId, resolvedUrl);
+    }
+
+    // Возвращает новую версию; вызывается в транзакции, которая меняет вещи.
+    long bump(long userId) {
+        Long version = jdbcTemplate.queryForObject(BUMP, Long.class, userId);
+        return version == null ? 0 : version;
+    }
+
+    // Увеличивает версии всех пользователей, сохранивших страницу, и возвращает
+    // новые версии по пользователям.
+    Map<Long, Long> bumpByPage(long pageId) {
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        jdbcTemplate.query(BUMP_BY_PAGE, rs -> {
+            versions.put(rs.getLong(1), rs.getLong(2));
+        }, pageId);
+        return versions;
+    }
+}
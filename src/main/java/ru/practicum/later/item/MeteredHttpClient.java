@@ -0,0 +1,274 @@
+package ru.practicum.later.item;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Обёртка над HttpClient загрузки страниц: перед запросом проверяет хост через DnsCache
+// и записывает время каждого запроса с хостом, версией протокола и признаком того,
+// пришёл ли ответ по новому соединению или по уже открытому (later.retriever.requests).
+// Перенаправления обёртка выполняет сама (клиент внутри создаётся с Redirect.NEVER):
+// иначе хосты из Location не проходили бы проверку и каждый шаг не попадал бы в метрики.
+// HttpClient не сообщает о соединениях, поэтому новое соединение определяется по TLS-сессии:
+// у каждого полного рукопожатия свои идентификатор и время создания, а ответы по уже
+// открытому соединению приходят с той же сессией. Новое соединение с TLS 1.2, возобновившее
+// прежнюю сессию сокращённым рукопожатием, приходит с её идентификатором и временем создания
+// и тоже считается reused: признак показывает, было ли полное рукопожатие, а не открывалось
+// ли соединение. Для http без TLS признак неизвестен.
+class MeteredHttpClient extends HttpClient {
+    private static final String OTHER_HOST = "other";
+    // Как у HttpClient по умолчанию (jdk.httpclient.redirects.retrylimit).
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_SESSIONS_PER_HOST = 64;
+    private static final int MAX_TRACKED_HOSTS = 1000;
+
+    private final HttpClient delegate;
+    private final Redirect redirect;
+    private final DnsCache dnsCache;
+    private final MeterRegistry registry;
+    private final int maxHostTags;
+    private final Set<String> hostTags = ConcurrentHashMap.newKeySet();
+    // Последние TLS-сессии по хостам; обе карты ограничены, старые записи вытесняются.
+    private final Map<String, Set<String>> sessionsByHost = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+            return size() > MAX_TRACKED_HOSTS;
+        }
+    };
+
+    MeteredHttpClient(HttpClient delegate, Redirect redirect, DnsCache dnsCache, MeterRegistry registry,
+                      int maxHostTags) {
+        this.delegate = delegate;
+        this.redirect = redirect;
+        this.dnsCache = dnsCache;
+        this.registry = registry;
+        this.maxHostTags = maxHostTags;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        for (int redirects = 0; ; redirects++) {
+            checkHost(request);
+            long start = System.nanoTime();
+            HttpResponse<T> response = delegate.send(request, skippingRedirectBody(responseBodyHandler));
+            record(response, System.nanoTime() - start);
+            Optional<HttpRequest> next = redirected(request, response, redirects);
+            if (next.isEmpty()) {
+                return response;
+            }
+            request = next.get();
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return sendAsync(request, responseBodyHandler, null);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return sendAsync(request, responseBodyHandler, pushPromiseHandler, 0);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                             HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                             HttpResponse.PushPromiseHandler<T> pushPromiseHandler,
+                                                             int redirects) {
+        try {
+            checkHost(request);
+        } catch (UnknownHostException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        return delegate.sendAsync(request, skippingRedirectBody(responseBodyHandler), pushPromiseHandler)
+                .thenCompose(response -> {
+                    record(response, System.nanoTime() - start);
+                    final Optional<HttpRequest> next;
+                    try {
+                        next = redirected(request, response, redirects);
+                    } catch (IOException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    return next.isEmpty() ? CompletableFuture.completedFuture(response)
+                            : sendAsync(next.get(), responseBodyHandler, pushPromiseHandler, redirects + 1);
+                });
+    }
+
+    private void checkHost(HttpRequest request) throws UnknownHostException {
+        String host = request.uri().getHost();
+        if (host != null) {
+            dnsCache.resolve(host);
+        }
+    }
+
+    // Тело ответа с перенаправлением не нужно вызывающему и пропускается,
+    // как это делает сам HttpClient.
+    private <T> HttpResponse.BodyHandler<T> skippingRedirectBody(HttpResponse.BodyHandler<T> handler) {
+        if (redirect == Redirect.NEVER) {
+            return handler;
+        }
+        return info -> isRedirect(info.statusCode()) && info.headers().firstValue("Location").isPresent()
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : handler.apply(info);
+    }
+
+    // Следующий запрос по тем же правилам, что у HttpClient: 303 превращается в GET,
+    // остальные коды повторяют метод и тело; NORMAL не переходит с https на http.
+    private Optional<HttpRequest> redirected(HttpRequest request, HttpResponse<?> response, int redirects)
+            throws IOException {
+        Optional<String> location = response.headers().firstValue("Location");
+        if (redirect == Redirect.NEVER || !isRedirect(response.statusCode()) || location.isEmpty()) {
+            return Optional.empty();
+        }
+        URI target = request.uri().resolve(location.get());
+        if (redirect == Redirect.NORMAL
+                && "https".equalsIgnoreCase(request.uri().getScheme())
+                && !"https".equalsIgnoreCase(target.getScheme())) {
+            return Optional.empty();
+        }
+        if (redirects >= MAX_REDIRECTS) {
+            throw new IOException("Too many redirects: " + request.uri());
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .expectContinue(request.expectContinue());
+        if (response.statusCode() == 303 && !"HEAD".equals(request.method())) {
+            builder.GET();
+        } else {
+            builder.method(request.method(),
+                    request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()));
+        }
+        request.timeout().ifPresent(builder::timeout);
+        request.version().ifPresent(builder::version);
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            header.getValue().forEach(value -> builder.header(header.getKey(), value));
+        }
+        return Optional.of(builder.build());
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private void record(HttpResponse<?> response, long elapsedNanos) {
+        String host = response.uri().getHost();
+        Timer.builder("later.retriever.requests")
+                .tag("host", hostTag(host))
+                .tag("version", response.version() == null ? "unknown" : response.version().name())
+                .tag("connection", connection(host, response.sslSession()))
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Отдельный тег получают только первые maxHostTags хостов, остальные
+    // считаются вместе, чтобы число метрик не росло с числом сайтов.
+    private String hostTag(String host) {
+        if (host == null) {
+            return OTHER_HOST;
+        }
+        if (hostTags.contains(host)) {
+            return host;
+        }
+        if (hostTags.size() < maxHostTags && hostTags.add(host)) {
+            return host;
+        }
+        return OTHER_HOST;
+    }
+
+    private String connection(String host, Optional<SSLSession> sslSession) {
+        if (host == null || sslSession == null || sslSession.isEmpty()) {
+            return "unknown";
+        }
+        SSLSession session = sslSession.get();
+        // Клиент отдаёт в каждом ответе новую обёртку над сессией, поэтому сравниваются
+        // её данные, а не ссылки.
+        String key = Base64.getEncoder().encodeToString(session.getId()) + "-" + session.getCreationTime();
+        synchronized (sessionsByHost) {
+            Set<String> sessions = sessionsByHost.computeIfAbsent(host, h -> Collections.newSetFromMap(
+                    new LinkedHashMap<>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                            return size() > MAX_SESSIONS_PER_HOST;
+                        }
+                    }));
+            if (sessions.contains(key)) {
+                return "reused";
+            }
+            sessions.add(key);
+            return "new";
+        }
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return redirect;
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.item.model.WebPage;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Когда перепроверять метаданные страницы. Срок берётся из заголовков кэширования
+// её последнего ответа, а если сервер его не указал, - общий по умолчанию. Срок
+// ограничен снизу, чтобы no-cache и max-age=0 не превращались в загрузку на каждом
+// проходе, и сверху, чтобы закрытые страницы всё-таки обнаруживались.
+@Component
+class RefreshPolicy {
+    private final Duration defaultTtl;
+    private final Duration minTtl;
+    private final Duration maxTtl;
+
+    RefreshPolicy(@Value("${url-refresh.default-ttl-hours:168}") long defaultTtlHours,
+                  @Value("${url-refresh.min-ttl-minutes:60}") long minTtlMinutes,
+                  @Value("${url-refresh.max-ttl-hours:720}") long maxTtlHours) {
+        this.defaultTtl = Duration.ofHours(defaultTtlHours);
+        this.minTtl = Duration.ofMinutes(minTtlMinutes);
+        this.maxTtl = Duration.ofHours(maxTtlHours);
+    }
+
+    Instant refreshAfter(Instant resolvedAt, Duration ttl) {
+        Duration effective = ttl == null ? defaultTtl : ttl;
+        if (effective.compareTo(minTtl) < 0) {
+            effective = minTtl;
+        } else if (effective.compareTo(maxTtl) > 0) {
+            effective = maxTtl;
+        }
+        return resolvedAt.plus(effective);
+    }
+
+    // Переносит на страницу свежие метаданные и назначает её следующую проверку.
+    void fill(WebPage page, UrlMetaDataRetriever.UrlMetadata fresh) {
+        page.setMimeType(fresh.getMimeType())
+                .setTitle(fresh.getTitle())
+                .setHasImage(fresh.isHasImage())
+                .setHasVideo(fresh.isHasVideo())
+                .setDateResolved(fresh.getDateResolved())
+                .setEtag(fresh.getEtag())
+                .setLastModified(fresh.getLastModified())
+                .setTtlSec(fresh.getTtl() == null ? null : fresh.getTtl().getSeconds())
+                .setRefreshAfter(refreshAfter(fresh.getDateResolved(), fresh.getTtl()));
+    }
+
+    // Неудачная проверка повторяется не раньше, чем через минимальный срок.
+    Instant retryBefore(Instant now) {
+        return now.minus(minTtl);
+    }
+}
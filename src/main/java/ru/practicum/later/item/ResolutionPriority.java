@@ -0,0 +1,16 @@
+package ru.practicum.later.item;
+
+// Классы загрузки страниц в порядке убывания приоритета: освободившееся место
+// получает первый по порядку класс, у которого есть ожидающие и не исчерпан лимит.
+enum ResolutionPriority {
+    // Добавление вещи через POST /items: пользователь ждёт ответа.
+    INTERACTIVE,
+    // Отложенные и массовые сохранения: очередь повторов (resolve_retries).
+    BULK,
+    // Фоновое обновление метаданных уже загруженных страниц.
+    REFRESH;
+
+    String tag() {
+        return name().toLowerCase();
+    }
+}
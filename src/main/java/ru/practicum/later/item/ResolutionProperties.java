@@ -0,0 +1,47 @@
+package ru.practicum.later.item;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties("url-resolution")
+class ResolutionProperties {
+
+    // Сколько страниц всего загружается одновременно, то есть сколько исходящих
+    // соединений занято загрузкой.
+    private int maxConcurrent = 16;
+
+    // Фоновые классы ограничены частью общего лимита: сколько бы страниц ни ждало
+    // загрузки в фоне, остальное место остаётся добавлению вещей.
+    private Limit interactive = new Limit(16, 2000);
+
+    private Limit bulk = new Limit(4, 60000);
+
+    private Limit refresh = new Limit(2, 60000);
+
+    Limit of(ResolutionPriority priority) {
+        switch (priority) {
+            case INTERACTIVE:
+                return interactive;
+            case BULK:
+                return bulk;
+            case REFRESH:
+                return refresh;
+            default:
+                throw new IllegalArgumentException("Unknown priority: " + priority);
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Limit {
+        private int maxConcurrent;
+        private long maxWaitMs;
+    }
+}
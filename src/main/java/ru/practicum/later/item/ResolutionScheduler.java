@@ -0,0 +1,181 @@
+package ru.practicum.later.item;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Распределяет исходящие соединения загрузки страниц между классами (ResolutionPriority)
+// и пользователями. Освободившееся место получает класс с наивысшим приоритетом, у которого
+// не исчерпан свой лимит, а внутри класса пользователи обслуживаются по очереди: у каждого
+// своя очередь, и после каждой загрузки пользователь уходит в конец круга. Поэтому тысячи
+// страниц одного пользователя не задерживают остальных ни в своём классе, ни в других.
+// Загрузка выполняется в потоке вызывающего; место, которого не дождались за maxWaitMs,
+// считается временной ошибкой, и вещь уходит в очередь повторов.
+@Component
+class ResolutionScheduler {
+    private final int maxConcurrent;
+    private final Map<ResolutionPriority, Lane> lanes = new EnumMap<>(ResolutionPriority.class);
+    private final Object lock = new Object();
+    private int active;
+
+    ResolutionScheduler(ResolutionProperties properties, MeterRegistry registry) {
+        this.maxConcurrent = properties.getMaxConcurrent();
+        if (maxConcurrent <= 0) {
+            throw new IllegalStateException("url-resolution.max-concurrent must be positive: " + maxConcurrent);
+        }
+        for (ResolutionPriority priority : ResolutionPriority.values()) {
+            ResolutionProperties.Limit limit = properties.of(priority);
+            if (limit.getMaxConcurrent() <= 0) {
+                throw new IllegalStateException("url-resolution." + priority.tag()
+                        + ".max-concurrent must be positive: " + limit.getMaxConcurrent());
+            }
+            lanes.put(priority, new Lane(priority, Math.min(limit.getMaxConcurrent(), maxConcurrent),
+                    limit.getMaxWaitMs(), registry));
+        }
+    }
+
+    <T> T call(ResolutionPriority priority, long userId, Supplier<T> task) {
+        Lane lane = lanes.get(priority);
+        acquire(lane, userId);
+        try {
+            return task.get();
+        } finally {
+            release(lane);
+        }
+    }
+
+    private void acquire(Lane lane, long userId) {
+        long start = System.nanoTime();
+        Waiter waiter = new Waiter(userId);
+        synchronized (lock) {
+            lane.enqueue(waiter);
+            dispatch();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(lane.maxWaitMs);
+            try {
+                while (!waiter.granted) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        lane.remove(waiter);
+                        lane.rejected.increment();
+                        throw new TransientItemRetrieverException("Too many pages are being resolved, "
+                                + "the page will be resolved later");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release(lane);
+                } else {
+                    lane.remove(waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to resolve a page", e);
+            } finally {
+                lane.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void release(Lane lane) {
+        synchronized (lock) {
+            lane.active--;
+            active--;
+            dispatch();
+        }
+    }
+
+    // Раздаёт свободные места ожидающим; вызывается под lock.
+    private void dispatch() {
+        boolean granted = false;
+        while (active < maxConcurrent) {
+            Waiter next = null;
+            for (Lane lane : lanes.values()) {
+                if (lane.active < lane.limit && lane.waiting > 0) {
+                    next = lane.poll();
+                    lane.active++;
+                    break;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            next.granted = true;
+            active++;
+            granted = true;
+        }
+        if (granted) {
+            lock.notifyAll();
+        }
+    }
+
+    private static class Waiter {
+        final long userId;
+        boolean granted;
+
+        Waiter(long userId) {
+            this.userId = userId;
+        }
+    }
+
+    // Очереди одного класса по пользователям. Порядок ключей - порядок обслуживания:
+    // пользователь, получивший место, переставляется в конец.
+    private static class Lane {
+        final int limit;
+        final long maxWaitMs;
+        final Map<Long, ArrayDeque<Waiter>> byUser = new LinkedHashMap<>();
+        final Timer waitTimer;
+        final Counter rejected;
+        int active;
+        int waiting;
+
+        Lane(ResolutionPriority priority, int limit, long maxWaitMs, MeterRegistry registry) {
+            this.limit = limit;
+            this.maxWaitMs = maxWaitMs;
+            Tags tags = Tags.of("priority", priority.tag());
+            Gauge.builder("later.resolution.limit", () -> limit).tags(tags).register(registry);
+            Gauge.builder("later.resolution.active", this, lane -> lane.active).tags(tags).register(registry);
+            Gauge.builder("later.resolution.queue", this, lane -> lane.waiting).tags(tags).register(registry);
+            Gauge.builder("later.resolution.queue.users", this, lane -> lane.byUser.size()).tags(tags).register(registry);
+            this.waitTimer = Timer.builder("later.resolution.wait").tags(tags).register(registry);
+            this.rejected = Counter.builder("later.resolution.rejected").tags(tags).register(registry);
+        }
+
+        void enqueue(Waiter waiter) {
+            byUser.computeIfAbsent(waiter.userId, id -> new ArrayDeque<>()).add(waiter);
+            waiting++;
+        }
+
+        Waiter poll() {
+            Iterator<Map.Entry<Long, ArrayDeque<Waiter>>> it = byUser.entrySet().iterator();
+            Map.Entry<Long, ArrayDeque<Waiter>> first = it.next();
+            Waiter waiter = first.getValue().poll();
+            it.remove();
+            if (!first.getValue().isEmpty()) {
+                byUser.put(first.getKey(), first.getValue());
+            }
+            waiting--;
+            return waiter;
+        }
+
+        void remove(Waiter waiter) {
+            ArrayDeque<Waiter> queue = byUser.get(waiter.userId);
+            if (queue != null && queue.remove(waiter)) {
+                waiting--;
+                if (queue.isEmpty()) {
+                    byUser.remove(waiter.userId);
+                }
+            }
+        }
+    }
+}
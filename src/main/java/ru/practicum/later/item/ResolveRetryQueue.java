@@ -0,0 +1,61 @@
+package ru.practicum.later.item;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.item.model.ResolveRetry;
+
+import java.time.Instant;
+import java.util.List;
+
+// Очередь повторных загрузок страниц в БД (resolve_retries). Методы выполняются
+// в транзакции вызывающего, поэтому вещь и её место в очереди сохраняются вместе.
+@Component
+@RequiredArgsConstructor
+class ResolveRetryQueue {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ResolveRetryRepository repository;
+    private final RetryBackoff backoff;
+
+    void enqueue(long userId, long itemId, String url, RuntimeException cause) {
+        Instant now = Instant.now();
+        repository.enqueue(userId, itemId, url, backoff.nextAttemptAt(now, 1), describe(cause), now);
+    }
+
+    // Захваченные записи сразу получают время следующей попытки, как если бы
+    // текущая уже не удалась: если экземпляр упадёт посреди загрузки, запись
+    // вернётся в очередь по обычному расписанию, а не останется захваченной.
+    List<ResolveRetry> claim(int limit) {
+        Instant now = Instant.now();
+        List<ResolveRetry> claimed = repository.claimDue(now, limit);
+        for (ResolveRetry retry : claimed) {
+            int attempts = retry.getAttempts() + 1;
+            retry.setAttempts(attempts)
+                    .setNextAttemptAt(backoff.nextAttemptAt(now, attempts));
+        }
+        return claimed;
+    }
+
+    // Возвращает false, если попытки исчерпаны и запись удалена из очереди.
+    boolean failed(long retryId, RuntimeException cause) {
+        ResolveRetry retry = repository.findById(retryId).orElse(null);
+        if (retry == null) {
+            return false;
+        }
+        if (backoff.isExhausted(retry.getAttempts())) {
+            repository.delete(retry);
+            return false;
+        }
+        retry.setLastError(describe(cause));
+        return true;
+    }
+
+    void remove(long retryId) {
+        repository.findById(retryId).ifPresent(repository::delete);
+    }
+
+    private static String describe(RuntimeException cause) {
+        String message = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.later.item;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.later.item.model.ResolveRetry;
+
+import java.time.Instant;
+import java.util.List;
+
+interface ResolveRetryRepository extends JpaRepository<ResolveRetry, Long> {
+
+    // Пачка набирается поровну с пользователей: сначала по самой давней записи каждого,
+    // затем по второй и так далее. Иначе большой импорт одного пользователя занял бы
+    // все пачки, а повторы остальных ждали бы его окончания. SKIP LOCKED позволяет
+    // нескольким экземплярам приложения повторять загрузки параллельно, не забирая
+    // одни и те же вещи.
+    @Query(value = "select * from resolve_retries " +
+            "where id in (" +
+            "    select id from (" +
+            "        select id, next_attempt_at," +
+            "               row_number() over (partition by user_id order by next_attempt_at) as turn" +
+            "        from resolve_retries where next_attempt_at <= ?1" +
+            "    ) as due " +
+            "    where turn <= ?2 " +
+            "    order by turn, next_attempt_at " +
+            "    limit ?2" +
+            ") " +
+            // Повторная проверка срока отсекает записи, которые другой экземпляр
+            // успел захватить и отложить между подзапросом и блокировкой.
+            "and next_attempt_at <= ?1 " +
+            "for update skip locked", nativeQuery = true)
+    List<ResolveRetry> claimDue(Instant now, int limit);
+
+    // Вещь стоит в очереди не больше одного раза: повторное добавление того же
+    // адреса не сбрасывает число попыток и не сдвигает уже назначенную.
+    @Modifying
+    @Query(value = "insert into resolve_retries " +
+            "(user_id, item_id, url, attempts, next_attempt_at, last_error, created_at) " +
+            "values (?1, ?2, ?3, 1, ?4, ?5, ?6) " +
+            "on conflict (user_id, item_id) do nothing", nativeQuery = true)
+    int enqueue(long userId, long itemId, String url, Instant nextAttemptAt, String lastError, Instant createdAt);
+}
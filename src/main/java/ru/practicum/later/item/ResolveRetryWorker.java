@@ -0,0 +1,97 @@
+package ru.practicum.later.item;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.item.model.ResolveRetry;
+import ru.practicum.later.sharding.Shards;
+
+import java.util.List;
+
+// Повторная загрузка страниц вещей, сохранённых с неполными метаданными из-за
+// временной ошибки сайта. Записи очереди захватываются пачками в короткой транзакции,
+// страницы загружаются уже без блокировок, а результат сохраняется отдельно по каждой вещи.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "resolve-retry.enabled", havingValue = "true", matchIfMissing = true)
+class ResolveRetryWorker implements InitializingBean {
+    private final ResolveRetryQueue queue;
+    private final UrlMetaDataRetriever retriever;
+    private final ResolutionScheduler resolutionScheduler;
+    private final ItemService itemService;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final BackgroundFetchExecutor backgroundExecutor;
+
+    @Value("${resolve-retry.batch-size:20}")
+    private int batchSize;
+
+    @Value("${resolve-retry.max-batches-per-run:5}")
+    private int maxBatchesPerRun;
+
+    @Value("${resolve-retry.delay-ms:10000}")
+    private long delayMs;
+
+    @Override
+    public void afterPropertiesSet() {
+        backgroundExecutor.scheduleWithFixedDelay(this::drain, delayMs);
+    }
+
+    // Очередь хранится на шарде пользователя вместе с его вещами, поэтому разбираются все шарды.
+    public void drain() {
+        backgroundExecutor.onEachShard(shards, this::drainBatches);
+    }
+
+    private int drainBatches() {
+        int total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<ResolveRetry> claimed = transactionTemplate.execute(status -> queue.claim(batchSize));
+            if (claimed == null) {
+                return total;
+            }
+            claimed.forEach(this::retry);
+            total += claimed.size();
+            if (claimed.size() < batchSize) {
+                return total;
+            }
+        }
+        return total;
+    }
+
+    private void retry(ResolveRetry retry) {
+        final UrlMetaDataRetriever.UrlMetadata metadata;
+        try {
+            metadata = resolutionScheduler.call(ResolutionPriority.BULK, retry.getUserId(),
+                    () -> retriever.retrieve(retry.getUrl()));
+        } catch (TransientItemRetrieverException e) {
+            Boolean pending = transactionTemplate.execute(status -> queue.failed(retry.getId(), e));
+            if (!Boolean.TRUE.equals(pending)) {
+                log.warn("Giving up on resolving item {} of user {} after {} attempts: {}",
+                        retry.getItemId(), retry.getUserId(), retry.getAttempts(), e.getMessage());
+            }
+            return;
+        } catch (RuntimeException e) {
+            // Постоянная ошибка (страница удалена, неподдерживаемый тип): вещь остаётся
+            // с одним адресом, как если бы сайт так и не ответил.
+            log.info("Cannot resolve item {} of user {}: {}", retry.getItemId(), retry.getUserId(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> queue.remove(retry.getId()));
+            return;
+        }
+        // Пользователя переносят на другой шард: запись остаётся в очереди и будет
+        // повторена уже там, когда подойдёт срок.
+        if (!shards.isWritable(retry.getUserId())) {
+            log.info("Postponing item {} of user {}: the user is moving to another shard",
+                    retry.getItemId(), retry.getUserId());
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            itemService.completeResolution(retry.getUserId(), retry.getItemId(), metadata);
+            queue.remove(retry.getId());
+        });
+    }
+}
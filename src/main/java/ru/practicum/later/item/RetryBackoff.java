@@ -0,0 +1,41 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Когда повторять загрузку страницы после временной ошибки. Задержка растёт вдвое
+// с каждой неудачной попыткой до max-delay; половина задержки случайна, чтобы вещи,
+// не загрузившиеся при одном сбое сайта, не повторялись все одновременно.
+@Component
+class RetryBackoff {
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int maxAttempts;
+
+    RetryBackoff(@Value("${resolve-retry.base-delay-sec:30}") long baseDelaySec,
+                 @Value("${resolve-retry.max-delay-sec:21600}") long maxDelaySec,
+                 @Value("${resolve-retry.max-attempts:10}") int maxAttempts) {
+        this.baseDelay = Duration.ofSeconds(baseDelaySec);
+        this.maxDelay = Duration.ofSeconds(maxDelaySec);
+        this.maxAttempts = maxAttempts;
+    }
+
+    // attempts - сколько попыток уже не удалось, не меньше одной.
+    Instant nextAttemptAt(Instant now, int attempts) {
+        long maxMillis = maxDelay.toMillis();
+        long millis = baseDelay.toMillis() << Math.min(Math.max(attempts - 1, 0), 30);
+        if (millis <= 0 || millis > maxMillis) {
+            millis = maxMillis;
+        }
+        long half = millis / 2;
+        return now.plusMillis(half + ThreadLocalRandom.current().nextLong(millis - half + 1));
+    }
+
+    boolean isExhausted(int attempts) {
+        return attempts >= maxAttempts;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Быстрая проверка, сохранял ли пользователь уже этот адрес. Фильтр пользователя
+// заполняется из БД при первом добавлении вещи и дальше пополняется после фиксации
+// транзакций. Положительный ответ проверяется запросом к БД; отрицательный может
+// быть неверен только для вещей, добавленных через другой узел, и тогда вещь
+// просто проходит обычный путь с загрузкой страницы. Чтобы такие пропуски
+// не копились, фильтр перестраивается через saved-url-filter.ttl-sec. Фильтры
+// хранятся для ограниченного числа пользователей и вытесняются по LRU.
+@Component
+class SavedUrlFilter {
+    // Запас на рост библиотеки, прежде чем фильтр придётся перестроить.
+    private static final int MIN_CAPACITY = 256;
+
+    private final ItemRepository repository;
+    private final LongSupplier nanoClock;
+    private final long ttlNanos;
+    private final double falsePositiveRate;
+    private final Map<Long, Entry> filters;
+
+    @Autowired
+    SavedUrlFilter(ItemRepository repository,
+                   @Value("${saved-url-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                   @Value("${saved-url-filter.ttl-sec:600}") long ttlSec,
+                   @Value("${saved-url-filter.max-users:10000}") int maxUsers) {
+        this(repository, System::nanoTime, falsePositiveRate, ttlSec, maxUsers);
+    }
+
+    SavedUrlFilter(ItemRepository repository, LongSupplier nanoClock, double falsePositiveRate, long ttlSec,
+                   int maxUsers) {
+        this.repository = repository;
+        this.nanoClock = nanoClock;
+        this.falsePositiveRate = falsePositiveRate;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSec);
+        this.filters = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    // Запрос к БД выполняется вне блокировки. Если фильтр одновременно построили
+    // несколько потоков, в кэше остаётся первый годный.
+    boolean mightContain(long userId, String url) {
+        long now = nanoClock.getAsLong();
+        Entry cached;
+        synchronized (filters) {
+            cached = filters.get(userId);
+        }
+        if (cached != null && cached.isUsable(now)) {
+            return cached.filter.mightContain(url);
+        }
+
+        Entry loaded = new Entry(load(userId), now + ttlNanos);
+        synchronized (filters) {
+            Entry current = filters.get(userId);
+            if (current == null || !current.isUsable(now)) {
+                filters.put(userId, loaded);
+                current = loaded;
+            }
+            return current.filter.mightContain(url);
+        }
+    }
+
+    void urlSaved(long userId, String url) {
+        afterCommit(() -> {
+            Entry entry;
+            synchronized (filters) {
+                entry = filters.get(userId);
+            }
+            if (entry != null) {
+                entry.filter.put(url);
+            }
+        });
+    }
+
+    private UrlBloomFilter load(long userId) {
+        List<String> urls = repository.findUrlsByUserId(userId);
+        UrlBloomFilter filter = new UrlBloomFilter(Math.max(MIN_CAPACITY, urls.size() * 2), falsePositiveRate);
+        for (String url : urls) {
+            if (url != null) {
+                filter.put(url);
+            }
+        }
+        return filter;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static class Entry {
+        private final UrlBloomFilter filter;
+        private final long expiresAt;
+
+        Entry(UrlBloomFilter filter, long expiresAt) {
+            this.filter = filter;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isUsable(long now) {
+            return expiresAt - now > 0 && !filter.isOverfilled();
+        }
+    }
+}
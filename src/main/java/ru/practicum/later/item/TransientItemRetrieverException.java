@@ -0,0 +1,13 @@
+package ru.practicum.later.item;
+
+// Страница временно недоступна (таймаут, обрыв соединения, ответ 5xx или 429):
+// загрузку имеет смысл повторить позже.
+public class TransientItemRetrieverException extends ItemRetrieverException {
+    public TransientItemRetrieverException(String message) {
+        super(message);
+    }
+
+    public TransientItemRetrieverException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
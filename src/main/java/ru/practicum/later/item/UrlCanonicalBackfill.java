@@ -0,0 +1,51 @@
+package ru.practicum.later.item;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.common.CurrentUser;
+import ru.practicum.later.sharding.Shards;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Разовый проход по всем пользователям после включения или настройки канонизации:
+// адреса сохранённых раньше вещей приводятся к новому виду, дубликаты сливаются.
+// Каждый пользователь обрабатывается в своей транзакции, поэтому проход можно
+// прервать и повторить.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class UrlCanonicalBackfill {
+    private final ItemService itemService;
+    private final ItemRepository repository;
+    private final WebPageRepository pageRepository;
+    private final Shards shards;
+
+    Result run() {
+        List<Long> userIds = shards.onEachShard(repository::findUserIdsWithItems).stream()
+                .flatMap(List::stream)
+                .distinct()
+                .collect(Collectors.toList());
+        AtomicInteger merged = new AtomicInteger();
+        for (long userId : userIds) {
+            // Пользователь задаётся явно, чтобы транзакция попала на его шард.
+            CurrentUser.runAs(userId, () -> merged.addAndGet(itemService.mergeDuplicateUrls(userId)));
+        }
+        // Вещи переведены на страницы с каноническими адресами - прежние страницы,
+        // на которые больше никто не ссылается, удаляются.
+        int orphans = shards.onEachShard(pageRepository::deleteUnreferenced).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        log.info("URL canonicalization finished: {} users, {} duplicate items merged, {} unused pages removed",
+                userIds.size(), merged.get(), orphans);
+        return new Result(userIds.size(), merged.get());
+    }
+
+    @lombok.Value
+    static class Result {
+        int users;
+        int mergedItems;
+    }
+}
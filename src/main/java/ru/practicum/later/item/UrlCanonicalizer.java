@@ -0,0 +1,131 @@
+package ru.practicum.later.item;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+// Приводит http(s)-адрес к единому виду, чтобы одна и та же страница не сохранялась
+// несколькими вещами: схема и хост в нижнем регистре, без порта по умолчанию,
+// без якоря, без завершающего слэша и без параметров отслеживания. Остальные
+// параметры запроса сохраняют порядок, кодирование пути и параметров не меняется.
+// Адреса других схем и неразбираемые строки возвращаются как есть.
+@Component
+class UrlCanonicalizer {
+    private final List<String> exactParams;
+    private final List<String> paramPrefixes;
+    private final boolean stripFragment;
+    private final boolean stripTrailingSlash;
+
+    // Параметр с "*" на конце задаёт префикс: utm_* убирает utm_source, utm_medium и т.д.
+    UrlCanonicalizer(@Value("${url-canonicalizer.strip-params:utm_*,fbclid,gclid,yclid,mc_cid,mc_eid,_openstat}")
+                     String[] stripParams,
+                     @Value("${url-canonicalizer.strip-fragment:true}") boolean stripFragment,
+                     @Value("${url-canonicalizer.strip-trailing-slash:true}") boolean stripTrailingSlash) {
+        this.exactParams = Arrays.stream(stripParams)
+                .map(String::trim)
+                .filter(param -> !param.isEmpty() && !param.endsWith("*"))
+                .map(param -> param.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+        this.paramPrefixes = Arrays.stream(stripParams)
+                .map(String::trim)
+                .filter(param -> param.endsWith("*"))
+                .map(param -> param.substring(0, param.length() - 1).toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+        this.stripFragment = stripFragment;
+        this.stripTrailingSlash = stripTrailingSlash;
+    }
+
+    String canonicalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        final URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        if (uri.getScheme() == null || uri.isOpaque() || uri.getHost() == null) {
+            return url;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return url;
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        canonical.append(host);
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || (port == 80 && scheme.equals("http"))
+                || (port == 443 && scheme.equals("https"));
+        if (!defaultPort) {
+            canonical.append(':').append(port);
+        }
+
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        if (stripTrailingSlash) {
+            int end = path.length();
+            while (end > 0 && path.charAt(end - 1) == '/') {
+                end--;
+            }
+            path = path.substring(0, end);
+        } else if (path.isEmpty()) {
+            path = "/";
+        }
+        canonical.append(path);
+
+        String query = filterQuery(uri.getRawQuery());
+        if (query != null) {
+            canonical.append('?').append(query);
+        }
+        if (!stripFragment && uri.getRawFragment() != null) {
+            canonical.append('#').append(uri.getRawFragment());
+        }
+        return canonical.toString();
+    }
+
+    private String filterQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return null;
+        }
+        StringJoiner kept = new StringJoiner("&");
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isTracking(name)) {
+                kept.add(param);
+            }
+        }
+        return kept.length() == 0 ? null : kept.toString();
+    }
+
+    private boolean isTracking(String name) {
+        if (exactParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : paramPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
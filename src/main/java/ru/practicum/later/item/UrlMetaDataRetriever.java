@@ -1,10 +1,16 @@
 package ru.practicum.later.item;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Optional;
 
 public interface UrlMetaDataRetriever {
     UrlMetadata retrieve(String uri);
 
+    // Условный запрос с сохранёнными валидаторами (любой из них может быть null):
+    // если страница не изменилась, сервер отвечает 304 без тела и результат пуст.
+    Optional<UrlMetadata> revalidate(String uri, String etag, String lastModified);
+
     // Закрепляем в виде вложенного интерфейса контракт
     // об обязательных данных, которые должны возвращать
     // все реализации UrlMetaDataRetriever'а.
@@ -20,5 +26,10 @@ public interface UrlMetaDataRetriever {
         boolean isHasImage();
         boolean isHasVideo();
         Instant getDateResolved();
+        // Валидаторы из ответа сервера для последующих условных запросов, могут быть null.
+        String getEtag();
+        String getLastModified();
+        // Сколько ещё ответ свеж по Cache-Control/Expires/Age; null, если сервер не указал.
+        Duration getTtl();
     }
 }
@@ -3,9 +3,6 @@ package ru.practicum.later.item;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -17,11 +14,16 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -32,6 +34,26 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
 
     @Override
     public UrlMetadata retrieve(String urlString) {
+        return fetch(urlString).orElseThrow();
+    }
+
+    // Валидаторы передаются в HEAD-запросе: на неизменившуюся страницу тратится
+    // один ответ 304 без тела, в том числе для картинок и видео.
+    @Override
+    public Optional<UrlMetadata> revalidate(String urlString, String etag, String lastModified) {
+        List<String> headers = new ArrayList<>(4);
+        if (etag != null) {
+            headers.add(HttpHeaders.IF_NONE_MATCH);
+            headers.add(etag);
+        }
+        if (lastModified != null) {
+            headers.add(HttpHeaders.IF_MODIFIED_SINCE);
+            headers.add(lastModified);
+        }
+        return fetch(urlString, headers.toArray(new String[0]));
+    }
+
+    private Optional<UrlMetadata> fetch(String urlString, String... conditionalHeaders) {
         final URI uri;
         try {
             uri = new URI(urlString);
@@ -39,7 +61,10 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
             throw new ItemRetrieverException("The URL is malformed: " + urlString, e);
         }
 
-        HttpResponse<Void> resp = connect(uri, "HEAD", HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> resp = connect(uri, "HEAD", HttpResponse.BodyHandlers.discarding(), conditionalHeaders);
+        if (resp.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+            return Optional.empty();
+        }
 
         String contentType = resp.headers()
                 .firstValue(HttpHeaders.CONTENT_TYPE)
@@ -50,7 +75,7 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
         final UrlMetadataImpl result;
 
         if (mediaType.isCompatibleWith(MimeType.valueOf("text/*"))) {
-            result = handleText(resp.uri());
+            result = handleText(resp.uri(), mediaType);
         } else if (mediaType.isCompatibleWith(MimeType.valueOf("image/*"))) {
             result = handleImage(resp.uri());
         } else if (mediaType.isCompatibleWith(MimeType.valueOf("video/*"))) {
@@ -60,28 +85,41 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
                     + "] at the specified URL is not supported.");
         }
 
-        return result.toBuilder()
+        Instant now = Instant.now();
+        return Optional.of(result.toBuilder()
                 .normalUrl(urlString)
                 .resolvedUrl(resp.uri().toString())
                 .mimeType(mediaType.getType())
-                .dateResolved(Instant.now())
-                .build();
+                .dateResolved(now)
+                .ttl(HttpFreshness.ttl(resp.headers(), now))
+                .etag(resp.headers().firstValue(HttpHeaders.ETAG).orElse(null))
+                .lastModified(resp.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null))
+                .build());
     }
 
     private <T> HttpResponse<T> connect(URI url,
                                         String method,
-                                        HttpResponse.BodyHandler<T> responseBodyHandler) {
+                                        HttpResponse.BodyHandler<T> responseBodyHandler,
+                                        String... headers) {
 
-        HttpRequest request = HttpRequest.newBuilder()
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(url)
-                .method(method, HttpRequest.BodyPublishers.noBody())
-                .build();
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        HttpRequest request = builder.build();
 
         final HttpResponse<T> response;
         try {
             response = client.send(request, responseBodyHandler);
+        } catch (UnknownHostException e) {
+            // Java не отличает несуществующий хост от сбоя или таймаута резолвера,
+            // поэтому ошибка считается временной: вещь сохраняется и ждёт повтора,
+            // а хост, которого действительно нет, отбрасывается, когда попытки кончатся.
+            throw new TransientItemRetrieverException("The host of the URL is unknown: " + url, e);
         } catch (IOException e) {
-            throw new ItemRetrieverException("Cannot retrieve data from the URL: " + url, e);
+            throw new TransientItemRetrieverException("Cannot retrieve data from the URL: " + url, e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Cannot get the metadata for url: " + url
@@ -96,6 +134,10 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
         if(status.equals(HttpStatus.UNAUTHORIZED) || status.equals(HttpStatus.FORBIDDEN)) {
             throw new ItemRetrieverException("There is no access to the resource at the specified URL: " + url);
         }
+        if(status.equals(HttpStatus.TOO_MANY_REQUESTS) || status.is5xxServerError()) {
+            throw new TransientItemRetrieverException("The server is temporarily unable to return the data on the item."
+                    + " Response status: " + status);
+        }
         if(status.isError()) {
             throw new ItemRetrieverException("Cannot get the data on the item because the server returned an error."
                     + "Response status: " + status);
@@ -104,21 +146,32 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
         return response;
     }
 
-    private UrlMetadataImpl handleText(URI url) {
-        HttpResponse<String> resp = connect(url, "GET", HttpResponse.BodyHandlers.ofString());
+    // Тело читается байтами: кодировку, если её нет в Content-Type, определяет разбор
+    // по BOM и meta, а не декодирование всего ответа заранее.
+    private UrlMetadataImpl handleText(URI url, MediaType mediaType) {
+        HttpResponse<byte[]> resp = connect(url, "GET", HttpResponse.BodyHandlers.ofByteArray());
 
-        Document doc = Jsoup.parse(resp.body());
-
-        Elements imgElements = doc.getElementsByTag("img");
-        Elements videoElements = doc.getElementsByTag("video");
+        HtmlSniffer.Result page = HtmlSniffer.parse(resp.body(), charsetOf(mediaType));
 
         return UrlMetadataImpl.builder()
-                .title(doc.title())
-                .hasImage(!imgElements.isEmpty())
-                .hasVideo(!videoElements.isEmpty())
+                .title(page.getTitle())
+                .hasImage(page.isHasImage())
+                .hasVideo(page.isHasVideo())
                 .build();
     }
 
+    private static Charset charsetOf(MediaType mediaType) {
+        String name = mediaType.getParameter("charset");
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Charset.forName(name.replace("\"", "").trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     private UrlMetadataImpl handleVideo(URI url) {
         String name = new File(url).getName();
         return UrlMetadataImpl.builder()
@@ -145,5 +198,8 @@ public class UrlMetaDataRetrieverImpl implements UrlMetaDataRetriever {
         boolean hasImage;
         boolean hasVideo;
         Instant dateResolved;
+        String etag;
+        String lastModified;
+        Duration ttl;
     }
 }
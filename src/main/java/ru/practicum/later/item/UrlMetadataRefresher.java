@@ -0,0 +1,145 @@
+package ru.practicum.later.item;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.item.model.WebPage;
+import ru.practicum.later.sharding.Shards;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+// Фоновое обновление метаданных сохранённых страниц: заголовки меняются, ссылки
+// перестают работать. Страница перепроверяется, когда истёк её срок свежести
+// (RefreshPolicy), условным запросом с сохранёнными ETag/Last-Modified, поэтому
+// неизменившаяся страница обходится одним ответом 304.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "url-refresh.enabled", havingValue = "true", matchIfMissing = true)
+class UrlMetadataRefresher implements InitializingBean {
+    private static final long SYSTEM_USER_ID = 0;
+
+    private final WebPageRepository pageRepository;
+    private final ItemRepository itemRepository;
+    private final UrlMetaDataRetriever retriever;
+    private final ResolutionScheduler resolutionScheduler;
+    private final ItemVersions itemVersions;
+    private final ItemFilterIndex filterIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final RefreshPolicy refreshPolicy;
+    private final Shards shards;
+    private final BackgroundFetchExecutor backgroundExecutor;
+
+    @Value("${url-refresh.batch-size:20}")
+    private int batchSize;
+
+    @Value("${url-refresh.max-batches-per-run:5}")
+    private int maxBatchesPerRun;
+
+    @Value("${url-refresh.delay-ms:60000}")
+    private long delayMs;
+
+    @Override
+    public void afterPropertiesSet() {
+        backgroundExecutor.scheduleWithFixedDelay(this::refresh, delayMs);
+    }
+
+    // Страницы хранятся на шардах, поэтому обходятся все шарды.
+    public void refresh() {
+        backgroundExecutor.onEachShard(shards, this::refreshBatches);
+    }
+
+    private int refreshBatches() {
+        int total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<WebPage> claimed = transactionTemplate.execute(status -> claimBatch());
+            if (claimed == null) {
+                return total;
+            }
+            claimed.forEach(this::refresh);
+            total += claimed.size();
+            if (claimed.size() < batchSize) {
+                return total;
+            }
+        }
+        return total;
+    }
+
+    // Захваченные страницы помечаются временем проверки в короткой транзакции:
+    // загрузка идёт уже без блокировок и без соединения с БД, а другие экземпляры
+    // не возьмут эти страницы, пока не истечёт минимальный срок повторной проверки.
+    private List<WebPage> claimBatch() {
+        Instant now = Instant.now();
+        List<WebPage> claimed = pageRepository.claimStale(now, refreshPolicy.retryBefore(now), batchSize);
+        claimed.forEach(page -> page.setCheckedAt(now));
+        return claimed;
+    }
+
+    private void refresh(WebPage page) {
+        final Optional<UrlMetaDataRetriever.UrlMetadata> fresh;
+        try {
+            // Страница общая для всех пользователей, поэтому обновления идут одной очередью.
+            fresh = resolutionScheduler.call(ResolutionPriority.REFRESH, SYSTEM_USER_ID,
+                    () -> retriever.revalidate(page.getResolvedUrl(), page.getEtag(), page.getLastModified()));
+        } catch (RuntimeException e) {
+            // Недоступная страница будет проверена снова через минимальный срок.
+            log.info("Cannot refresh metadata of page {}: {}", page.getResolvedUrl(), e.getMessage());
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> apply(page.getId(), fresh.orElse(null), status));
+    }
+
+    private void apply(long pageId, UrlMetaDataRetriever.UrlMetadata fresh, TransactionStatus status) {
+        Optional<WebPage> found = pageRepository.findById(pageId);
+        if (found.isEmpty()) {
+            return;
+        }
+        WebPage page = found.get();
+        if (fresh == null) {
+            // Ответ 304 подтверждает прежний срок свежести страницы.
+            Instant now = Instant.now();
+            Duration ttl = page.getTtlSec() == null ? null : Duration.ofSeconds(page.getTtlSec());
+            page.setDateResolved(now)
+                    .setRefreshAfter(refreshPolicy.refreshAfter(now, ttl));
+            return;
+        }
+
+        boolean mimeTypeChanged = !Objects.equals(page.getMimeType(), fresh.getMimeType());
+        boolean changed = mimeTypeChanged
+                || !Objects.equals(page.getTitle(), fresh.getTitle())
+                || page.isHasImage() != fresh.isHasImage()
+                || page.isHasVideo() != fresh.isHasVideo();
+        refreshPolicy.fill(page, fresh);
+        if (!changed) {
+            return;
+        }
+
+        // Версии блокируются раньше строк вещей - в том же порядке, что и при записи
+        // через ItemServiceImpl, - и номера изменений берутся уже под блокировкой.
+        Map<Long, Long> versions = itemVersions.bumpByPage(pageId);
+        // Изменение не попало бы к пользователю, которого переносят на другой шард,
+        // поэтому страница обновится при следующей проверке, после переноса.
+        if (!versions.keySet().stream().allMatch(shards::isWritable)) {
+            status.setRollbackOnly();
+            return;
+        }
+        itemRepository.bumpChangeSeqByPageId(pageId);
+        versions.forEach((userId, version) -> {
+            if (mimeTypeChanged) {
+                filterIndex.forget(userId);
+            } else {
+                filterIndex.unchanged(userId, version);
+            }
+        });
+    }
+}
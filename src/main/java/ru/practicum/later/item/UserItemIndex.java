@@ -0,0 +1,86 @@
+package ru.practicum.later.item;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import ru.practicum.later.item.dto.GetItemRequest;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Битовые карты идентификаторов вещей одного пользователя:
+// отдельно по признаку "прочитано", по типу содержимого и по каждому тегу.
+// Фильтры запроса GET /items сводятся к операциям AND/OR над картами.
+class UserItemIndex {
+    private final Roaring64NavigableMap unread = new Roaring64NavigableMap();
+    private final Roaring64NavigableMap read = new Roaring64NavigableMap();
+    private final Map<String, Roaring64NavigableMap> byMimeType = new HashMap<>();
+    private final Map<String, Roaring64NavigableMap> byTag = new HashMap<>();
+
+    synchronized void put(long itemId, boolean isUnread, String mimeType, Collection<String> tags) {
+        removeFromAll(itemId);
+        (isUnread ? unread : read).addLong(itemId);
+        if (mimeType != null) {
+            byMimeType.computeIfAbsent(mimeType, k -> new Roaring64NavigableMap()).addLong(itemId);
+        }
+        for (String tag : tags) {
+            addTag(itemId, tag);
+        }
+    }
+
+    synchronized void addTag(long itemId, String tag) {
+        byTag.computeIfAbsent(tag, k -> new Roaring64NavigableMap()).addLong(itemId);
+    }
+
+    synchronized void remove(long itemId) {
+        removeFromAll(itemId);
+    }
+
+    // Теги объединяются через OR (как и в SQL-варианте с any().in(...)),
+    // а состояние и тип содержимого накладываются через AND.
+    synchronized Roaring64NavigableMap select(GetItemRequest.State state,
+                                              GetItemRequest.ContentType contentType,
+                                              List<String> tags) {
+        Roaring64NavigableMap result = new Roaring64NavigableMap();
+        for (String tag : tags) {
+            Roaring64NavigableMap tagged = byTag.get(tag);
+            if (tagged != null) {
+                result.or(tagged);
+            }
+        }
+
+        if (state == GetItemRequest.State.UNREAD) {
+            result.and(unread);
+        } else if (state == GetItemRequest.State.READ) {
+            result.and(read);
+        }
+
+        if (contentType != GetItemRequest.ContentType.ALL) {
+            Roaring64NavigableMap ofType = byMimeType.get(ItemServiceImpl.mimeTypeOf(contentType));
+            if (ofType == null) {
+                return new Roaring64NavigableMap();
+            }
+            result.and(ofType);
+        }
+        return result;
+    }
+
+    private void removeFromAll(long itemId) {
+        unread.removeLong(itemId);
+        read.removeLong(itemId);
+        removeFrom(byMimeType, itemId);
+        removeFrom(byTag, itemId);
+    }
+
+    private static void removeFrom(Map<String, Roaring64NavigableMap> bitmaps, long itemId) {
+        Iterator<Roaring64NavigableMap> it = bitmaps.values().iterator();
+        while (it.hasNext()) {
+            Roaring64NavigableMap bitmap = it.next();
+            bitmap.removeLong(itemId);
+            if (bitmap.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.practicum.later.item;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.later.item.model.WebPage;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface WebPageRepository extends JpaRepository<WebPage, Long> {
+
+    Optional<WebPage> findByResolvedUrl(String resolvedUrl);
+
+    // Страницы, которые пора перепроверить, от самых давних; страницы без срока
+    // (сохранённые до его появления) проверяются в первую очередь. Неудачно
+    // проверенные после retryBefore пропускаются, как и ни разу не загруженные: их
+    // загружает очередь повторов (ResolveRetryWorker). SKIP LOCKED позволяет нескольким
+    // экземплярам приложения обновлять страницы параллельно, не забирая одни и те же.
+    @Query(value = "select * from urls " +
+            "where date_resolved is not null " +
+            "and (refresh_after is null or refresh_after < ?1) " +
+            "and (checked_at is null or checked_at < ?2) " +
+            "order by refresh_after nulls first " +
+            "limit ?3 " +
+            "for update skip locked", nativeQuery = true)
+    List<WebPage> claimStale(Instant now, Instant retryBefore, int limit);
+
+    // Страницы, на которые больше не ссылается ни одна вещь: после слияния
+    // дубликатов или переноса пользователей на другой шард.
+    @Transactional
+    @Modifying
+    @Query(value = "delete from urls as u " +
+            "where not exists (select 1 from items as it where it.url_id = u.id)", nativeQuery = true)
+    int deleteUnreferenced();
+
+    // Одна страница, например заготовка, от которой вещь перешла к загруженной странице.
+    @Modifying
+    @Query(value = "delete from urls as u " +
+            "where u.id = ?1 and not exists (select 1 from items as it where it.url_id = u.id)", nativeQuery = true)
+    int deleteIfUnreferenced(long id);
+}
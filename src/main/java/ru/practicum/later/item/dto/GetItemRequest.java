@@ -4,6 +4,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Data
 @NoArgsConstructor
@@ -37,6 +38,21 @@ public class GetItemRequest {
         return tags != null && !tags.isEmpty();
     }
 
+    // Копия запроса, в которой одинаковые по смыслу наборы тегов
+    // (с другим порядком или повторами) совпадают - для ключей кэша.
+    public GetItemRequest normalized() {
+        GetItemRequest copy = new GetItemRequest();
+        copy.setUserId(userId);
+        copy.setState(state);
+        copy.setContentType(contentType);
+        copy.setSort(sort);
+        copy.setLimit(limit);
+        if(hasTags()) {
+            copy.setTags(tags.stream().distinct().sorted().collect(Collectors.toList()));
+        }
+        return copy;
+    }
+
     public enum State {UNREAD, READ, ALL }
     public enum ContentType { ARTICLE, VIDEO, IMAGE, ALL }
     public enum Sort { NEWEST, OLDEST, TITLE, SITE }
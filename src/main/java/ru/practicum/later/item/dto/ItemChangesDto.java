@@ -0,0 +1,16 @@
+package ru.practicum.later.item.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class ItemChangesDto {
+    // Курсор для следующего запроса ленты: since=cursor.
+    private final long cursor;
+    private final boolean hasMore;
+    private final List<ItemDto> changed;
+    private final List<Long> deleted;
+}
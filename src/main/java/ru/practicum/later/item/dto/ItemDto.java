@@ -1,8 +1,12 @@
 package ru.practicum.later.item.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import lombok.Getter;
 
+import ru.practicum.later.common.TimestampSerializer;
+
+import java.time.Instant;
 import java.util.Set;
 
 @Getter
@@ -16,6 +20,7 @@ public class ItemDto {
     private final boolean hasImage;
     private final boolean hasVideo;
     private final boolean unread;
-    private final String dateResolved;
+    @JsonSerialize(using = TimestampSerializer.class)
+    private final Instant dateResolved;
     private final Set<String> tags;
 }
\ No newline at end of file
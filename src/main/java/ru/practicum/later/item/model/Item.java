@@ -3,6 +3,9 @@ package ru.practicum.later.item.model;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLDeleteAll;
+import org.hibernate.annotations.SQLInsert;
 import ru.practicum.later.user.User;
 
 import javax.persistence.*;
@@ -25,33 +28,64 @@ public class Item {
     @ToString.Exclude
     private User user;
 
+    // Адрес в том виде, в каком его сохранил пользователь.
     @Column
     private String url;
 
-    @Column(name = "resolved_url")
-    private String resolvedUrl;
-
-    @Column(name = "mime_type")
-    private String mimeType;
-
-    private String title;
-
-    @Column(name = "has_image")
-    private boolean hasImage;
-
-    @Column(name = "has_video")
-    private boolean hasVideo;
+    // Страница и её метаданные общие для всех пользователей; у вещи остаётся
+    // только состояние пользователя: прочитана ли она, теги, заметки.
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST, optional = false)
+    @JoinColumn(name = "url_id")
+    @ToString.Exclude
+    private WebPage page;
 
     private boolean unread = true;
 
-    @Column(name = "date_resolved")
-    private Instant dateResolved;
+    // Номер последнего изменения вещи (в том числе её тегов) в общей
+    // последовательности change_seq. При вставке его заполняет БД.
+    @Column(name = "change_seq", insertable = false)
+    private Long changeSeq;
 
+    // Таблица tags секционирована по user_id, а ключ коллекции - только item_id,
+    // поэтому при записи user_id тега берётся у его вещи. Hibernate подставляет
+    // параметры в порядке: идентификатор вещи, затем имя тега.
     @ElementCollection
     @CollectionTable(name="tags", joinColumns=@JoinColumn(name="item_id"))
     @Column(name="name")
+    @SQLInsert(sql = "insert into tags (user_id, item_id, name) " +
+            "select it.user_id, it.id, v.name " +
+            "from (values (cast(? as bigint), cast(? as varchar))) as v(item_id, name) " +
+            "join items as it on it.id = v.item_id")
+    @SQLDelete(sql = "delete from tags as t using items as it " +
+            "where it.id = ? and t.user_id = it.user_id and t.item_id = it.id and t.name = ?")
+    @SQLDeleteAll(sql = "delete from tags as t using items as it " +
+            "where it.id = ? and t.user_id = it.user_id and t.item_id = it.id")
     private Set<String> tags = new HashSet<>();
 
+    public String getResolvedUrl() {
+        return page == null ? null : page.getResolvedUrl();
+    }
+
+    public String getMimeType() {
+        return page == null ? null : page.getMimeType();
+    }
+
+    public String getTitle() {
+        return page == null ? null : page.getTitle();
+    }
+
+    public boolean isHasImage() {
+        return page != null && page.isHasImage();
+    }
+
+    public boolean isHasVideo() {
+        return page != null && page.isHasVideo();
+    }
+
+    public Instant getDateResolved() {
+        return page == null ? null : page.getDateResolved();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
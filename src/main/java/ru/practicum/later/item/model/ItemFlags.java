@@ -0,0 +1,10 @@
+package ru.practicum.later.item.model;
+
+public interface ItemFlags {
+
+    Long getId();
+
+    boolean isUnread();
+
+    String getMimeType();
+}
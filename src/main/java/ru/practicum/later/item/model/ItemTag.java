@@ -0,0 +1,8 @@
+package ru.practicum.later.item.model;
+
+public interface ItemTag {
+
+    Long getItemId();
+
+    String getName();
+}
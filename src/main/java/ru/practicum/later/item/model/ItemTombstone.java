@@ -0,0 +1,43 @@
+package ru.practicum.later.item.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+// Запись об удалённой вещи для ленты изменений: клиенты, синхронизирующиеся
+// по курсору, должны узнать об удалении, хотя самой строки в items уже нет.
+@Entity
+@Table(name = "item_tombstones")
+@Getter @Setter @ToString
+public class ItemTombstone {
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    @Column(name = "deleted_at")
+    private Instant deletedAt = Instant.now();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ItemTombstone)) return false;
+        return itemId != null && itemId.equals(((ItemTombstone) o).getItemId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.later.item.model;
+
+import java.time.Instant;
+
+// Проекция для чтения списков: только колонки, нужные для ItemDto,
+// без загрузки управляемых сущностей.
+public interface ItemView extends ItemInfo {
+
+    String getResolvedUrl();
+
+    String getMimeType();
+
+    String getTitle();
+
+    boolean isHasImage();
+
+    boolean isHasVideo();
+
+    boolean isUnread();
+
+    Instant getDateResolved();
+}
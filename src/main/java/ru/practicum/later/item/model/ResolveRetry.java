@@ -0,0 +1,51 @@
+package ru.practicum.later.item.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// Вещь, страницу которой не удалось загрузить из-за временной ошибки:
+// она сохранена с неполными метаданными и ждёт повторной загрузки.
+@Entity
+@Table(name = "resolve_retries")
+@Getter @Setter @ToString
+public class ResolveRetry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private String url;
+
+    // Сколько раз загрузка уже не удалась, включая первую при добавлении вещи.
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ResolveRetry)) return false;
+        return id != null && id.equals(((ResolveRetry) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
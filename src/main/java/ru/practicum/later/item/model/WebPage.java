@@ -0,0 +1,66 @@
+package ru.practicum.later.item.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// Страница, на которую привёл сохранённый адрес, с её метаданными. Одна запись
+// на страницу, общая для всех сохранивших её пользователей (таблица urls).
+@Entity
+@Table(name = "urls")
+@Getter @Setter @ToString
+public class WebPage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "resolved_url")
+    private String resolvedUrl;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    private String title;
+
+    @Column(name = "has_image")
+    private boolean hasImage;
+
+    @Column(name = "has_video")
+    private boolean hasVideo;
+
+    @Column(name = "date_resolved")
+    private Instant dateResolved;
+
+    // ETag и Last-Modified из последнего ответа сервера - для условных запросов при обновлении.
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    // Срок свежести из заголовков кэширования последнего ответа, null - сервер не указал.
+    @Column(name = "ttl_sec")
+    private Long ttlSec;
+
+    // Когда метаданные пора перепроверить.
+    @Column(name = "refresh_after")
+    private Instant refreshAfter;
+
+    // Когда страницу последний раз забирали на обновление, в том числе неудачно.
+    @Column(name = "checked_at")
+    private Instant checkedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WebPage)) return false;
+        return id != null && id.equals(((WebPage) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
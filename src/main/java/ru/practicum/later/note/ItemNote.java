@@ -26,11 +26,18 @@ public class ItemNote {
     @ToString.Exclude
     private Item item;
 
+    // Владелец вещи; по нему секционирована таблица item_notes.
+    @Column(name = "user_id")
+    private Long userId;
+
     private String text;
 
     @Column(name = "note_date")
     private Instant dateOfNote = Instant.now();
 
+    @Column(name = "change_seq", insertable = false, updatable = false)
+    private Long changeSeq;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
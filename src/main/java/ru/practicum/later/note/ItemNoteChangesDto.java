@@ -0,0 +1,17 @@
+package ru.practicum.later.note;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemNoteChangesDto {
+
+    private long cursor;
+    private boolean hasMore;
+    private List<ItemNoteDto> changed;
+}
@@ -1,38 +1,63 @@
 package ru.practicum.later.note;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.later.bulkhead.Bulkheaded;
+import ru.practicum.later.bulkhead.WorkloadClass;
+import ru.practicum.later.common.TimestampFormat;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/notes")
 @RequiredArgsConstructor
+@Bulkheaded(WorkloadClass.NOTES)
 public class ItemNoteController {
 
     private final ItemNoteService itemNoteService;
 
+    private final ItemNoteListJsonWriter listWriter;
+
     @GetMapping(params = "url")
-    public List<ItemNoteDto> searchByUrl(@RequestHeader("X-Later-User-Id") long userId,
-                                         @RequestParam String url) {
-        return itemNoteService.searchNotesByUrl(url, userId);
+    public void searchByUrl(@RequestHeader("X-Later-User-Id") long userId,
+                            @RequestParam String url,
+                            HttpServletResponse response) throws IOException {
+        writeNotes(itemNoteService.searchNotesByUrl(url, userId), response);
     }
 
     @GetMapping(params = "tag")
-    public List<ItemNoteDto> searchByTags(@RequestHeader("X-Later-User-Id") long userId,
-                                          @RequestParam String tag) {
-        return itemNoteService.searchNotesByTag(userId, tag);
+    public void searchByTags(@RequestHeader("X-Later-User-Id") long userId,
+                             @RequestParam String tag,
+                             HttpServletResponse response) throws IOException {
+        writeNotes(itemNoteService.searchNotesByTag(userId, tag), response);
     }
 
     @GetMapping
-    public List<ItemNoteDto> listAllNotes(@RequestHeader("X-Later-User-Id") long userId,
-                                          @RequestParam(defaultValue = "0") int from,
-                                          @RequestParam(defaultValue = "10") int size) {
-        return itemNoteService.listAllItemsWithNotes(userId, from, size);
+    public void listAllNotes(@RequestHeader("X-Later-User-Id") long userId,
+                             @RequestParam(defaultValue = "0") int from,
+                             @RequestParam(defaultValue = "10") int size,
+                             HttpServletResponse response) throws IOException {
+        writeNotes(itemNoteService.listAllItemsWithNotes(userId, from, size), response);
+    }
+
+    @GetMapping("/changes")
+    public ItemNoteChangesDto getChanges(@RequestHeader("X-Later-User-Id") long userId,
+                                         @RequestParam(defaultValue = "0") long since,
+                                         @RequestParam(defaultValue = "100") int limit) {
+        return itemNoteService.getChanges(userId, since, limit);
     }
 
     @PostMapping
     public ItemNoteDto add(@RequestHeader("X-Later-User-Id") Long userId, @RequestBody ItemNoteDto itemNote) {
         return itemNoteService.addNewItemNote(userId, itemNote);
     }
+
+    // Заметки пишутся сразу в поток ответа, без промежуточных DTO.
+    private void writeNotes(List<ItemNoteView> notes, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        listWriter.write(notes, TimestampFormat.current(), response.getOutputStream());
+    }
 }
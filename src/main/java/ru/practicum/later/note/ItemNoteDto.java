@@ -1,8 +1,13 @@
 package ru.practicum.later.note;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ru.practicum.later.common.TimestampSerializer;
+
+import java.time.Instant;
 
 @Data
 @NoArgsConstructor
@@ -12,6 +17,8 @@ public class ItemNoteDto {
     private Long id;
     private Long itemId;
     private String text;
-    private String dateOfNote;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonSerialize(using = TimestampSerializer.class)
+    private Instant dateOfNote;
     private String itemUrl;
 }
@@ -0,0 +1,51 @@
+package ru.practicum.later.note;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.common.Timestamps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+// Пишет список заметок в JSON прямо из проекций, минуя ItemNoteDto.
+// Формат совпадает с сериализацией ItemNoteDto.
+@Component
+class ItemNoteListJsonWriter {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString ITEM_ID = new SerializedString("itemId");
+    private static final SerializedString TEXT = new SerializedString("text");
+    private static final SerializedString DATE_OF_NOTE = new SerializedString("dateOfNote");
+    private static final SerializedString ITEM_URL = new SerializedString("itemUrl");
+
+    private final JsonFactory jsonFactory;
+
+    ItemNoteListJsonWriter(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    void write(List<ItemNoteView> notes, TimestampFormat timestampFormat, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartArray();
+            for (ItemNoteView note : notes) {
+                generator.writeStartObject();
+                generator.writeFieldName(ID);
+                generator.writeNumber(note.getId());
+                generator.writeFieldName(ITEM_ID);
+                generator.writeNumber(note.getItemId());
+                generator.writeFieldName(TEXT);
+                generator.writeString(note.getText());
+                generator.writeFieldName(DATE_OF_NOTE);
+                Timestamps.write(generator, note.getDateOfNote(), timestampFormat);
+                generator.writeFieldName(ITEM_URL);
+                generator.writeString(note.getItemUrl());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
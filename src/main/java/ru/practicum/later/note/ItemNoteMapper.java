@@ -4,8 +4,6 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import ru.practicum.later.item.model.Item;
 
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,20 +11,25 @@ import java.util.List;
 public class ItemNoteMapper {
 
     public static ItemNoteDto mapToItemNoteDto(ItemNote itemNote) {
-        String dateOfNote = DateTimeFormatter
-                .ofPattern("yyyy.MM.dd hh:mm:ss")
-                .withZone(ZoneOffset.UTC)
-                .format(itemNote.getDateOfNote());
-
         return new ItemNoteDto(
                 itemNote.getId(),
                 itemNote.getItem().getId(),
                 itemNote.getText(),
-                dateOfNote,
+                itemNote.getDateOfNote(),
                 itemNote.getItem().getUrl()
         );
     }
 
+    public static ItemNoteDto mapToItemNoteDto(ItemNoteView itemNote) {
+        return new ItemNoteDto(
+                itemNote.getId(),
+                itemNote.getItemId(),
+                itemNote.getText(),
+                itemNote.getDateOfNote(),
+                itemNote.getItemUrl()
+        );
+    }
+
     public static List<ItemNoteDto> mapToItemNoteDto(Iterable<ItemNote> itemNotes) {
         List<ItemNoteDto> dtos = new ArrayList<>();
         for (ItemNote itemNote : itemNotes) {
@@ -38,6 +41,7 @@ public class ItemNoteMapper {
     public static ItemNote mapToItemNote(ItemNoteDto itemNoteDto, Item item) {
         ItemNote itemNote = new ItemNote();
         itemNote.setItem(item);
+        itemNote.setUserId(item.getUser().getId());
         itemNote.setText(itemNoteDto.getText());
         return itemNote;
     }
@@ -1,22 +1,56 @@
 package ru.practicum.later.note;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
 
-interface ItemNoteRepository extends JpaRepository<ItemNote, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
-    List<ItemNote> findAllByItemUrlContainingAndItemUserId(String itemUrl, Long userId);
+public interface ItemNoteRepository extends JpaRepository<ItemNote, Long> {
 
-    @Query("select itNote " +
+    // Проекции для списков заметок: читаются только нужные колонки,
+    // а не управляемые сущности вместе с вещью. Условие на пользователя
+    // задано и для заметки, и для вещи, чтобы в обеих таблицах осталось
+    // по одной секции.
+    @Query("select itNote.id as id, i.id as itemId, itNote.text as text, " +
+            "itNote.dateOfNote as dateOfNote, i.url as itemUrl " +
+            "from ItemNote as itNote " +
+            "join itNote.item as i " +
+            "where itNote.userId = ?1 and i.user.id = ?1 " +
+            "order by itNote.id")
+    List<ItemNoteView> findViewsByItemUserId(long userId, Pageable page);
+
+    @Query("select itNote.id as id, i.id as itemId, itNote.text as text, " +
+            "itNote.dateOfNote as dateOfNote, i.url as itemUrl " +
+            "from ItemNote as itNote " +
+            "join itNote.item as i " +
+            "where i.url like %?#{escape([0])}% escape ?#{escapeCharacter()} " +
+            "  and itNote.userId = ?2 and i.user.id = ?2")
+    List<ItemNoteView> findViewsByItemUrlContaining(String itemUrl, Long userId);
+
+    @Query("select itNote.id as id, i.id as itemId, itNote.text as text, " +
+            "itNote.dateOfNote as dateOfNote, i.url as itemUrl " +
             "from ItemNote as itNote " +
             "join itNote.item as i " +
-            "where i.user.id = ?1" +
+            "where itNote.userId = ?1 and i.user.id = ?1" +
             "  and ?2 member of i.tags")
-    List<ItemNote> findByTag(Long userId, String tag);
+    List<ItemNoteView> findViewsByTag(Long userId, String tag);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select itNote " +
+            "from ItemNote as itNote " +
+            "where itNote.userId = ?1 " +
+            "order by itNote.id")
+    Stream<ItemNote> streamByItemUserId(long userId);
 
-    Page<ItemNote> findAllByItemUserId(long userId, Pageable page);
+    List<ItemNote> findAllByUserIdAndChangeSeqGreaterThan(long userId, long changeSeq, Pageable page);
 }
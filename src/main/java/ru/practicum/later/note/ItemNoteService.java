@@ -10,9 +10,11 @@ interface ItemNoteService {
     @Transactional
     ItemNoteDto addNewItemNote(long userId, ItemNoteDto itemNoteDto);
 
-    List<ItemNoteDto> searchNotesByUrl(String url, Long userId);
+    List<ItemNoteView> searchNotesByUrl(String url, Long userId);
 
-    List<ItemNoteDto> searchNotesByTag(long userId, String tag);
+    List<ItemNoteView> searchNotesByTag(long userId, String tag);
 
-    List<ItemNoteDto> listAllItemsWithNotes(long userId, int from, int size);
+    List<ItemNoteView> listAllItemsWithNotes(long userId, int from, int size);
+
+    ItemNoteChangesDto getChanges(long userId, long since, int limit);
 }
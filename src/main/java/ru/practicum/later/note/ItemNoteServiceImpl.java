@@ -2,11 +2,14 @@ package ru.practicum.later.note;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.later.common.InsufficientPermissionException;
 import ru.practicum.later.item.ItemRepository;
 import ru.practicum.later.item.model.Item;
+import ru.practicum.later.outbox.OutboxEventType;
+import ru.practicum.later.outbox.OutboxWriter;
 
 
 import java.util.List;
@@ -20,33 +23,46 @@ public class ItemNoteServiceImpl implements ItemNoteService {
 
     private final ItemRepository itemRepository;
 
+    private final OutboxWriter outboxWriter;
+
     @Override
     @Transactional
     public ItemNoteDto addNewItemNote(long userId, ItemNoteDto itemNoteDto) {
-        Item item = itemRepository.findById(itemNoteDto.getItemId())
+        Item item = itemRepository.findByUserIdAndId(userId, itemNoteDto.getItemId())
                 .orElseThrow(() ->  new InsufficientPermissionException(
                         "You do not have permission to perform this operation"));
         ItemNote itemNote = itemNoteRepository.save(ItemNoteMapper.mapToItemNote(itemNoteDto, item));
-        return ItemNoteMapper.mapToItemNoteDto(itemNote);
+        ItemNoteDto dto = ItemNoteMapper.mapToItemNoteDto(itemNote);
+        outboxWriter.record(OutboxEventType.NOTE_ADDED, itemNote.getId(), item.getUser().getId(), dto);
+        return dto;
     }
 
     @Override
-    public List<ItemNoteDto> searchNotesByUrl(String url, Long userId) {
-        List<ItemNote> itemNotes = itemNoteRepository.findAllByItemUrlContainingAndItemUserId(url, userId);
-        return ItemNoteMapper.mapToItemNoteDto(itemNotes);
+    public List<ItemNoteView> searchNotesByUrl(String url, Long userId) {
+        return itemNoteRepository.findViewsByItemUrlContaining(url, userId);
     }
 
     @Override
-    public List<ItemNoteDto> searchNotesByTag(long userId, String tag) {
-        List<ItemNote> itemNotes = itemNoteRepository.findByTag(userId, tag);
-        return ItemNoteMapper.mapToItemNoteDto(itemNotes);
+    public List<ItemNoteView> searchNotesByTag(long userId, String tag) {
+        return itemNoteRepository.findViewsByTag(userId, tag);
     }
 
     @Override
-    public List<ItemNoteDto> listAllItemsWithNotes(long userId, int from, int size) {
+    public List<ItemNoteView> listAllItemsWithNotes(long userId, int from, int size) {
         PageRequest page = PageRequest.of(from > 0 ? from / size : 0, size);
-        return itemNoteRepository.findAllByItemUserId(userId, page)
-                .map(ItemNoteMapper::mapToItemNoteDto)
-                .getContent();
+        return itemNoteRepository.findViewsByItemUserId(userId, page);
+    }
+
+    @Override
+    public ItemNoteChangesDto getChanges(long userId, long since, int limit) {
+        PageRequest page = PageRequest.of(0, limit + 1, Sort.by("changeSeq").ascending());
+        List<ItemNote> itemNotes = itemNoteRepository.findAllByUserIdAndChangeSeqGreaterThan(userId, since, page);
+
+        boolean hasMore = itemNotes.size() > limit;
+        if (hasMore) {
+            itemNotes = itemNotes.subList(0, limit);
+        }
+        long cursor = itemNotes.isEmpty() ? since : itemNotes.get(itemNotes.size() - 1).getChangeSeq();
+        return new ItemNoteChangesDto(cursor, hasMore, ItemNoteMapper.mapToItemNoteDto(itemNotes));
     }
 }
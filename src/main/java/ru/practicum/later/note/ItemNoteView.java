@@ -0,0 +1,16 @@
+package ru.practicum.later.note;
+
+import java.time.Instant;
+
+public interface ItemNoteView {
+
+    Long getId();
+
+    Long getItemId();
+
+    String getText();
+
+    Instant getDateOfNote();
+
+    String getItemUrl();
+}
@@ -0,0 +1,32 @@
+package ru.practicum.later.outbox;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Value;
+
+import java.time.Instant;
+
+// Неизменяемое представление записи outbox, которое получают подписчики и приёмник:
+// сама сущность остаётся внутри транзакции ретранслятора.
+@Value
+public class DomainEvent {
+    long id;
+    String aggregateType;
+    long aggregateId;
+    long userId;
+    OutboxEventType type;
+    @JsonRawValue
+    String payload;
+    Instant createdAt;
+
+    static DomainEvent of(OutboxEvent event) {
+        return new DomainEvent(
+                event.getId(),
+                event.getAggregateType(),
+                event.getAggregateId(),
+                event.getUserId(),
+                event.getType(),
+                event.getPayload(),
+                event.getCreatedAt()
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.later.outbox;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum OutboxEventType {
+    ITEM_ADDED("item"),
+    ITEM_UPDATED("item"),
+    ITEM_DELETED("item"),
+    NOTE_ADDED("note");
+
+    private final String aggregateType;
+}
@@ -0,0 +1,80 @@
+package ru.practicum.later.outbox;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.sharding.Shards;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+    private final OutboxRepository repository;
+    private final ObjectProvider<OutboxSink> sink;
+    private final ObjectProvider<OutboxSubscriber> subscribers;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.relay.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    // События пишутся в outbox того шарда, где живёт пользователь, поэтому разбираются все шарды.
+    @Scheduled(fixedDelayString = "${outbox.relay.delay-ms:1000}")
+    public void relay() {
+        shards.onEachShard(this::relayBatches);
+    }
+
+    private int relayBatches() {
+        int total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            Integer published;
+            try {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } catch (RuntimeException e) {
+                log.warn("Outbox batch was not delivered and will be retried", e);
+                return total;
+            }
+            if (published == null) {
+                return total;
+            }
+            total += published;
+            if (published < batchSize) {
+                return total;
+            }
+        }
+        return total;
+    }
+
+    // Пачка удаляется из outbox только в той же транзакции, в которой была захвачена,
+    // поэтому при ошибке приёмника или любого подписчика она останется на месте
+    // и при следующем запуске снова уйдёт всем - в том числе тем, кто её уже получил.
+    private int publishBatch() {
+        List<OutboxEvent> claimed = repository.claimBatch(batchSize);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        List<DomainEvent> events = claimed.stream()
+                .map(DomainEvent::of)
+                .collect(Collectors.toList());
+
+        sink.ifAvailable(s -> s.publish(events));
+
+        subscribers.orderedStream().forEach(subscriber -> subscriber.onEvents(events));
+
+        repository.deleteAllInBatch(claimed);
+        return claimed.size();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practicum.later.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // SKIP LOCKED позволяет нескольким экземплярам приложения
+    // разбирать outbox параллельно, не получая одни и те же события.
+    @Query(value = "select * from outbox_events " +
+            "order by id " +
+            "limit ?1 " +
+            "for update skip locked", nativeQuery = true)
+    List<OutboxEvent> claimBatch(int batchSize);
+}
@@ -0,0 +1,9 @@
+package ru.practicum.later.outbox;
+
+import java.util.List;
+
+// Внешний приёмник событий (брокер, файл и т.п.). Если публикация не удалась,
+// пачка остаётся в outbox и будет отправлена повторно.
+public interface OutboxSink {
+    void publish(List<DomainEvent> events);
+}
@@ -0,0 +1,11 @@
+package ru.practicum.later.outbox;
+
+import java.util.List;
+
+// Подписчик внутри приложения. События приходят пачками в порядке записи
+// и доставляются не менее одного раза: если подписчик бросил исключение,
+// пачка повторяется целиком для всех подписчиков, так что обработка
+// должна выдерживать повторы.
+public interface OutboxSubscriber {
+    void onEvents(List<DomainEvent> events);
+}
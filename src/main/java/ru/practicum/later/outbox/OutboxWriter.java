@@ -0,0 +1,41 @@
+package ru.practicum.later.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.later.common.LaterApplicationException;
+import ru.practicum.later.common.TimestampFormat;
+
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+    private final OutboxRepository repository;
+    private final ObjectMapper objectMapper;
+
+    // Событие пишется в той же транзакции, что и изменение данных:
+    // либо сохраняются оба, либо ни одно.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OutboxEventType type, long aggregateId, long userId, Object payload) {
+        OutboxEvent event = new OutboxEvent()
+                .setAggregateType(type.getAggregateType())
+                .setAggregateId(aggregateId)
+                .setUserId(userId)
+                .setType(type)
+                .setPayload(toJson(payload));
+        repository.save(event);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            // Формат дат в событиях фиксирован и не зависит от заголовков запроса, в котором они возникли.
+            return objectMapper.writer()
+                    .withAttribute(TimestampFormat.class, TimestampFormat.ISO_8601)
+                    .writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new LaterApplicationException("Cannot serialize the outbox event payload", e);
+        }
+    }
+}
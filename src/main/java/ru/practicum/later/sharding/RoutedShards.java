@@ -0,0 +1,99 @@
+package ru.practicum.later.sharding;
+
+import org.springframework.beans.factory.DisposableBean;
+import ru.practicum.later.common.LaterApplicationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Обход шардов по схеме scatter-gather: задача запускается на всех шардах
+// параллельно, результаты собираются в порядке номеров шардов.
+class RoutedShards implements Shards, DisposableBean {
+    private final ShardDataSources dataSources;
+    private final ShardMap shardMap;
+    private final ExecutorService executor;
+
+    RoutedShards(ShardDataSources dataSources, ShardMap shardMap) {
+        this.dataSources = dataSources;
+        this.shardMap = shardMap;
+        this.executor = Executors.newFixedThreadPool(dataSources.ids().size(), task -> {
+            Thread thread = new Thread(task, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public <T> List<T> onEachShard(Supplier<T> task) {
+        return onEachShardIndexed(index -> task.get());
+    }
+
+    @Override
+    public int count() {
+        return dataSources.ids().size();
+    }
+
+    @Override
+    public <T> List<T> onEachShardIndexed(IntFunction<T> task) {
+        return scatter(task, executor);
+    }
+
+    @Override
+    public <T> List<T> onEachShard(Supplier<T> task, ExecutorService executor) {
+        return scatter(index -> task.get(), executor);
+    }
+
+    @Override
+    public boolean isWritable(long userId) {
+        Integer shard = ShardContext.current();
+        return !shardMap.isMoving(userId) && (shard == null || shardMap.shardOf(userId) == shard);
+    }
+
+    @Override
+    public <T> T createUser(Supplier<T> insert, ToLongFunction<T> userId) {
+        int shard = shardMap.shardForNewUser();
+        T created = ShardContext.callOn(shard, insert);
+        shardMap.assign(userId.applyAsLong(created), shard);
+        return created;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> List<T> scatter(IntFunction<T> task, ExecutorService executor) {
+        List<Future<T>> futures = new ArrayList<>();
+        int index = 0;
+        for (int shard : dataSources.ids()) {
+            int position = index++;
+            futures.add(executor.submit(() -> ShardContext.callOn(shard, () -> task.apply(position))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LaterApplicationException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new LaterApplicationException("A shard query failed", e.getCause());
+        }
+    }
+}
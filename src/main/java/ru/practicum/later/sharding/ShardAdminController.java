@@ -0,0 +1,24 @@
+package ru.practicum.later.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Ручная балансировка: перенос пользователя со всеми его данными на указанный шард.
+// Запрос выполняется синхронно и длится не меньше двух периодов кэша карты шардов.
+@RestController
+@RequestMapping("/admin/shards")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "later.sharding", name = "enabled", havingValue = "true")
+public class ShardAdminController {
+    private final UserShardMover mover;
+
+    @PostMapping("/users/{userId}")
+    public void moveUser(@PathVariable long userId, @RequestParam int target) {
+        mover.move(userId, target);
+    }
+}
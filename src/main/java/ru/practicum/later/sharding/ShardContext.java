@@ -0,0 +1,32 @@
+package ru.practicum.later.sharding;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.function.Supplier;
+
+// Явно выбранный шард текущего потока. Нужен там, где шард определяется
+// не пользователем запроса: при обходе всех шардов, создании пользователя
+// и переносе данных между шардами.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ShardContext {
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    static Integer current() {
+        return SHARD.get();
+    }
+
+    static <T> T callOn(int shard, Supplier<T> task) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        }
+    }
+}
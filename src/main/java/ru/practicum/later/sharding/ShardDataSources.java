@@ -0,0 +1,45 @@
+package ru.practicum.later.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Пулы соединений всех шардов по номеру. Пул шарда 0 - отдельный бин,
+// его закрывает Spring; пулы остальных шардов закрываются здесь.
+class ShardDataSources implements DisposableBean {
+    private final Map<Integer, DataSource> byShard;
+
+    ShardDataSources(Map<Integer, DataSource> byShard) {
+        this.byShard = Collections.unmodifiableMap(new TreeMap<>(byShard));
+    }
+
+    Set<Integer> ids() {
+        return byShard.keySet();
+    }
+
+    Map<Integer, DataSource> all() {
+        return byShard;
+    }
+
+    DataSource get(int shard) {
+        DataSource dataSource = byShard.get(shard);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Shard " + shard + " is not configured");
+        }
+        return dataSource;
+    }
+
+    @Override
+    public void destroy() {
+        byShard.forEach((shard, dataSource) -> {
+            if (shard != ShardMap.DIRECTORY_SHARD && dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).close();
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practicum.later.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+// Готовит шарды при запуске, до приёма запросов: создаёт схему на дополнительных
+// шардах (шард 0 инициализирует сам Spring) и разводит последовательности
+// идентификаторов так, чтобы шард N выдавал только id, дающие N в остатке
+// от деления на MAX_SHARDS. Тогда id уникальны во всех шардах, и строки
+// пользователя можно перенести на другой шард без перенумерации.
+@Slf4j
+class ShardInitializer implements SmartInitializingSingleton {
+    static final int MAX_SHARDS = 1024;
+
+    private static final List<String> ID_SEQUENCES = List.of("item_id_seq", "tag_id_seq", "item_note_id_seq");
+    // Последовательность identity-колонки users.id.
+    private static final String USER_ID_SEQUENCE = "users_id_seq";
+
+    private final ShardDataSources dataSources;
+
+    ShardInitializer(ShardDataSources dataSources) {
+        this.dataSources = dataSources;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        dataSources.all().forEach((shard, dataSource) -> {
+            if (shard != ShardMap.DIRECTORY_SHARD) {
+                new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            }
+        });
+        interleave(USER_ID_SEQUENCE, (start, increment) ->
+                "alter table users alter column id set increment by " + increment + " restart with " + start);
+        for (String sequence : ID_SEQUENCES) {
+            interleave(sequence, (start, increment) ->
+                    "alter sequence " + sequence + " increment by " + increment + " restart with " + start);
+        }
+    }
+
+    // Уже разведённые шарды не трогаем. Новый шард начинает выше всех id,
+    // выданных где-либо до этого, поэтому и старые id шарда 0 с ним не пересекутся.
+    private void interleave(String sequence, BiFunction<Long, Integer, String> alterStatement) {
+        Map<Integer, JdbcTemplate> shards = new HashMap<>();
+        long floor = 0;
+        Map<Integer, Long> increments = new HashMap<>();
+        for (Map.Entry<Integer, DataSource> shard : dataSources.all().entrySet()) {
+            JdbcTemplate jdbc = new JdbcTemplate(shard.getValue());
+            Map<String, Object> state = jdbc.queryForMap("select increment_by, coalesce(last_value, 0) as last_value " +
+                    "from pg_sequences where schemaname = current_schema() and sequencename = ?", sequence);
+            shards.put(shard.getKey(), jdbc);
+            increments.put(shard.getKey(), ((Number) state.get("increment_by")).longValue());
+            floor = Math.max(floor, ((Number) state.get("last_value")).longValue());
+        }
+        for (Map.Entry<Integer, JdbcTemplate> shard : shards.entrySet()) {
+            if (increments.get(shard.getKey()) != MAX_SHARDS) {
+                long start = firstIdAbove(floor, shard.getKey());
+                shard.getValue().execute(alterStatement.apply(start, MAX_SHARDS));
+                log.info("Shard {}: {} now starts at {} with step {}", shard.getKey(), sequence, start, MAX_SHARDS);
+            }
+        }
+    }
+
+    static long firstIdAbove(long floor, int shard) {
+        long start = floor - Math.floorMod(floor, MAX_SHARDS) + shard;
+        return start > floor ? start : start + MAX_SHARDS;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.later.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Карта "пользователь -> шард". Хранится в таблице user_shards на шарде 0
+// и кэшируется на узле. Пользователи без записи созданы до шардирования
+// и живут на шарде 0.
+class ShardMap {
+    static final int DIRECTORY_SHARD = 0;
+
+    private final JdbcTemplate directory;
+    private final List<Integer> newUserShards;
+    private final long ttlMs;
+    private final Map<Long, Assignment> cache;
+    private final AtomicInteger nextNewUserShard = new AtomicInteger();
+
+    ShardMap(DataSource directory, List<Integer> newUserShards, long ttlMs, int maxEntries) {
+        this.directory = new JdbcTemplate(directory);
+        this.newUserShards = List.copyOf(newUserShards);
+        this.ttlMs = ttlMs;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Assignment> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    int shardOf(long userId) {
+        return lookup(userId).getShard();
+    }
+
+    // Пока пользователь переносится, его данные только читаются со старого шарда.
+    boolean isMoving(long userId) {
+        return lookup(userId).isMoving();
+    }
+
+    long ttlMs() {
+        return ttlMs;
+    }
+
+    int shardForNewUser() {
+        return newUserShards.get(Math.floorMod(nextNewUserShard.getAndIncrement(), newUserShards.size()));
+    }
+
+    void assign(long userId, int shard) {
+        directory.update("insert into user_shards (user_id, shard_id) values (?, ?)", userId, shard);
+        remember(userId, new Assignment(shard, false, System.currentTimeMillis()));
+    }
+
+    void markMoving(long userId, int shard) {
+        directory.update("insert into user_shards (user_id, shard_id, moving) values (?, ?, true) " +
+                "on conflict (user_id) do update set shard_id = excluded.shard_id, moving = true", userId, shard);
+        forget(userId);
+    }
+
+    void completeMove(long userId, int shard) {
+        directory.update("update user_shards set shard_id = ?, moving = false where user_id = ?", shard, userId);
+        forget(userId);
+    }
+
+    private Assignment lookup(long userId) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Assignment cached = cache.get(userId);
+            if (cached != null && now - cached.getLoadedAt() < ttlMs) {
+                return cached;
+            }
+        }
+        List<Assignment> found = directory.query("select shard_id, moving from user_shards where user_id = ?",
+                (rs, rowNum) -> new Assignment(rs.getInt("shard_id"), rs.getBoolean("moving"), now), userId);
+        Assignment assignment = found.isEmpty() ? new Assignment(DIRECTORY_SHARD, false, now) : found.get(0);
+        remember(userId, assignment);
+        return assignment;
+    }
+
+    private void remember(long userId, Assignment assignment) {
+        synchronized (cache) {
+            cache.put(userId, assignment);
+        }
+    }
+
+    private void forget(long userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    @lombok.Value
+    private static class Assignment {
+        int shard;
+        boolean moving;
+        long loadedAt;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum.later.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import ru.practicum.later.common.CurrentUser;
+
+import java.util.HashMap;
+
+// Направляет соединение на шард текущего пользователя. Явно выбранный шард
+// (обход всех шардов, перенос) важнее пользователя; без того и другого
+// соединение идёт на шард 0. Как и ReadWriteRoutingDataSource, работает только
+// за LazyConnectionDataSourceProxy, чтобы шард выбирался при первом запросе.
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private final ShardMap shardMap;
+
+    ShardRoutingDataSource(ShardDataSources shards, ShardMap shardMap) {
+        this.shardMap = shardMap;
+        setTargetDataSources(new HashMap<>(shards.all()));
+        setDefaultTargetDataSource(shards.get(ShardMap.DIRECTORY_SHARD));
+        // Пользователь на ненастроенном шарде - ошибка конфигурации, а не повод читать шард 0.
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        if (shard != null) {
+            return shard;
+        }
+        Long userId = CurrentUser.id();
+        return userId == null ? ShardMap.DIRECTORY_SHARD : shardMap.shardOf(userId);
+    }
+}
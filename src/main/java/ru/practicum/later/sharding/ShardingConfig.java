@@ -0,0 +1,101 @@
+package ru.practicum.later.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Включается свойством later.sharding.enabled=true. Все репозитории работают
+// через один EntityManagerFactory поверх маршрутизирующего DataSource: шард
+// выбирается по пользователю запроса при взятии соединения. Вместе с чтением
+// с реплики (later.datasource.replica.url) не используется.
+@Configuration
+@ConditionalOnProperty(prefix = "later.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource directoryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("shard-" + ShardMap.DIRECTORY_SHARD);
+        return dataSource;
+    }
+
+    // Имя пользователя и пароль шарда по умолчанию берутся у шарда 0.
+    @Bean
+    ShardDataSources shardDataSources(ShardingProperties sharding,
+                                      DataSourceProperties properties,
+                                      @Qualifier("directoryDataSource") DataSource directory) {
+        Map<Integer, DataSource> byShard = new HashMap<>();
+        byShard.put(ShardMap.DIRECTORY_SHARD, directory);
+        sharding.getShards().forEach((shard, settings) -> {
+            if (shard <= ShardMap.DIRECTORY_SHARD || shard >= ShardInitializer.MAX_SHARDS) {
+                throw new IllegalStateException("Shard number must be between 1 and "
+                        + (ShardInitializer.MAX_SHARDS - 1) + ": " + shard);
+            }
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(settings.getUrl())
+                    .username(settings.getUsername() == null ? properties.determineUsername() : settings.getUsername())
+                    .password(settings.getPassword() == null ? properties.determinePassword() : settings.getPassword())
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            byShard.put(shard, dataSource);
+        });
+        return new ShardDataSources(byShard);
+    }
+
+    @Bean
+    ShardMap shardMap(@Qualifier("directoryDataSource") DataSource directory,
+                      ShardingProperties sharding,
+                      ShardDataSources dataSources) {
+        List<Integer> newUserShards = sharding.getNewUserShards().isEmpty()
+                ? new ArrayList<>(dataSources.ids())
+                : sharding.getNewUserShards();
+        newUserShards.forEach(dataSources::get);
+        return new ShardMap(directory, newUserShards, sharding.getMapCacheTtlMs(), sharding.getMapCacheMaxEntries());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources dataSources, ShardMap shardMap) {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(dataSources, shardMap);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    RoutedShards shards(ShardDataSources dataSources, ShardMap shardMap) {
+        return new RoutedShards(dataSources, shardMap);
+    }
+
+    @Bean
+    ShardInitializer shardInitializer(ShardDataSources dataSources) {
+        return new ShardInitializer(dataSources);
+    }
+
+    @Bean
+    UserShardMover userShardMover(ShardDataSources dataSources, ShardMap shardMap) {
+        return new UserShardMover(dataSources, shardMap);
+    }
+
+    @Bean
+    UserMoveGuard userMoveGuard(ShardMap shardMap) {
+        return new UserMoveGuard(shardMap);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.later.sharding;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("later.sharding")
+class ShardingProperties {
+
+    private boolean enabled;
+
+    // Дополнительные шарды по номеру (1..1023). Шард 0 - база из spring.datasource,
+    // на ней же хранится карта шардов user_shards.
+    private Map<Integer, Shard> shards = new HashMap<>();
+
+    // Шарды, на которых создаются новые пользователи; пусто - все шарды по очереди.
+    private List<Integer> newUserShards = new ArrayList<>();
+
+    // Сколько узел доверяет закэшированной записи карты шардов. Перенос пользователя
+    // выжидает это время, чтобы все узлы увидели его новое состояние.
+    private long mapCacheTtlMs = 5000;
+
+    private int mapCacheMaxEntries = 100_000;
+
+    @Getter
+    @Setter
+    static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
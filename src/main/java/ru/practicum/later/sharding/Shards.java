@@ -0,0 +1,38 @@
+package ru.practicum.later.sharding;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Точка входа для кода, которому нужно знать о шардах: запросы сразу по всем
+// пользователям и создание новых пользователей. Всё остальное направляется
+// на шард текущего пользователя прозрачно, на уровне DataSource.
+public interface Shards {
+
+    // Выполняет задачу на каждом шарде и возвращает результаты по одному на шард.
+    // Задача выполняется в другом потоке, поэтому транзакции открывает сама
+    // (например, через методы репозиториев), а не наследует их у вызывающего.
+    <T> List<T> onEachShard(Supplier<T> task);
+
+    // Число шардов - столько результатов возвращают onEachShard и onEachShardIndexed.
+    int count();
+
+    // То же, но задача получает порядковый номер шарда в списке результатов: так
+    // выборку, которая идёт порциями, можно продолжать на каждом шарде со своего места.
+    <T> List<T> onEachShardIndexed(IntFunction<T> task);
+
+    // То же на потоках переданного пула: фоновые задачи, которые подолгу ждут внешних
+    // сайтов, не должны занимать общий пул, через который обходят шарды запросы пользователей.
+    <T> List<T> onEachShard(Supplier<T> task, ExecutorService executor);
+
+    // Можно ли менять данные пользователя на шарде, который сейчас обходится: пользователь
+    // живёт на нём и не переносится. Фоновые задачи обхода шардов пропускают остальных -
+    // запись на старый шард во время переноса или после него была бы потеряна.
+    boolean isWritable(long userId);
+
+    // Сохраняет нового пользователя на шарде, выбранном для новых пользователей,
+    // и запоминает его в карте шардов. Вызывается до первого запроса к БД в транзакции.
+    <T> T createUser(Supplier<T> insert, ToLongFunction<T> userId);
+}
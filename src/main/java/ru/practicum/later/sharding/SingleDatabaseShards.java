@@ -0,0 +1,46 @@
+package ru.practicum.later.sharding;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Без шардирования вся база - один шард: задачи выполняются как есть в текущем потоке.
+@Component
+@ConditionalOnProperty(prefix = "later.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+class SingleDatabaseShards implements Shards {
+
+    @Override
+    public <T> List<T> onEachShard(Supplier<T> task) {
+        return List.of(task.get());
+    }
+
+    @Override
+    public int count() {
+        return 1;
+    }
+
+    @Override
+    public <T> List<T> onEachShardIndexed(IntFunction<T> task) {
+        return List.of(task.apply(0));
+    }
+
+    @Override
+    public <T> List<T> onEachShard(Supplier<T> task, ExecutorService executor) {
+        return List.of(task.get());
+    }
+
+    @Override
+    public boolean isWritable(long userId) {
+        return true;
+    }
+
+    @Override
+    public <T> T createUser(Supplier<T> insert, ToLongFunction<T> userId) {
+        return insert.get();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.later.sharding;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.later.common.CurrentUser;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Отклоняет запросы на запись от пользователя, которого сейчас переносят между шардами:
+// его данные в это время копируются, и запись на старый шард была бы потеряна.
+class UserMoveGuard implements HandlerInterceptor, WebMvcConfigurer {
+    private final ShardMap shardMap;
+
+    UserMoveGuard(ShardMap shardMap) {
+        this.shardMap = shardMap;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        Long userId = CurrentUser.id();
+        if (userId == null || !shardMap.isMoving(userId)) {
+            return true;
+        }
+        long retryAfterSec = Math.max(1, (shardMap.ttlMs() + 999) / 1000);
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSec));
+        return false;
+    }
+}
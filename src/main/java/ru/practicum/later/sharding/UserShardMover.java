@@ -0,0 +1,182 @@
+package ru.practicum.later.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.common.LaterApplicationException;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Переносит все строки пользователя на другой шард, не останавливая остальных:
+// 1. пользователь помечается переносимым - его запросы на запись получают 503,
+//    чтение идёт со старого шарда;
+// 2. строки копируются на новый шард одной транзакцией;
+// 3. карта шардов переключается на новый шард;
+// 4. строки удаляются со старого шарда.
+// Между шагами выжидается время жизни кэша карты, чтобы все узлы увидели изменение.
+@Slf4j
+class UserShardMover {
+    private static final int BATCH_SIZE = 500;
+
+    // Страницы (urls) общие для пользователей шарда и переносятся вместе с вещами:
+    // на новом шарде страница с тем же адресом может уже быть - тогда вещь ссылается
+    // на неё, и url_id меняется. Со старого шарда страница удаляется, только если
+    // на неё не ссылаются вещи других пользователей.
+    private static final Table ITEMS = new Table(15,
+            "select u.resolved_url, u.mime_type, u.title, u.has_image, u.has_video, u.date_resolved, " +
+                    "u.etag, u.last_modified, u.ttl_sec, u.refresh_after, " +
+                    "it.id, it.user_id, it.url, it.unread, it.change_seq " +
+                    "from items as it join urls as u on u.id = it.url_id where it.user_id = ?",
+            "with page as (" +
+                    "    insert into urls as u (resolved_url, mime_type, title, has_image, has_video, date_resolved," +
+                    "                           etag, last_modified, ttl_sec, refresh_after)" +
+                    "    values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" +
+                    "    on conflict (resolved_url) do update set resolved_url = excluded.resolved_url" +
+                    "    returning u.id" +
+                    ") " +
+                    "insert into items (id, user_id, url, unread, change_seq, url_id) " +
+                    "select ?, ?, ?, ?, ?, page.id from page",
+            "with removed as (delete from items where user_id = ? returning url_id) " +
+                    "delete from urls as u where u.id in (select url_id from removed) " +
+                    "and not exists (select 1 from items as it where it.url_id = u.id and it.user_id <> ?)");
+
+    // Порядок важен: при копировании строки вставляются сверху вниз по внешним ключам,
+    // при удалении - снизу вверх.
+    private static final List<Table> TABLES = List.of(
+            Table.of("users", "id", true,
+                    "id, email, first_name, last_name, registration_date, state"),
+            ITEMS,
+            Table.of("tags", "user_id", false,
+                    "id, user_id, item_id, name"),
+            Table.of("item_notes", "user_id", false,
+                    "id, user_id, item_id, text, note_date, change_seq"),
+            Table.of("item_tombstones", "user_id", false,
+                    "item_id, user_id, change_seq, deleted_at"),
+            Table.of("item_list_versions", "user_id", false,
+                    "user_id, version"),
+            Table.of("resolve_retries", "user_id", false,
+                    "user_id, item_id, url, attempts, next_attempt_at, last_error, created_at"));
+
+    private final ShardDataSources dataSources;
+    private final ShardMap shardMap;
+
+    UserShardMover(ShardDataSources dataSources, ShardMap shardMap) {
+        this.dataSources = dataSources;
+        this.shardMap = shardMap;
+    }
+
+    void move(long userId, int target) {
+        DataSource targetDataSource = dataSources.get(target);
+        int source = shardMap.shardOf(userId);
+        if (source == target) {
+            return;
+        }
+        DataSource sourceDataSource = dataSources.get(source);
+
+        shardMap.markMoving(userId, source);
+        try {
+            waitForCaches();
+            inTransaction(targetDataSource, () -> inTransaction(sourceDataSource, () ->
+                    copy(userId, new JdbcTemplate(sourceDataSource), new JdbcTemplate(targetDataSource))));
+        } catch (RuntimeException e) {
+            shardMap.completeMove(userId, source);
+            throw e;
+        }
+        shardMap.completeMove(userId, target);
+        log.info("User {} moved from shard {} to shard {}", userId, source, target);
+
+        waitForCaches();
+        inTransaction(sourceDataSource, () -> delete(userId, new JdbcTemplate(sourceDataSource)));
+    }
+
+    private void copy(long userId, JdbcTemplate source, JdbcTemplate target) {
+        // Все записи в данные пользователя начинаются с блокировки его строки версии
+        // списка (ItemVersions). Строка блокируется до чтения, а если её нет, то
+        // создаётся: запись, начатая раньше, успевает завершиться и попадает в копию,
+        // а начатая позже ждёт конца копирования и видит пользователя уже переносимым.
+        source.update("insert into item_list_versions as v (user_id, version) values (?, 0) " +
+                "on conflict (user_id) do update set version = v.version", userId);
+        // Курсоры ленты изменений, выданные клиенту на старом шарде, должны остаться
+        // действительными: номера изменений на новом шарде не могут быть меньше.
+        Long sourceChangeSeq = source.queryForObject("select last_value from change_seq", Long.class);
+        target.queryForObject("select setval('change_seq', greatest((select last_value from change_seq), ?))",
+                Long.class, sourceChangeSeq);
+        for (Table table : TABLES) {
+            copy(userId, table, source, target);
+        }
+    }
+
+    private void copy(long userId, Table table, JdbcTemplate source, JdbcTemplate target) {
+        int columnCount = table.columnCount;
+        String insert = table.insert;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        source.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(table.select);
+            statement.setFetchSize(BATCH_SIZE);
+            statement.setLong(1, userId);
+            return statement;
+        }, rs -> {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            batch.add(row);
+            if (batch.size() == BATCH_SIZE) {
+                target.batchUpdate(insert, batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            target.batchUpdate(insert, batch);
+        }
+    }
+
+    private void delete(long userId, JdbcTemplate source) {
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            Table table = TABLES.get(i);
+            int parameterCount = (int) table.delete.chars().filter(c -> c == '?').count();
+            Object[] args = Collections.nCopies(parameterCount, userId).toArray();
+            source.update(table.delete, args);
+        }
+    }
+
+    private void waitForCaches() {
+        try {
+            Thread.sleep(shardMap.ttlMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LaterApplicationException("Interrupted while moving the user", e);
+        }
+    }
+
+    private static void inTransaction(DataSource dataSource, Runnable action) {
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+                .executeWithoutResult(status -> action.run());
+    }
+
+    // Запросы для одной таблицы: выборка строк пользователя (единственный параметр -
+    // его идентификатор), вставка строки на новый шард в порядке колонок выборки
+    // и удаление со старого шарда (все параметры - идентификатор пользователя).
+    @lombok.Value
+    private static class Table {
+        int columnCount;
+        String select;
+        String insert;
+        String delete;
+
+        static Table of(String name, String userColumn, boolean overridingIdentity, String columns) {
+            int columnCount = columns.split(",").length;
+            return new Table(columnCount,
+                    "select " + columns + " from " + name + " where " + userColumn + " = ?",
+                    "insert into " + name + " (" + columns + ")"
+                            + (overridingIdentity ? " overriding system value" : "")
+                            + " values (" + String.join(", ", Collections.nCopies(columnCount, "?")) + ")",
+                    "delete from " + name + " where " + userColumn + " = ?");
+        }
+    }
+}
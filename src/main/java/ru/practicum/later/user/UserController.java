@@ -11,9 +11,13 @@ import java.util.List;
 public class UserController {
     private final UserService userService;
 
+    // Следующая страница запрашивается с afterId, равным id последнего пользователя текущей.
     @GetMapping
-    public List<UserDto> getAllUsers() {
-        return userService.getAllUsers();
+    public List<UserDto> getUsers(@RequestParam(defaultValue = "0") long afterId,
+                                  @RequestParam(defaultValue = "20") int size,
+                                  @RequestParam(required = false) String email,
+                                  @RequestParam(required = false) UserState state) {
+        return userService.getUsers(afterId, size, email, state);
     }
 
     @PostMapping
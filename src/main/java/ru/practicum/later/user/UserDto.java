@@ -1,8 +1,13 @@
 package ru.practicum.later.user;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ru.practicum.later.common.TimestampSerializer;
+
+import java.time.Instant;
 
 @Data
 @AllArgsConstructor
@@ -12,6 +17,8 @@ public class UserDto {
     private String email;
     private String firstName;
     private String lastName;
-    private String registrationDate;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonSerialize(using = TimestampSerializer.class)
+    private Instant registrationDate;
     private UserState state;
 }
@@ -3,20 +3,14 @@ package ru.practicum.later.user;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 class UserMapper {
     public static UserDto mapToUserDto(User user) {
-        String regDate = DateTimeFormatter
-                .ofPattern("yyyy.MM.dd hh:mm:ss")
-                .withZone(ZoneOffset.UTC)
-                .format(user.getRegistrationDate());
-
-        return new UserDto(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), regDate, user.getState());
+        return new UserDto(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                user.getRegistrationDate(), user.getState());
     }
 
     public static List<UserDto> mapToUserDto(Iterable<User> users) {
@@ -3,6 +3,6 @@ package ru.practicum.later.user;
 import java.util.List;
 
 interface UserService {
-    List<UserDto> getAllUsers();
+    List<UserDto> getUsers(long afterId, int size, String email, UserState state);
     UserDto saveUser(UserDto userDto);
 }
\ No newline at end of file
@@ -1,27 +1,65 @@
 package ru.practicum.later.user;
 
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.later.sharding.Shards;
 
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 class UserServiceImpl implements UserService {
     private final UserRepository repository;
+    private final JPAQueryFactory queryFactory;
+    private final Shards shards;
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Постраничная выдача по ключу: следующая страница начинается после последнего
+    // отданного id, поэтому стоимость запроса не растёт с номером страницы.
+    // Страница собирается из страниц всех шардов: первые size пользователей по id среди них.
     @Override
-    public List<UserDto> getAllUsers() {
-        List<User> users = repository.findAll();
-        return UserMapper.mapToUserDto(users);
+    public List<UserDto> getUsers(long afterId, int size, String email, UserState state) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // Во время переноса пользователь есть на двух шардах - повтор отбрасываем по id.
+        Map<Long, User> merged = new TreeMap<>();
+        for (List<User> page : shards.onEachShard(() -> findUsers(afterId, limit, email, state))) {
+            page.forEach(u -> merged.putIfAbsent(u.getId(), u));
+        }
+        return UserMapper.mapToUserDto(merged.values().stream()
+                .limit(limit)
+                .collect(Collectors.toList()));
     }
 
     @Transactional
     @Override
     public UserDto saveUser(UserDto userDto) {
-        User user = repository.save(UserMapper.mapToNewUser(userDto));
+        User user = shards.createUser(() -> repository.save(UserMapper.mapToNewUser(userDto)), User::getId);
         return UserMapper.mapToUserDto(user);
     }
+
+    private List<User> findUsers(long afterId, int limit, String email, UserState state) {
+        QUser user = QUser.user;
+        BooleanBuilder condition = new BooleanBuilder(user.id.gt(afterId));
+        if (email != null && !email.isBlank()) {
+            // lower(email) like '%...%' обслуживается триграммным индексом users_email_trgm_idx.
+            condition.and(user.email.containsIgnoreCase(email));
+        }
+        if (state != null) {
+            condition.and(user.state.eq(state));
+        }
+        return queryFactory
+                .selectFrom(user)
+                .where(condition)
+                .orderBy(user.id.asc())
+                .limit(limit)
+                .fetch();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+-- Перенос базы со старыми несекционированными items, tags и item_notes
+-- в таблицы, секционированные по user_id. Выполняется вручную один раз
+-- при остановленном приложении:
+--
+--     psql -v ON_ERROR_STOP=1 -f partition-by-user.sql later
+--
+-- Идентификаторы и номера изменений сохраняются, теги и заметки получают
+-- user_id своей вещи. После переноса приложение запускается как обычно,
+-- schema.sql дальше ничего не меняет.
+
+BEGIN;
+
+-- Старые таблицы отодвигаем в сторону вместе с именами их ограничений и индексов,
+-- чтобы новые таблицы получили те же имена.
+ALTER TABLE item_notes RENAME TO item_notes_old;
+ALTER TABLE tags RENAME TO tags_old;
+ALTER TABLE items RENAME TO items_old;
+ALTER TABLE item_notes_old RENAME CONSTRAINT item_notes_pkey TO item_notes_old_pkey;
+ALTER TABLE tags_old RENAME CONSTRAINT tags_pkey TO tags_old_pkey;
+ALTER TABLE items_old RENAME CONSTRAINT items_pkey TO items_old_pkey;
+ALTER TABLE items_old RENAME CONSTRAINT items_user_id_resolved_url_key TO items_old_user_id_resolved_url_key;
+DROP INDEX IF EXISTS items_user_id_change_seq_idx;
+DROP INDEX IF EXISTS item_notes_change_seq_idx;
+
+CREATE SEQUENCE IF NOT EXISTS item_id_seq;
+CREATE SEQUENCE IF NOT EXISTS tag_id_seq;
+CREATE SEQUENCE IF NOT EXISTS item_note_id_seq;
+
+CREATE TABLE items (
+        id BIGINT NOT NULL DEFAULT nextval('item_id_seq'),
+        user_id BIGINT NOT NULL,
+        url VARCHAR(1000),
+        resolved_url VARCHAR(1000),
+        mime_type VARCHAR(100),
+        title VARCHAR(255),
+        has_image BOOLEAN,
+        has_video BOOLEAN,
+        unread BOOLEAN,
+        date_resolved TIMESTAMP WITHOUT TIME ZONE,
+        change_seq BIGINT DEFAULT nextval('change_seq'),
+        PRIMARY KEY (user_id, id),
+        CONSTRAINT fk_items_to_users FOREIGN KEY(user_id) REFERENCES users(id),
+        UNIQUE(user_id, resolved_url)
+) PARTITION BY HASH (user_id);
+
+CREATE TABLE tags (
+        id BIGINT NOT NULL DEFAULT nextval('tag_id_seq'),
+        user_id BIGINT NOT NULL,
+        item_id BIGINT NOT NULL,
+        name VARCHAR(50),
+        PRIMARY KEY (user_id, id),
+        CONSTRAINT fk_tags_to_items FOREIGN KEY(user_id, item_id) REFERENCES items(user_id, id)
+) PARTITION BY HASH (user_id);
+
+CREATE TABLE item_notes (
+        id BIGINT NOT NULL DEFAULT nextval('item_note_id_seq'),
+        user_id BIGINT NOT NULL,
+        item_id BIGINT NOT NULL,
+        text VARCHAR(1000),
+        note_date timestamp,
+        change_seq BIGINT DEFAULT nextval('change_seq'),
+        PRIMARY KEY (user_id, id),
+        CONSTRAINT fk_item_notes_to_items FOREIGN KEY(user_id, item_id) REFERENCES items(user_id, id)
+) PARTITION BY HASH (user_id);
+
+-- Число секций должно совпадать с заданным в schema.sql.
+DO '
+DECLARE
+    partitions CONSTANT INT := 16;
+BEGIN
+    FOR i IN 0..partitions - 1 LOOP
+        EXECUTE format(''CREATE TABLE items_p%s PARTITION OF items
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+        EXECUTE format(''CREATE TABLE tags_p%s PARTITION OF tags
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+        EXECUTE format(''CREATE TABLE item_notes_p%s PARTITION OF item_notes
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+    END LOOP;
+END';
+
+INSERT INTO items (id, user_id, url, resolved_url, mime_type, title,
+                   has_image, has_video, unread, date_resolved, change_seq)
+SELECT id, user_id, url, resolved_url, mime_type, title,
+       has_image, has_video, unread, date_resolved, change_seq
+FROM items_old;
+
+INSERT INTO tags (id, user_id, item_id, name)
+SELECT t.id, it.user_id, t.item_id, t.name
+FROM tags_old AS t
+JOIN items_old AS it ON it.id = t.item_id;
+
+INSERT INTO item_notes (id, user_id, item_id, text, note_date, change_seq)
+SELECT n.id, it.user_id, n.item_id, n.text, n.note_date, n.change_seq
+FROM item_notes_old AS n
+JOIN items_old AS it ON it.id = n.item_id;
+
+SELECT setval('item_id_seq', coalesce((SELECT max(id) FROM items), 0) + 1, false);
+SELECT setval('tag_id_seq', coalesce((SELECT max(id) FROM tags), 0) + 1, false);
+SELECT setval('item_note_id_seq', coalesce((SELECT max(id) FROM item_notes), 0) + 1, false);
+
+CREATE INDEX items_user_id_change_seq_idx ON items (user_id, change_seq);
+CREATE INDEX item_notes_user_id_change_seq_idx ON item_notes (user_id, change_seq);
+CREATE INDEX items_id_idx ON items (id);
+CREATE UNIQUE INDEX tags_user_id_item_id_name_key ON tags (user_id, item_id, name);
+CREATE INDEX item_notes_user_id_item_id_idx ON item_notes (user_id, item_id);
+
+DROP TABLE item_notes_old;
+DROP TABLE tags_old;
+DROP TABLE items_old;
+
+COMMIT;
+
+ANALYZE items;
+ANALYZE tags;
+ANALYZE item_notes;
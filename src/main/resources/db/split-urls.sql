@@ -0,0 +1,106 @@
+-- Перенос метаданных страниц из items в общую таблицу urls. Выполняется вручную
+-- один раз на каждом шарде при остановленном приложении (после
+-- partition-by-user.sql, если он ещё не выполнялся):
+--
+--     psql -v ON_ERROR_STOP=1 -f split-urls.sql later
+--
+-- Вещи разных пользователей с одинаковым resolved_url начинают ссылаться на одну
+-- страницу, её метаданными становятся самые свежие. Вещи без resolved_url
+-- получают страницу со своим исходным адресом. Если у пользователя после этого
+-- несколько вещей на одной странице (у одной resolved_url = X, у другой пусто
+-- и url = X), они сливаются так же, как в ItemService.mergeDuplicateUrls:
+-- остаётся самая старая, к ней переходят теги и заметки, а за удалённые
+-- записываются отметки об удалении для ленты изменений. Иначе не создастся
+-- ограничение UNIQUE(user_id, url_id).
+
+BEGIN;
+
+-- Дубликаты в пределах пользователя и адреса будущей страницы и оставшаяся вместо них вещь.
+CREATE TEMPORARY TABLE item_merges ON COMMIT DROP AS
+SELECT it.user_id, it.id AS item_id, k.keeper_id
+FROM items AS it
+JOIN (SELECT user_id, coalesce(resolved_url, url) AS address, min(id) AS keeper_id
+      FROM items
+      WHERE coalesce(resolved_url, url) IS NOT NULL
+      GROUP BY user_id, coalesce(resolved_url, url)
+      HAVING count(*) > 1) AS k
+  ON k.user_id = it.user_id AND k.address = coalesce(it.resolved_url, it.url)
+WHERE it.id <> k.keeper_id;
+
+-- Непрочитанной оставшаяся вещь остаётся, только если непрочитаны все;
+-- теги у неё меняются, поэтому она попадает в ленту изменений.
+UPDATE items AS it
+SET unread = it.unread AND d.unread,
+    change_seq = nextval('change_seq')
+FROM (SELECT m.user_id, m.keeper_id, bool_and(dup.unread) AS unread
+      FROM item_merges AS m
+      JOIN items AS dup ON dup.user_id = m.user_id AND dup.id = m.item_id
+      GROUP BY m.user_id, m.keeper_id) AS d
+WHERE it.user_id = d.user_id AND it.id = d.keeper_id;
+
+INSERT INTO tags (user_id, item_id, name)
+SELECT m.user_id, m.keeper_id, t.name
+FROM tags AS t
+JOIN item_merges AS m ON m.user_id = t.user_id AND m.item_id = t.item_id
+ON CONFLICT (user_id, item_id, name) DO NOTHING;
+
+DELETE FROM tags AS t
+USING item_merges AS m
+WHERE t.user_id = m.user_id AND t.item_id = m.item_id;
+
+UPDATE item_notes AS n
+SET item_id = m.keeper_id,
+    change_seq = nextval('change_seq')
+FROM item_merges AS m
+WHERE n.user_id = m.user_id AND n.item_id = m.item_id;
+
+INSERT INTO item_tombstones (item_id, user_id, change_seq, deleted_at)
+SELECT item_id, user_id, nextval('change_seq'), localtimestamp
+FROM item_merges
+ORDER BY item_id;
+
+DELETE FROM items AS it
+USING item_merges AS m
+WHERE it.user_id = m.user_id AND it.id = m.item_id;
+
+CREATE TABLE urls (
+        id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+        resolved_url VARCHAR(1000) NOT NULL UNIQUE,
+        mime_type VARCHAR(100),
+        title VARCHAR(255),
+        has_image BOOLEAN,
+        has_video BOOLEAN,
+        date_resolved TIMESTAMP WITHOUT TIME ZONE
+);
+
+INSERT INTO urls (resolved_url, mime_type, title, has_image, has_video, date_resolved)
+SELECT DISTINCT ON (coalesce(resolved_url, url))
+       coalesce(resolved_url, url), mime_type, title, has_image, has_video, date_resolved
+FROM items
+WHERE coalesce(resolved_url, url) IS NOT NULL
+ORDER BY coalesce(resolved_url, url), date_resolved DESC NULLS LAST;
+
+ALTER TABLE items ADD COLUMN url_id BIGINT;
+
+UPDATE items AS it
+SET url_id = u.id
+FROM urls AS u
+WHERE u.resolved_url = coalesce(it.resolved_url, it.url);
+
+ALTER TABLE items ALTER COLUMN url_id SET NOT NULL;
+ALTER TABLE items ADD CONSTRAINT fk_items_to_urls FOREIGN KEY(url_id) REFERENCES urls(id);
+ALTER TABLE items ADD CONSTRAINT items_user_id_url_id_key UNIQUE(user_id, url_id);
+ALTER TABLE items DROP CONSTRAINT items_user_id_resolved_url_key;
+ALTER TABLE items DROP COLUMN resolved_url,
+                  DROP COLUMN mime_type,
+                  DROP COLUMN title,
+                  DROP COLUMN has_image,
+                  DROP COLUMN has_video,
+                  DROP COLUMN date_resolved;
+
+CREATE INDEX items_url_id_idx ON items (url_id);
+
+COMMIT;
+
+ANALYZE urls;
+ANALYZE items;
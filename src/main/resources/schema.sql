@@ -1,3 +1,5 @@
+CREATE SEQUENCE IF NOT EXISTS change_seq;
+
 CREATE TABLE IF NOT EXISTS users (
         id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
         email varchar(320),
@@ -7,32 +9,167 @@ CREATE TABLE IF NOT EXISTS users (
         state varchar(50)
 );
 
-CREATE TABLE IF NOT EXISTS items (
+-- Вещи, теги и заметки секционированы хешем по user_id: все запросы выполняются
+-- в рамках одного пользователя, и условие user_id = ? оставляет одну секцию
+-- с её небольшими индексами. Ключ секционирования входит во все первичные,
+-- уникальные и внешние ключи, поэтому user_id есть и у тегов, и у заметок.
+-- Идентификаторы выдают обычные последовательности: они уникальны во всех секциях.
+CREATE SEQUENCE IF NOT EXISTS item_id_seq;
+CREATE SEQUENCE IF NOT EXISTS tag_id_seq;
+CREATE SEQUENCE IF NOT EXISTS item_note_id_seq;
+
+-- Страницы, на которые привели сохранённые адреса, с их метаданными: одна строка
+-- на страницу, общая для всех пользователей шарда. Вещь пользователя хранит
+-- только свой адрес, отметку о прочтении и ссылку на страницу.
+CREATE TABLE IF NOT EXISTS urls (
         id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
-        user_id BIGINT,
-        url VARCHAR(1000),
-        resolved_url VARCHAR(1000),
+        resolved_url VARCHAR(1000) NOT NULL UNIQUE,
         mime_type VARCHAR(100),
         title VARCHAR(255),
         has_image BOOLEAN,
         has_video BOOLEAN,
+        date_resolved TIMESTAMP WITHOUT TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS items (
+        id BIGINT NOT NULL DEFAULT nextval('item_id_seq'),
+        user_id BIGINT NOT NULL,
+        url VARCHAR(1000),
+        url_id BIGINT NOT NULL,
         unread BOOLEAN,
-        date_resolved TIMESTAMP WITHOUT TIME ZONE,
+        change_seq BIGINT DEFAULT nextval('change_seq'),
+        PRIMARY KEY (user_id, id),
         CONSTRAINT fk_items_to_users FOREIGN KEY(user_id) REFERENCES users(id),
-        UNIQUE(user_id, resolved_url)
-);
+        CONSTRAINT fk_items_to_urls FOREIGN KEY(url_id) REFERENCES urls(id),
+        UNIQUE(user_id, url_id)
+) PARTITION BY HASH (user_id);
 
 CREATE TABLE IF NOT EXISTS tags (
-        id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
-        item_id BIGINT,
+        id BIGINT NOT NULL DEFAULT nextval('tag_id_seq'),
+        user_id BIGINT NOT NULL,
+        item_id BIGINT NOT NULL,
         name VARCHAR(50),
-        CONSTRAINT fk_tags_to_items FOREIGN KEY(item_id) REFERENCES items(id)
-);
+        PRIMARY KEY (user_id, id),
+        CONSTRAINT fk_tags_to_items FOREIGN KEY(user_id, item_id) REFERENCES items(user_id, id)
+) PARTITION BY HASH (user_id);
 
 CREATE TABLE IF NOT EXISTS item_notes (
-        id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
-        item_id BIGINT,
+        id BIGINT NOT NULL DEFAULT nextval('item_note_id_seq'),
+        user_id BIGINT NOT NULL,
+        item_id BIGINT NOT NULL,
         text VARCHAR(1000),
         note_date timestamp,
-        CONSTRAINT items FOREIGN KEY(item_id) REFERENCES items(id)
-);
\ No newline at end of file
+        change_seq BIGINT DEFAULT nextval('change_seq'),
+        PRIMARY KEY (user_id, id),
+        CONSTRAINT fk_item_notes_to_items FOREIGN KEY(user_id, item_id) REFERENCES items(user_id, id)
+) PARTITION BY HASH (user_id);
+
+-- Секции создаются в цикле; тело блока записано обычной строкой, а не $$...$$,
+-- чтобы скрипт не разрезался по точкам с запятой внутри него. Базу со старыми
+-- несекционированными таблицами нужно сначала перенести скриптом db/partition-by-user.sql,
+-- базу с метаданными страниц в items - скриптом db/split-urls.sql.
+DO '
+DECLARE
+    partitions CONSTANT INT := 16;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = ''items''::regclass) <> ''p'' THEN
+        RAISE EXCEPTION ''Table items is not partitioned, run db/partition-by-user.sql first'';
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''items''
+                 AND column_name = ''resolved_url'') THEN
+        RAISE EXCEPTION ''Table items still holds page metadata, run db/split-urls.sql first'';
+    END IF;
+    FOR i IN 0..partitions - 1 LOOP
+        EXECUTE format(''CREATE TABLE IF NOT EXISTS items_p%s PARTITION OF items
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+        EXECUTE format(''CREATE TABLE IF NOT EXISTS tags_p%s PARTITION OF tags
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+        EXECUTE format(''CREATE TABLE IF NOT EXISTS item_notes_p%s PARTITION OF item_notes
+                FOR VALUES WITH (MODULUS %s, REMAINDER %s)'', i, partitions, i);
+    END LOOP;
+END';
+
+CREATE TABLE IF NOT EXISTS item_tombstones (
+        item_id BIGINT PRIMARY KEY,
+        user_id BIGINT,
+        change_seq BIGINT,
+        deleted_at TIMESTAMP WITHOUT TIME ZONE
+);
+
+-- Версия списка вещей пользователя для ETag и кэша ответов GET /items;
+-- увеличивается в каждой транзакции, изменившей его вещи или теги.
+CREATE TABLE IF NOT EXISTS item_list_versions (
+        user_id BIGINT PRIMARY KEY,
+        version BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+        id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+        aggregate_type VARCHAR(50),
+        aggregate_id BIGINT,
+        user_id BIGINT,
+        event_type VARCHAR(50),
+        payload TEXT,
+        created_at TIMESTAMP WITHOUT TIME ZONE
+);
+
+-- Очередь повторной загрузки страниц, не загрузившихся из-за временной ошибки сайта:
+-- вещь уже сохранена с неполными метаданными и ждёт next_attempt_at.
+CREATE TABLE IF NOT EXISTS resolve_retries (
+        id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+        user_id BIGINT NOT NULL,
+        item_id BIGINT NOT NULL,
+        url VARCHAR(1000),
+        attempts INT NOT NULL,
+        next_attempt_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+        last_error VARCHAR(1000),
+        created_at TIMESTAMP WITHOUT TIME ZONE,
+        UNIQUE(user_id, item_id)
+);
+
+-- Карта шардов (later.sharding.enabled=true): на каком шарде живёт пользователь.
+-- Используется только на шарде 0; пользователи без записи живут на нём же.
+CREATE TABLE IF NOT EXISTS user_shards (
+        user_id BIGINT PRIMARY KEY,
+        shard_id INT NOT NULL,
+        moving BOOLEAN NOT NULL DEFAULT false
+);
+
+-- Для баз, созданных до появления ленты изменений: существующие строки
+-- получают номер изменения из значения по умолчанию при добавлении колонки.
+ALTER TABLE items ADD COLUMN IF NOT EXISTS change_seq BIGINT DEFAULT nextval('change_seq');
+ALTER TABLE item_notes ADD COLUMN IF NOT EXISTS change_seq BIGINT DEFAULT nextval('change_seq');
+-- Валидаторы для условных запросов при фоновом обновлении метаданных страниц.
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS etag VARCHAR(1000);
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS last_modified VARCHAR(1000);
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS checked_at TIMESTAMP WITHOUT TIME ZONE;
+-- Срок свежести из заголовков кэширования и момент следующей проверки страницы.
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS ttl_sec BIGINT;
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS refresh_after TIMESTAMP WITHOUT TIME ZONE;
+
+CREATE INDEX IF NOT EXISTS items_user_id_change_seq_idx ON items (user_id, change_seq);
+CREATE INDEX IF NOT EXISTS item_notes_user_id_change_seq_idx ON item_notes (user_id, change_seq);
+-- Поиск по одному id (findById, вставка тегов) не знает пользователя и проверяет
+-- индекс каждой секции; списки тегов и заметок читаются по (user_id, item_id).
+CREATE INDEX IF NOT EXISTS items_id_idx ON items (id);
+CREATE INDEX IF NOT EXISTS items_user_id_url_idx ON items (user_id, url);
+-- Проверка, ссылается ли на страницу хоть одна вещь, при удалении страниц.
+CREATE INDEX IF NOT EXISTS items_url_id_idx ON items (url_id);
+-- Фоновое обновление выбирает страницы, которые раньше всех пора перепроверить.
+CREATE INDEX IF NOT EXISTS urls_refresh_after_idx ON urls (refresh_after);
+DROP INDEX IF EXISTS urls_date_resolved_idx;
+CREATE INDEX IF NOT EXISTS resolve_retries_next_attempt_at_idx ON resolve_retries (next_attempt_at);
+-- Уникальность тега в пределах вещи нужна для слияния тегов через ON CONFLICT.
+CREATE UNIQUE INDEX IF NOT EXISTS tags_user_id_item_id_name_key ON tags (user_id, item_id, name);
+DROP INDEX IF EXISTS tags_user_id_item_id_idx;
+CREATE INDEX IF NOT EXISTS item_notes_user_id_item_id_idx ON item_notes (user_id, item_id);
+CREATE INDEX IF NOT EXISTS item_tombstones_user_id_change_seq_idx ON item_tombstones (user_id, change_seq);
+
+-- Поиск вещей по префиксу фамилии: like 'abc%' использует индекс только с text_pattern_ops
+-- (или при collation "C"), обычный b-tree индекс для этого не подходит.
+CREATE INDEX IF NOT EXISTS users_last_name_pattern_idx ON users (last_name text_pattern_ops);
+
+-- Поиск пользователей по подстроке email (lower(email) like '%...%') - триграммный индекс.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS users_email_trgm_idx ON users USING gin (lower(email) gin_trgm_ops);
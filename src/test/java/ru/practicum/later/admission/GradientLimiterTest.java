@@ -0,0 +1,72 @@
+package ru.practicum.later.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    @Test
+    void tryAcquire_rejectsWhenInflightReachesLimit() {
+        GradientLimiter limiter = new GradientLimiter(2, 1, 10, 0.2, 100);
+
+        assertThat(limiter.tryAcquire()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isEqualTo(2);
+        assertThat(limiter.tryAcquire()).isEqualTo(-1);
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isEqualTo(2);
+    }
+
+    @Test
+    void onSample_stableLatencyUnderLoad_growsLimitUpToMax() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 50, 0.2, 100);
+
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(FAST, limiter.limit());
+        }
+
+        assertThat(limiter.limit()).isEqualTo(50);
+    }
+
+    @Test
+    void onSample_risingLatency_shrinksLimit() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 50, 0.2, 100);
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(FAST, limiter.limit());
+        }
+
+        for (int i = 0; i < 30; i++) {
+            limiter.onSample(SLOW, limiter.limit());
+        }
+
+        assertThat(limiter.limit()).isLessThan(25);
+    }
+
+    @Test
+    void onSample_fewRequestsInFlight_keepsLimit() {
+        GradientLimiter limiter = new GradientLimiter(20, 1, 50, 0.2, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(i % 2 == 0 ? FAST : SLOW, 1);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void retryAfterSeconds_followsCurrentLatency() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 50, 0.2, 100);
+        assertThat(limiter.retryAfterSeconds()).isEqualTo(1);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(TimeUnit.MILLISECONDS.toNanos(2500), 1);
+        }
+
+        assertThat(limiter.retryAfterSeconds()).isEqualTo(3);
+    }
+}
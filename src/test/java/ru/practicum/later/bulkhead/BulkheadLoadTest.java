@@ -0,0 +1,133 @@
+package ru.practicum.later.bulkhead;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.item.UrlMetaDataRetriever;
+import ru.practicum.later.user.User;
+import ru.practicum.later.user.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.later.testutil.TestDataProvider.getAddItemRequest;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
+import static ru.practicum.later.testutil.TestDataProvider.getUrlMetadata;
+
+// Пул из четырёх соединений, добавлению вещей отдано два. Загрузка страницы
+// длится дольше секунды, и добавляющих потоков заметно больше лимита: без
+// ограничения они заняли бы весь пул, и чтение ждало бы освобождения соединений.
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.minimum-idle=4",
+        "later.bulkhead.ingest.max-concurrent=2",
+        "later.bulkhead.ingest.max-wait-ms=0",
+        "later.bulkhead.read.max-concurrent=16"
+})
+class BulkheadLoadTest extends BaseIntegTest {
+    private static final long FETCH_MS = 1500;
+    private static final int INGEST_THREADS = 12;
+    private static final int READS = 40;
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private ObjectMapper mapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MeterRegistry registry;
+    @MockBean
+    private UrlMetaDataRetriever urlMetaDataRetriever;
+
+    @SneakyThrows
+    @Test
+    void readLatency_staysLow_whileIngestIsSaturated() {
+        Mockito.when(urlMetaDataRetriever.retrieve(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(FETCH_MS);
+                    return getUrlMetadata(invocation.getArgument(0));
+                });
+        User user = userRepository.save(getUnsavedUser());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger urls = new AtomicInteger();
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService ingest = Executors.newFixedThreadPool(INGEST_THREADS);
+        for (int i = 0; i < INGEST_THREADS; i++) {
+            ingest.submit(() -> {
+                while (running.get()) {
+                    int status = addItem(user.getId(), "http://example.com/" + urls.incrementAndGet());
+                    (status == 503 ? rejected : added).incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        try {
+            waitUntilIngestIsFull();
+            List<Long> latenciesMs = new ArrayList<>();
+            for (int i = 0; i < READS; i++) {
+                long start = System.nanoTime();
+                mvc.perform(get("/items/changes").header("X-Later-User-Id", user.getId()))
+                        .andExpect(status().isOk());
+                latenciesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            Collections.sort(latenciesMs);
+            long p95 = latenciesMs.get((int) Math.ceil(READS * 0.95) - 1);
+            assertThat(p95).isLessThan(FETCH_MS / 2);
+        } finally {
+            running.set(false);
+            ingest.shutdown();
+            assertThat(ingest.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(added.get()).isPositive();
+        assertThat(rejected.get()).isPositive();
+        assertThat(registry.get("later.bulkhead.rejected").tag("workload", "ingest").counter().count())
+                .isEqualTo(rejected.get());
+        assertThat(registry.get("later.bulkhead.active").tag("workload", "ingest").gauge().value()).isZero();
+    }
+
+    @SneakyThrows
+    private void waitUntilIngestIsFull() {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (registry.get("later.bulkhead.active").tag("workload", "ingest").gauge().value() < 2) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @SneakyThrows
+    private int addItem(long userId, String url) {
+        return mvc.perform(post("/items")
+                        .header("X-Later-User-Id", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(getAddItemRequest(url, Set.of("tag")))))
+                .andReturn()
+                .getResponse()
+                .getStatus();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.later.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость форматирования даты одной строки списка: прежний способ (новый
+// DateTimeFormatter на каждую заметку), общий форматтер и кэширующий слой Timestamps.
+// Строки страницы обычно созданы близко по времени, поэтому моменты берутся
+// из окна в несколько часов.
+// Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampsBenchmark {
+    private static final int ROWS = 1024;
+    private static final DateTimeFormatter sharedFormatter = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ssX")
+            .withZone(ZoneOffset.UTC);
+
+    private final Instant[] instants = new Instant[ROWS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long start = Instant.parse("2023-11-14T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < ROWS; i++) {
+            instants[i] = Instant.ofEpochSecond(start + i * 7L, i * 1_000_000L);
+        }
+    }
+
+    private Instant nextInstant() {
+        return instants[next++ & (ROWS - 1)];
+    }
+
+    @Benchmark
+    public String formatterPerRow() {
+        return DateTimeFormatter
+                .ofPattern("yyyy.MM.dd hh:mm:ss")
+                .withZone(ZoneOffset.UTC)
+                .format(nextInstant());
+    }
+
+    @Benchmark
+    public String sharedFormatter() {
+        return sharedFormatter.format(nextInstant());
+    }
+
+    @Benchmark
+    public String cachedIso() {
+        return Timestamps.toIso(nextInstant());
+    }
+
+    @Benchmark
+    public long epochMillis() {
+        return nextInstant().toEpochMilli();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TimestampsBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
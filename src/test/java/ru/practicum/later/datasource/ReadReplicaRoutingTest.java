@@ -0,0 +1,85 @@
+package ru.practicum.later.datasource;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.practicum.later.BaseIntegTest;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Вторая база играет роль реплики. Репликации между контейнерами нет, поэтому
+// по тому, какие строки видит запрос, можно определить, куда он был направлен.
+class ReadReplicaRoutingTest extends BaseIntegTest {
+
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:15.3")
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        replica.start();
+        registry.add("later.datasource.replica.url", replica::getJdbcUrl);
+        registry.add("later.datasource.replica.username", replica::getUsername);
+        registry.add("later.datasource.replica.password", replica::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    private JdbcTemplate replicaJdbc;
+
+    @BeforeEach
+    void setUp() {
+        replicaJdbc = new JdbcTemplate(new DriverManagerDataSource(
+                replica.getJdbcUrl(), replica.getUsername(), replica.getPassword()));
+        replicaJdbc.update("insert into users (email, first_name, last_name, state) " +
+                "values ('replica@email.com', 'Replica', 'Only', 'ACTIVE')");
+        lagMonitor.check();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaJdbc.update("delete from users");
+    }
+
+    @SneakyThrows
+    @Test
+    void whenReadOnlyRequest_readsFromReplica() {
+        mvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].email", is("replica@email.com")));
+    }
+
+    @SneakyThrows
+    @Test
+    void afterWrite_sameUserReadsFromPrimaryWhileOthersReadFromReplica() {
+        mvc.perform(delete("/items/{itemId}", 1)
+                        .header("X-Later-User-Id", 1))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/users")
+                        .header("X-Later-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        mvc.perform(get("/users")
+                        .header("X-Later-User-Id", 2))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+}
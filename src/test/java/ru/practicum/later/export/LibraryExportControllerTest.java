@@ -0,0 +1,124 @@
+package ru.practicum.later.export;
+
+import lombok.SneakyThrows;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.item.ItemRepository;
+import ru.practicum.later.item.model.Item;
+import ru.practicum.later.note.ItemNote;
+import ru.practicum.later.note.ItemNoteRepository;
+import ru.practicum.later.user.User;
+import ru.practicum.later.user.UserRepository;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedItemOfUser;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
+
+class LibraryExportControllerTest extends BaseIntegTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private ItemNoteRepository itemNoteRepository;
+    @Autowired
+    private LibraryExporter exporter;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @SneakyThrows
+    @Test
+    void whenExport_returnsItemsAndTagsAsNdjson() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = itemRepository.save(getUnsavedItemOfUser(user));
+
+        MvcResult started = mvc.perform(get("/items/export")
+                        .header("X-Later-User-Id", user.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        List<String> lines = List.of(body.split("\n"));
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0))
+                .startsWith("{\"type\":\"item\",\"id\":" + item.getId() + ",")
+                .contains("\"title\":\"" + item.getTitle() + "\"");
+        assertThat(lines.subList(1, 3)).containsExactlyInAnyOrder(
+                "{\"type\":\"tag\",\"itemId\":" + item.getId() + ",\"name\":\"tag1\"}",
+                "{\"type\":\"tag\",\"itemId\":" + item.getId() + ",\"name\":\"tag2\"}"
+        );
+    }
+
+    @SneakyThrows
+    @Test
+    void whenExportWithEpochMillis_writesDatesAsNumbers() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = itemRepository.save(getUnsavedItemOfUser(user));
+
+        MvcResult started = mvc.perform(get("/items/export")
+                        .header("X-Later-User-Id", user.getId())
+                        .header(TimestampFormat.HEADER, "epoch-millis"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(body.split("\n")[0])
+                .contains("\"dateResolved\":" + item.getDateResolved().toEpochMilli() + "}");
+    }
+
+    @Test
+    void export_leavesNoEntitiesInPersistenceContext() {
+        User user = userRepository.save(getUnsavedUser());
+        for (int i = 0; i < 3; i++) {
+            Item item = itemRepository.save(getUnsavedItemOfUser(user, "text", "title",
+                    "http://test.com/" + i, Instant.now(), true));
+            itemNoteRepository.save(new ItemNote().setItem(item).setUserId(user.getId()).setText("note"));
+        }
+
+        Integer left = transactionTemplate.execute(status -> {
+            exportTo(user.getId(), new ByteArrayOutputStream());
+            return entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+        });
+
+        assertThat(left).isZero();
+    }
+
+    @SneakyThrows
+    private void exportTo(long userId, ByteArrayOutputStream out) {
+        exporter.export(userId, TimestampFormat.ISO_8601, out);
+    }
+}
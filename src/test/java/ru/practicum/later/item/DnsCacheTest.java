@@ -0,0 +1,63 @@
+package ru.practicum.later.item;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DnsCacheTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final DnsCache cache = new DnsCache(host -> {
+        lookups.incrementAndGet();
+        if (host.equals("missing.test")) {
+            throw new UnknownHostException(host);
+        }
+        return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})};
+    }, clock::get, 300, 60, 100, registry);
+
+    @Test
+    void resolve_withinTtl_usesCachedAddress() throws Exception {
+        cache.resolve("example.test");
+        advanceSeconds(299);
+        cache.resolve("example.test");
+
+        assertThat(lookups.get()).isEqualTo(1);
+        assertThat(registry.counter("later.retriever.dns.requests", "cache", "hit").count()).isEqualTo(1);
+    }
+
+    @Test
+    void resolve_afterTtl_looksUpAgain() throws Exception {
+        cache.resolve("example.test");
+        advanceSeconds(301);
+        cache.resolve("example.test");
+
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    void resolve_unknownHost_isCachedForNegativeTtl() {
+        assertThrows(UnknownHostException.class, () -> cache.resolve("missing.test"));
+        advanceSeconds(59);
+        assertThrows(UnknownHostException.class, () -> cache.resolve("missing.test"));
+        assertThat(lookups.get()).isEqualTo(1);
+
+        advanceSeconds(2);
+        assertThrows(UnknownHostException.class, () -> cache.resolve("missing.test"));
+        assertThat(lookups.get()).isEqualTo(2);
+        assertThat(registry.counter("later.retriever.dns.requests", "cache", "negative_hit").count()).isEqualTo(1);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.later.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Разбор одной загруженной страницы: Jsoup с построением DOM против HtmlSniffer.
+// Кроме небольших тестовых страниц есть крупная статья (~200 КБ) с картинкой и видео
+// в начале - на ней видно досрочное завершение просмотра - и без них, где просмотр
+// идёт до конца документа.
+// Запуск: mvn test-compile, затем main этого класса с тестовым classpath
+// (или org.openjdk.jmh.Main HtmlSnifferBenchmark с параметрами JMH).
+//
+// Замер (JDK 17.0.9, 1 vCPU, -wi 5 -i 10, мкс на страницу; разброс на общей машине велик,
+// смотреть стоит на порядок):
+//
+//     страница            jsoup            sniffer
+//     article.html           53 ± 32        2.8 ± 0.7
+//     cp1251.html            81 ± 60        1.2 ± 0.5
+//     large-media-first    5872 ± 374       1.1 ± 0.4
+//     large-no-media       6059 ± 1917    440 ± 80
+//
+// На крупной странице без картинок и видео просмотр до конца примерно в 14 раз быстрее
+// построения DOM, а с медиа в начале он заканчивается на первых килобайтах.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlSnifferBenchmark {
+    @Param({"article.html", "cp1251.html", "large-media-first", "large-no-media"})
+    public String page;
+
+    private byte[] html;
+
+    @Setup
+    public void setUp() {
+        if (page.equals("large-media-first")) {
+            html = largePage("<img src=\"cover.jpg\"><video src=\"clip.mp4\"></video>");
+        } else if (page.equals("large-no-media")) {
+            html = largePage("");
+        } else {
+            html = HtmlSnifferTest.load(page);
+        }
+    }
+
+    private static byte[] largePage(String media) {
+        StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\">")
+                .append("<title>Большая статья &mdash; часть 1</title>")
+                .append("<script>var x = 1 < 2 && \"<img>\";</script></head><body>")
+                .append(media);
+        for (int i = 0; sb.length() < 200 * 1024; i++) {
+            sb.append("<div class=\"row\"><a href=\"/p/").append(i).append("\">Ссылка ").append(i)
+                    .append("</a><p>Абзац текста статьи номер ").append(i)
+                    .append(" с <b>выделением</b> и &amp; ссылками.</p><!-- блок ").append(i).append(" --></div>\n");
+        }
+        return sb.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object jsoup() {
+        return HtmlSniffer.parseWithJsoup(html, null);
+    }
+
+    @Benchmark
+    public Object sniffer() {
+        return HtmlSniffer.parse(html, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HtmlSnifferBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
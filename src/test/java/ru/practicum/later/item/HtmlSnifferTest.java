@@ -0,0 +1,88 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Быстрый разбор должен давать тот же результат, что и Jsoup, на каждом документе,
+// который он берётся разобрать сам; остальные он должен отдавать Jsoup.
+class HtmlSnifferTest {
+    private static final Charset CP1251 = Charset.forName("windows-1251");
+
+    @ParameterizedTest
+    @MethodSource("getDocuments")
+    void parse_sameAsJsoup(String name, Charset charset, boolean sniffed) {
+        byte[] html = load(name);
+
+        assertThat(HtmlSniffer.parse(html, charset)).isEqualTo(HtmlSniffer.parseWithJsoup(html, charset));
+        if (sniffed) {
+            assertThat(HtmlSniffer.sniff(html, charset)).isNotNull();
+        } else {
+            assertThat(HtmlSniffer.sniff(html, charset)).isNull();
+        }
+    }
+
+    @Test
+    void sniff_article() {
+        assertThat(HtmlSniffer.sniff(load("article.html"), null))
+                .isEqualTo(new HtmlSniffer.Result("Новости & статьи — «Позже»", true, false));
+    }
+
+    @Test
+    void sniff_charsetFromMeta() {
+        assertThat(HtmlSniffer.sniff(load("cp1251.html"), null))
+                .isEqualTo(new HtmlSniffer.Result("Привет, мир", true, true));
+    }
+
+    @Test
+    void sniff_rawTextIsNotMarkup() {
+        assertThat(HtmlSniffer.sniff(load("raw-text.html"), StandardCharsets.UTF_8))
+                .isEqualTo(new HtmlSniffer.Result("Raw text", false, false));
+    }
+
+    @Test
+    void sniff_referencesAndWhitespaceInTitle() {
+        assertThat(HtmlSniffer.sniff(load("whitespace-title.html"), null).getTitle())
+                .isEqualTo("Line one ABC <tag> \"q\" end");
+    }
+
+    private static Stream<Arguments> getDocuments() {
+        return Stream.of(
+                Arguments.of("article.html", null, true),
+                Arguments.of("article.html", StandardCharsets.UTF_8, true),
+                Arguments.of("cp1251.html", null, true),
+                Arguments.of("cp1251.html", CP1251, true),
+                Arguments.of("no-title.html", null, true),
+                Arguments.of("whitespace-title.html", null, true),
+                Arguments.of("raw-text.html", null, true),
+                Arguments.of("bom.html", null, true),
+                Arguments.of("late-meta.html", null, true),
+                Arguments.of("late-meta.html", StandardCharsets.UTF_8, true),
+                Arguments.of("title-in-body.html", null, false),
+                Arguments.of("unclosed-comment.html", null, false),
+                Arguments.of("noscript-img.html", null, false),
+                Arguments.of("image-tag.html", null, false),
+                Arguments.of("script-comment.html", null, false),
+                Arguments.of("unknown-meta.html", null, false),
+                Arguments.of("article.html", StandardCharsets.UTF_16, false)
+        );
+    }
+
+    static byte[] load(String name) {
+        try (InputStream in = HtmlSnifferTest.class.getResourceAsStream("/html/" + name)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
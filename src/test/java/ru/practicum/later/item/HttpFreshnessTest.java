@@ -0,0 +1,73 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpFreshnessTest {
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00Z");
+
+    @Test
+    void ttl_maxAgeMinusAge() {
+        HttpHeaders headers = headers(Map.of("Cache-Control", List.of("public, max-age=3600"), "Age", List.of("600")));
+
+        assertThat(HttpFreshness.ttl(headers, NOW)).isEqualTo(Duration.ofMinutes(50));
+    }
+
+    @Test
+    void ttl_sharedMaxAgeWinsOverMaxAge() {
+        HttpHeaders headers = headers(Map.of("Cache-Control", List.of("max-age=60, s-maxage=86400")));
+
+        assertThat(HttpFreshness.ttl(headers, NOW)).isEqualTo(Duration.ofDays(1));
+    }
+
+    @Test
+    void ttl_noCacheOrNoStore_isZero() {
+        assertThat(HttpFreshness.ttl(headers(Map.of("Cache-Control", List.of("no-cache"))), NOW))
+                .isEqualTo(Duration.ZERO);
+        assertThat(HttpFreshness.ttl(headers(Map.of("Cache-Control", List.of("private", "no-store"))), NOW))
+                .isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void ttl_expiresRelativeToDate() {
+        HttpHeaders headers = headers(Map.of(
+                "Date", List.of(httpDate(NOW)),
+                "Expires", List.of(httpDate(NOW.plus(Duration.ofHours(2))))));
+
+        assertThat(HttpFreshness.ttl(headers, NOW)).isEqualTo(Duration.ofHours(2));
+    }
+
+    @Test
+    void ttl_invalidExpires_isZero() {
+        assertThat(HttpFreshness.ttl(headers(Map.of("Expires", List.of("0"))), NOW)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void ttl_onlyLastModified_usesTenthOfDocumentAge() {
+        HttpHeaders headers = headers(Map.of("Last-Modified", List.of(httpDate(NOW.minus(Duration.ofDays(10))))));
+
+        assertThat(HttpFreshness.ttl(headers, NOW)).isEqualTo(Duration.ofDays(1));
+    }
+
+    @Test
+    void ttl_noFreshnessHeaders_isNull() {
+        assertThat(HttpFreshness.ttl(headers(Map.of("Content-Type", List.of("text/html"))), NOW)).isNull();
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> values) {
+        return HttpHeaders.of(values, (name, value) -> true);
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+}
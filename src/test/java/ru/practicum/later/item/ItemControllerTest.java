@@ -4,8 +4,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.practicum.later.BaseIntegTest;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.dto.ModifyItemRequest;
@@ -13,13 +15,17 @@ import ru.practicum.later.item.model.Item;
 import ru.practicum.later.user.User;
 import ru.practicum.later.user.UserRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.practicum.later.testutil.TestDataProvider.getUnsavedItemOfUser;
 import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
@@ -28,7 +34,7 @@ import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
 class ItemControllerTest extends BaseIntegTest {
 
     private static final DateTimeFormatter dtFormatter = DateTimeFormatter
-            .ofPattern("yyyy.MM.dd hh:mm:ss")
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ssX")
             .withZone(ZoneOffset.UTC);
 
     @Autowired
@@ -131,6 +137,30 @@ class ItemControllerTest extends BaseIntegTest {
                 .andExpect(jsonPath("$[0].dateResolved", is(dtFormatter.format(item.getDateResolved()))));
     }
 
+    @SneakyThrows
+    @Test
+    void whenStreamItemsByLastName_returnsNdjsonLines() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = itemRepository.save(getUnsavedItemOfUser(user));
+
+        MvcResult started = mvc.perform(get("/items")
+                        .param("lastName", user.getLastName())
+                        .param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(1);
+        assertThat(objectMapper.readTree(lines[0]).get("id").asLong()).isEqualTo(item.getId());
+    }
+
     @SneakyThrows
     @Test
     void whenGetItemsByParams_returnsCorrectList() {
@@ -159,4 +189,41 @@ class ItemControllerTest extends BaseIntegTest {
 
     }
 
-}
\ No newline at end of file
+    @SneakyThrows
+    @Test
+    void whenGetItemsWithCurrentETag_returnsNotModifiedUntilItemsChange() {
+        User user = getUnsavedUser();
+        user = userRepository.save(user);
+        Item item = getUnsavedItemOfUser(user);
+        item = itemRepository.save(item);
+
+        String etag = mvc.perform(get("/items")
+                        .header("X-Later-User-Id", user.getId())
+                        .param("state", "all"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/items")
+                        .header("X-Later-User-Id", user.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .param("state", "all"))
+                .andExpect(status().isNotModified());
+
+        ModifyItemRequest req = ModifyItemRequest.of(item.getId(), true, null, false);
+        mvc.perform(patch("/items")
+                        .header("X-Later-User-Id", user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/items")
+                        .header("X-Later-User-Id", user.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .param("state", "all"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].unread", is(false)));
+    }
+
+}
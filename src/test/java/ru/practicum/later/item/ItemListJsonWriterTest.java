@@ -0,0 +1,100 @@
+package ru.practicum.later.item;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.practicum.later.common.TimestampFormat;
+import ru.practicum.later.item.model.ItemView;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemListJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ItemListJsonWriter writer = new ItemListJsonWriter(objectMapper);
+
+    @Test
+    void toJson_producesSameJsonAsItemDtoSerialization() throws Exception {
+        ItemRows rows = new ItemRows(
+                List.of(
+                        view(1L, "https://example.com/a", "Title with \"quotes\" и юникодом", true),
+                        view(2L, "https://example.com/b", null, false)
+                ),
+                Map.of(1L, List.of("tag1")));
+
+        byte[] expected = objectMapper.writer()
+                .withAttribute(TimestampFormat.class, TimestampFormat.ISO_8601)
+                .writeValueAsBytes(ItemMapper.mapToItemDto(rows));
+
+        assertThat(objectMapper.readTree(writer.toJson(rows, TimestampFormat.ISO_8601))).isEqualTo(objectMapper.readTree(expected));
+    }
+
+    @Test
+    void toJson_writesDatesInRequestedFormat() throws Exception {
+        ItemRows rows = new ItemRows(List.of(view(1L, "https://example.com/a", "Title", true)), Map.of());
+
+        JsonNode iso = objectMapper.readTree(writer.toJson(rows, TimestampFormat.ISO_8601));
+        JsonNode millis = objectMapper.readTree(writer.toJson(rows, TimestampFormat.EPOCH_MILLIS));
+
+        assertThat(iso.get(0).get("dateResolved").asText()).isEqualTo("2023-11-14T22:13:21Z");
+        assertThat(millis.get(0).get("dateResolved").asLong()).isEqualTo(1_700_000_001_000L);
+    }
+
+    @Test
+    void toJson_whenNoItems_returnsEmptyArray() {
+        assertThat(new String(writer.toJson(ItemRows.empty(), TimestampFormat.ISO_8601))).isEqualTo("[]");
+    }
+
+    private static ItemView view(long id, String url, String title, boolean unread) {
+        return new ItemView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUrl() {
+                return url;
+            }
+
+            @Override
+            public String getResolvedUrl() {
+                return url;
+            }
+
+            @Override
+            public String getMimeType() {
+                return "text";
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public boolean isHasImage() {
+                return false;
+            }
+
+            @Override
+            public boolean isHasVideo() {
+                return true;
+            }
+
+            @Override
+            public boolean isUnread() {
+                return unread;
+            }
+
+            @Override
+            public Instant getDateResolved() {
+                return Instant.ofEpochSecond(1_700_000_000L + id);
+            }
+        };
+    }
+}
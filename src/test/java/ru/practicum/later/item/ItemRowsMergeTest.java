@@ -0,0 +1,121 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.model.ItemInfo;
+import ru.practicum.later.item.model.ItemView;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemRowsMergeTest {
+
+    @Test
+    void take_mergesShardsInSortOrderWithNullsAsInPostgres() {
+        ItemRowsMerge merge = new ItemRowsMerge(GetItemRequest.Sort.NEWEST, 2);
+        merge.add(0, rows(view(1, null), view(4, 30), view(2, 10)), true);
+        merge.add(1, rows(view(3, null), view(5, 20)), true);
+
+        assertThat(ids(merge.take(10))).containsExactly(1L, 3L, 4L, 5L, 2L);
+        assertThat(merge.isDone()).isTrue();
+    }
+
+    @Test
+    void take_skipsAndDropsItemsOfMovingUserFoundOnBothShards() {
+        ItemRowsMerge merge = new ItemRowsMerge(GetItemRequest.Sort.OLDEST, 2);
+        merge.add(0, new ItemRows(List.of(view(1, 10), view(2, 20), view(4, 40)), Map.of(2L, List.of("tag"))), true);
+        merge.add(1, rows(view(2, 20), view(3, 30)), true);
+
+        assertThat(merge.skip(1)).isEqualTo(1);
+        ItemRows page = merge.take(2);
+
+        assertThat(ids(page)).containsExactly(2L, 3L);
+        assertThat(page.getTagsByItemId()).isEqualTo(Map.of(2L, List.of("tag")));
+    }
+
+    @Test
+    void take_stopsWhereShardNeedsNextChunk() {
+        ItemRowsMerge merge = new ItemRowsMerge(GetItemRequest.Sort.OLDEST, 2);
+        merge.add(0, rows(view(1, 10), view(3, 30)), false);
+        merge.add(1, rows(view(2, 20), view(5, 50)), true);
+
+        assertThat(merge.skip(1)).isEqualTo(1);
+        assertThat(ids(merge.take(10))).containsExactly(2L, 3L);
+        assertThat(merge.skip(1)).isZero();
+        assertThat(merge.needsMore(0)).isTrue();
+        assertThat(merge.lastFetched(0).getId()).isEqualTo(3L);
+
+        merge.add(0, rows(view(4, 40)), true);
+        assertThat(ids(merge.take(10))).containsExactly(4L, 5L);
+        assertThat(merge.isDone()).isTrue();
+    }
+
+    @Test
+    void compareCodePoints_ordersStringsAsCollationC() {
+        assertThat(ItemRowsMerge.compareCodePoints("B", "a")).isNegative();
+        assertThat(ItemRowsMerge.compareCodePoints("a", "ab")).isNegative();
+        assertThat(ItemRowsMerge.compareCodePoints("\uFFFD", "\uD83D\uDE00")).isNegative();
+        assertThat("\uFFFD".compareTo("\uD83D\uDE00")).isPositive();
+    }
+
+    private static ItemRows rows(ItemView... views) {
+        return new ItemRows(List.of(views), Map.of());
+    }
+
+    private static List<Long> ids(ItemRows rows) {
+        return rows.getItems().stream().map(ItemInfo::getId).collect(Collectors.toList());
+    }
+
+    private static ItemView view(long id, Integer resolvedSecond) {
+        return new ItemView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUrl() {
+                return "https://example.com/" + id;
+            }
+
+            @Override
+            public String getResolvedUrl() {
+                return getUrl();
+            }
+
+            @Override
+            public String getMimeType() {
+                return "text";
+            }
+
+            @Override
+            public String getTitle() {
+                return "Title " + id;
+            }
+
+            @Override
+            public boolean isHasImage() {
+                return false;
+            }
+
+            @Override
+            public boolean isHasVideo() {
+                return false;
+            }
+
+            @Override
+            public boolean isUnread() {
+                return true;
+            }
+
+            @Override
+            public Instant getDateResolved() {
+                return resolvedSecond == null ? null : Instant.ofEpochSecond(resolvedSecond);
+            }
+        };
+    }
+}
@@ -4,20 +4,31 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.common.BadRequestException;
 import ru.practicum.later.common.InsufficientPermissionException;
 import ru.practicum.later.common.NotFoundException;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.dto.GetItemRequest;
+import ru.practicum.later.item.dto.ItemChangesDto;
 import ru.practicum.later.item.dto.ItemDto;
 import ru.practicum.later.item.dto.ModifyItemRequest;
 import ru.practicum.later.item.model.Item;
 import ru.practicum.later.user.User;
 import ru.practicum.later.user.UserRepository;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -31,6 +42,12 @@ class ItemServiceImplTest extends BaseIntegTest {
     private UserRepository userRepository;
     @Autowired
     private ItemService itemService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ItemVersions itemVersions;
     @MockBean
     private UrlMetaDataRetriever urlMetaDataRetriever;
 
@@ -172,6 +189,23 @@ class ItemServiceImplTest extends BaseIntegTest {
         assertThat(items).isEmpty();
     }
 
+    @Test
+    void getItemsByRequestTags_afterChangeFromOtherNode_returnsCurrentList() {
+        User user = userRepository.save(getUnsavedUser());
+        Item one = itemRepository.save(getUnsavedItemOfUser(user, "text", "ATitle", "aUrl", DATE_RESOLVED, true));
+        Item two = itemRepository.save(getUnsavedItemOfUser(user, "text", "BTitle", "bUrl", DATE_RESOLVED, true));
+        GetItemRequest req = GetItemRequest.of(user.getId(), "all", "all", "title", 10, List.of("tag1"));
+        assertThat(itemService.getItems(req)).extracting(ItemDto::getId).containsExactly(one.getId(), two.getId());
+
+        // Так изменение выглядит для узла, чей индекс его не видел.
+        jdbcTemplate.update("delete from tags where user_id = ? and item_id = ? and name = 'tag1'",
+                user.getId(), one.getId());
+        jdbcTemplate.update("insert into item_list_versions (user_id, version) values (?, 1) " +
+                "on conflict (user_id) do update set version = item_list_versions.version + 1", user.getId());
+
+        assertThat(itemService.getItems(req)).extracting(ItemDto::getId).containsExactly(two.getId());
+    }
+
     @Test
     void getItemsByRequestContentType_returnsCorrectList() {
         User user = getUnsavedUser();
@@ -406,7 +440,7 @@ class ItemServiceImplTest extends BaseIntegTest {
 
     @Test
     void getUserItems_whenNoUserWithItems_returnsEmptyList() {
-        List<ItemDto> dtos = itemService.getUserItems("lastname");
+        List<ItemDto> dtos = itemService.getUserItems("lastname", GetItemRequest.Sort.NEWEST, 0, 10);
         assertThat(dtos).isEmpty();
     }
 
@@ -417,7 +451,7 @@ class ItemServiceImplTest extends BaseIntegTest {
         Item item = getUnsavedItemOfUser(user);
         item = itemRepository.save(item);
 
-        List<ItemDto> dtos = itemService.getUserItems(user.getLastName());
+        List<ItemDto> dtos = itemService.getUserItems(user.getLastName(), GetItemRequest.Sort.NEWEST, 0, 10);
         assertThat(dtos.size()).isEqualTo(1);
         ItemDto dto = dtos.get(0);
         assertThat(dto.getId()).isEqualTo(item.getId());
@@ -431,6 +465,46 @@ class ItemServiceImplTest extends BaseIntegTest {
         assertThat(dto.getTags()).isEqualTo(item.getTags());
     }
 
+    @Test
+    void getUserItems_whenPrefixContainsWildcard_matchesItLiterally() {
+        User user = userRepository.save(getUnsavedUser());
+        itemRepository.save(getUnsavedItemOfUser(user));
+
+        assertThat(itemService.getUserItems("%", GetItemRequest.Sort.NEWEST, 0, 10)).isEmpty();
+        assertThat(itemService.getUserItems("last_ame", GetItemRequest.Sort.NEWEST, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void getUserItems_returnsRequestedPageInSortOrder() {
+        User user = userRepository.save(getUnsavedUser());
+        Item first = itemRepository.save(getUnsavedItemOfUser(user, "text", "A", "http://a.com", DATE_RESOLVED, true));
+        Item second = itemRepository.save(getUnsavedItemOfUser(user, "text", "B", "http://b.com", DATE_RESOLVED, true));
+        Item third = itemRepository.save(getUnsavedItemOfUser(user, "text", "C", "http://c.com", DATE_RESOLVED, true));
+
+        List<ItemDto> firstPage = itemService.getUserItems("last", GetItemRequest.Sort.TITLE, 0, 2);
+        List<ItemDto> secondPage = itemService.getUserItems("last", GetItemRequest.Sort.TITLE, 2, 2);
+
+        assertThat(firstPage).extracting(ItemDto::getId).containsExactly(first.getId(), second.getId());
+        assertThat(secondPage).extracting(ItemDto::getId).containsExactly(third.getId());
+    }
+
+    @Test
+    void getUserItems_sortsTitlesByCodePoints() {
+        User user = userRepository.save(getUnsavedUser());
+        Item lower = itemRepository.save(getUnsavedItemOfUser(user, "text", "a", "http://a.com", DATE_RESOLVED, true));
+        Item upper = itemRepository.save(getUnsavedItemOfUser(user, "text", "B", "http://b.com", DATE_RESOLVED, true));
+
+        List<ItemDto> dtos = itemService.getUserItems("last", GetItemRequest.Sort.TITLE, 0, 10);
+
+        assertThat(dtos).extracting(ItemDto::getId).containsExactly(upper.getId(), lower.getId());
+    }
+
+    @Test
+    void getUserItems_whenOffsetTooLarge_throwsBadRequestException() {
+        assertThrows(BadRequestException.class,
+                () -> itemService.getUserItems("last", GetItemRequest.Sort.TITLE, Integer.MAX_VALUE, 100));
+    }
+
     @Test
     void deleteItem_deletesItemOfUser() {
         User user = getUnsavedUser();
@@ -497,6 +571,172 @@ class ItemServiceImplTest extends BaseIntegTest {
         assertThat(dto.isUnread()).isTrue();
     }
 
+    @Test
+    void addNewItem_whenUrlSavedBefore_skipsRetrieverAndAddsTags() {
+        String url = "http://test.com/again";
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenReturn(getUrlMetadata(url));
+        ItemDto first = itemService.addNewItem(user.getId(), getAddItemRequest(url, Set.of("tag1")));
+
+        ItemDto second = itemService.addNewItem(user.getId(), getAddItemRequest(url, Set.of("tag2")));
+
+        Mockito.verify(urlMetaDataRetriever, Mockito.times(1)).retrieve(url);
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(second.getTags()).containsExactlyInAnyOrder("tag1", "tag2");
+    }
+
+    @Test
+    void addNewItem_concurrentSavesOfSameUrl_createOneItemWithAllTags() throws Exception {
+        int threads = 8;
+        String url = "http://test.com/concurrent";
+        User user = userRepository.save(getUnsavedUser());
+        // Все потоки дожидаются друг друга после "загрузки страницы" и одновременно
+        // доходят до записи.
+        CyclicBarrier fetched = new CyclicBarrier(threads);
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenAnswer(invocation -> {
+                    fetched.await(10, TimeUnit.SECONDS);
+                    return getUrlMetadata(url);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ItemDto>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            AddItemRequest req = getAddItemRequest(url, Set.of("tag" + i));
+            results.add(executor.submit(() -> itemService.addNewItem(user.getId(), req)));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<ItemDto> result : results) {
+            ids.add(result.get(30, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+
+        assertThat(ids).hasSize(1);
+        List<ItemDto> items = itemService.getItems(user.getId());
+        assertThat(items).hasSize(1);
+        assertThat(items.get(0).getTags())
+                .containsExactlyInAnyOrder("tag0", "tag1", "tag2", "tag3", "tag4", "tag5", "tag6", "tag7");
+    }
+
+    @Test
+    void addNewItem_sameUrlByTwoUsers_sharesOnePage() {
+        String url = "http://test.com/shared";
+        User one = userRepository.save(getUnsavedUser());
+        User two = userRepository.save(getUnsavedUser().setEmail("two@email.com"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenReturn(getUrlMetadata(url));
+
+        ItemDto first = itemService.addNewItem(one.getId(), getAddItemRequest(url, Set.of("tag1")));
+        ItemDto second = itemService.addNewItem(two.getId(), getAddItemRequest(url, Set.of("tag2")));
+
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(second.getTitle()).isEqualTo(first.getTitle());
+        assertThat(jdbcTemplate.queryForObject("select count(*) from urls", Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(distinct url_id) from items", Long.class)).isEqualTo(1);
+        assertThat(itemService.getItems(two.getId()).get(0).getTags()).containsExactly("tag2");
+    }
+
+    @Test
+    void addNewItem_fillsPlaceholderOfOtherUser_putsTheirItemIntoChanges() {
+        String url = "http://test.com/shared";
+        User one = userRepository.save(getUnsavedUser());
+        User two = userRepository.save(getUnsavedUser().setEmail("two@email.com"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenReturn(getUrlMetadata(url));
+        ItemDto placeholder = itemService.addNewItem(one.getId(), getAddItemRequest(url, Set.of()));
+        long cursor = itemService.getChanges(one.getId(), 0, 10).getCursor();
+        assertThat(itemService.getItems(one.getId()).get(0).getTitle()).isNull();
+
+        itemService.addNewItem(two.getId(), getAddItemRequest(url, Set.of()));
+
+        ItemChangesDto delta = itemService.getChanges(one.getId(), cursor, 10);
+        assertThat(delta.getChanged()).extracting(ItemDto::getId).containsExactly(placeholder.getId());
+        assertThat(delta.getChanged().get(0).getTitle()).isEqualTo("title");
+        assertThat(itemService.getItems(one.getId()).get(0).getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void addNewItem_sameUrlWhilePlaceholder_returnsLoadedPageAndAllTags() {
+        String url = "http://test.com/later";
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenReturn(getUrlMetadata(url));
+        ItemDto placeholder = itemService.addNewItem(user.getId(), getAddItemRequest(url, Set.of("tag1")));
+
+        ItemDto saved = itemService.addNewItem(user.getId(), getAddItemRequest(url, Set.of("tag2")));
+
+        assertThat(saved.getId()).isEqualTo(placeholder.getId());
+        assertThat(saved.getTitle()).isEqualTo("title");
+        assertThat(saved.getTags()).containsExactlyInAnyOrder("tag1", "tag2");
+        assertThat(itemService.getItems(user.getId()).get(0).getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void addNewItem_pageAlreadyLoaded_keepsItsMetadata() {
+        String url = "http://test.com/shared";
+        User one = userRepository.save(getUnsavedUser());
+        User two = userRepository.save(getUnsavedUser().setEmail("two@email.com"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenReturn(getUrlMetadata(url))
+                .thenReturn(getUrlMetaData(url, url, "text", "changed", false, false));
+        itemService.addNewItem(one.getId(), getAddItemRequest(url, Set.of()));
+
+        ItemDto second = itemService.addNewItem(two.getId(), getAddItemRequest(url, Set.of()));
+
+        assertThat(second.getTitle()).isEqualTo("title");
+        assertThat(itemService.getItems(one.getId()).get(0).getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void addNewItem_urlWithTrackingParams_reusesItemSavedWithoutThem() {
+        String url = "http://test.com/article";
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve(url))
+                .thenReturn(getUrlMetadata(url));
+        ItemDto first = itemService.addNewItem(user.getId(), getAddItemRequest(url, Set.of("tag1")));
+
+        ItemDto second = itemService.addNewItem(user.getId(),
+                getAddItemRequest("HTTP://Test.com:80/article/?utm_source=feed#comments", Set.of()));
+
+        assertThat(second.getId()).isEqualTo(first.getId());
+        Mockito.verify(urlMetaDataRetriever, Mockito.times(1)).retrieve(url);
+    }
+
+    @Test
+    void mergeDuplicateUrls_mergesItemsWithSameCanonicalUrl() {
+        User user = userRepository.save(getUnsavedUser());
+        Item first = itemRepository.save(getUnsavedItemOfUser(user, "text", "title",
+                "http://test.com/page?utm_source=a", DATE_RESOLVED, true)
+                .setUrl("http://test.com/page?utm_source=a")
+                .setTags(Set.of("tag1")));
+        itemRepository.save(getUnsavedItemOfUser(user, "text", "title",
+                "http://TEST.com/page/", DATE_RESOLVED, false)
+                .setUrl("http://TEST.com/page/")
+                .setTags(Set.of("tag2")));
+
+        int merged = itemService.mergeDuplicateUrls(user.getId());
+
+        assertThat(merged).isEqualTo(1);
+        List<ItemDto> items = itemService.getItems(user.getId());
+        assertThat(items).hasSize(1);
+        assertThat(items.get(0).getId()).isEqualTo(first.getId());
+        assertThat(items.get(0).getResolvedUrl()).isEqualTo("http://test.com/page");
+        assertThat(items.get(0).getNormalUrl()).isEqualTo("http://test.com/page");
+        assertThat(items.get(0).getTags()).containsExactlyInAnyOrder("tag1", "tag2");
+        assertThat(items.get(0).isUnread()).isFalse();
+        assertThat(itemService.mergeDuplicateUrls(user.getId())).isZero();
+    }
+
     @Test
     void addNewItem_whenUserNotFound_throws() {
         AddItemRequest req = getDefaultAddItemRequest();
@@ -533,4 +773,84 @@ class ItemServiceImplTest extends BaseIntegTest {
         assertThat(items).isEmpty();
     }
 
-}
\ No newline at end of file
+    @Test
+    void getChanges_returnsChangedAndDeletedItemsAfterCursor() {
+        User user = getUnsavedUser();
+        user = userRepository.save(user);
+        Item one = itemRepository.save(getUnsavedItemOfUser(user,
+                "text",
+                "ATitle",
+                "aUrl",
+                DATE_RESOLVED,
+                true));
+        Item two = itemRepository.save(getUnsavedItemOfUser(user,
+                "text",
+                "BTitle",
+                "bUrl",
+                DATE_RESOLVED,
+                true));
+
+        ItemChangesDto initial = itemService.getChanges(user.getId(), 0, 10);
+        assertThat(initial.getChanged()).extracting(ItemDto::getId).containsExactly(one.getId(), two.getId());
+        assertThat(initial.getDeleted()).isEmpty();
+
+        itemService.changeItem(user.getId(), ModifyItemRequest.of(one.getId(), true, null, false));
+        itemService.deleteItem(user.getId(), two.getId());
+
+        ItemChangesDto delta = itemService.getChanges(user.getId(), initial.getCursor(), 10);
+        assertThat(delta.getChanged()).extracting(ItemDto::getId).containsExactly(one.getId());
+        assertThat(delta.getDeleted()).containsExactly(two.getId());
+        assertThat(delta.isHasMore()).isFalse();
+    }
+
+    @Test
+    void changeItem_whileOtherWriteOfUserIsNotCommitted_takesChangeSeqAfterIt() throws Exception {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = itemRepository.save(getUnsavedItemOfUser(user));
+
+        // Другая запись пользователя держит блокировку версии до фиксации.
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> other = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            itemVersions.lock(user.getId());
+            locked.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+        Future<?> change = executor.submit(() ->
+                itemService.changeItem(user.getId(), ModifyItemRequest.of(item.getId(), true, null, false)));
+        Thread.sleep(300);
+        assertThat(change.isDone()).isFalse();
+        Long takenMeanwhile = jdbcTemplate.queryForObject("select nextval('change_seq')", Long.class);
+
+        commit.countDown();
+        other.get(10, TimeUnit.SECONDS);
+        change.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Иначе читатель ленты мог бы увидеть более поздний номер раньше этого изменения
+        // и передвинуть курсор за него.
+        ItemChangesDto delta = itemService.getChanges(user.getId(), takenMeanwhile, 10);
+        assertThat(delta.getChanged()).extracting(ItemDto::getId).containsExactly(item.getId());
+    }
+
+    @Test
+    void changeItem_tagsAreStoredInPartitionOfItemOwner() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = itemRepository.save(getUnsavedItemOfUser(user));
+
+        itemService.changeItem(user.getId(), ModifyItemRequest.of(item.getId(), false, Set.of("newTag"), true));
+
+        List<String> tags = jdbcTemplate.queryForList(
+                "select name from tags where user_id = ? and item_id = ?", String.class, user.getId(), item.getId());
+        assertThat(tags).containsExactly("newTag");
+        Long partitions = jdbcTemplate.queryForObject(
+                "select count(*) from pg_inherits where inhparent = 'tags'::regclass", Long.class);
+        assertThat(partitions).isEqualTo(16);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.later.item;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MeteredHttpClientTest {
+    private final List<String> lookedUp = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private MeteredHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", location(exchange.getRequestURI().getQuery()));
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        server.createContext("/page", exchange -> {
+            byte[] body = "page".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        DnsCache dnsCache = new DnsCache(host -> {
+            lookedUp.add(host);
+            if (host.endsWith(".invalid")) {
+                throw new UnknownHostException(host);
+            }
+            return InetAddress.getAllByName(host);
+        }, System::nanoTime, 300, 60, 100, registry);
+        HttpClient delegate = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        client = new MeteredHttpClient(delegate, HttpClient.Redirect.ALWAYS, dnsCache, registry, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void send_followsRedirectAndChecksHostOfEveryStep() throws Exception {
+        HttpResponse<String> response = client.send(request("127.0.0.1", "/moved?localhost"),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("page");
+        assertThat(response.uri().getHost()).isEqualTo("localhost");
+        assertThat(lookedUp).containsExactly("127.0.0.1", "localhost");
+        assertThat(registry.find("later.retriever.requests").timers()).hasSize(2);
+    }
+
+    @Test
+    void send_redirectToUnknownHost_throwsUnknownHostException() {
+        assertThrows(UnknownHostException.class, () -> client.send(request("127.0.0.1", "/moved?missing.invalid"),
+                HttpResponse.BodyHandlers.ofString()));
+    }
+
+    private String location(String host) {
+        return "http://" + host + ":" + server.getAddress().getPort() + "/page";
+    }
+
+    private HttpRequest request(String host, String path) {
+        return HttpRequest.newBuilder(URI.create("http://" + host + ":" + server.getAddress().getPort() + path))
+                .GET()
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.later.item;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResolutionSchedulerTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void call_backgroundAtItsLimit_interactiveStillRuns() throws Exception {
+        ResolutionScheduler scheduler = scheduler(4, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> scheduler.call(ResolutionPriority.BULK, 1, () -> await(release)));
+        awaitGauge("later.resolution.active", ResolutionPriority.BULK, 1);
+
+        Future<?> secondBulk = executor.submit(() -> scheduler.call(ResolutionPriority.BULK, 2, () -> "bulk"));
+        awaitGauge("later.resolution.queue", ResolutionPriority.BULK, 1);
+
+        assertThat(scheduler.call(ResolutionPriority.INTERACTIVE, 3, () -> "interactive")).isEqualTo("interactive");
+        assertThat(secondBulk.isDone()).isFalse();
+
+        release.countDown();
+        secondBulk.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void call_sameClass_servesUsersInTurn() throws Exception {
+        ResolutionScheduler scheduler = scheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> scheduler.call(ResolutionPriority.BULK, 0, () -> await(release)));
+        awaitGauge("later.resolution.active", ResolutionPriority.BULK, 1);
+
+        List<Long> served = new CopyOnWriteArrayList<>();
+        long[] arrivals = {1, 1, 1, 2};
+        for (int i = 0; i < arrivals.length; i++) {
+            long userId = arrivals[i];
+            executor.submit(() -> scheduler.call(ResolutionPriority.BULK, userId, () -> served.add(userId)));
+            awaitGauge("later.resolution.queue", ResolutionPriority.BULK, i + 1);
+        }
+
+        release.countDown();
+        awaitGauge("later.resolution.queue", ResolutionPriority.BULK, 0);
+        awaitGauge("later.resolution.active", ResolutionPriority.BULK, 0);
+        assertThat(served).containsExactly(1L, 2L, 1L, 1L);
+    }
+
+    @Test
+    void call_noPlaceWithinMaxWait_failsAsTransient() {
+        ResolutionScheduler scheduler = scheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> scheduler.call(ResolutionPriority.REFRESH, 0, () -> await(release)));
+        awaitGauge("later.resolution.active", ResolutionPriority.REFRESH, 1);
+
+        assertThrows(TransientItemRetrieverException.class,
+                () -> scheduler.call(ResolutionPriority.REFRESH, 0, () -> "late"));
+        assertThat(registry.counter("later.resolution.rejected", "priority", "refresh").count()).isEqualTo(1);
+        assertThat(gauge("later.resolution.queue", ResolutionPriority.REFRESH)).isZero();
+        release.countDown();
+    }
+
+    private ResolutionScheduler scheduler(int maxConcurrent, int backgroundLimit) {
+        ResolutionProperties properties = new ResolutionProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.setInteractive(new ResolutionProperties.Limit(maxConcurrent, 1000));
+        properties.setBulk(new ResolutionProperties.Limit(backgroundLimit, 5000));
+        properties.setRefresh(new ResolutionProperties.Limit(backgroundLimit, 50));
+        return new ResolutionScheduler(properties, registry);
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private double gauge(String name, ResolutionPriority priority) {
+        return registry.get(name).tag("priority", priority.tag()).gauge().value();
+    }
+
+    private void awaitGauge(String name, ResolutionPriority priority, double expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauge(name, priority) != expected) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.item.dto.ItemDto;
+import ru.practicum.later.user.User;
+import ru.practicum.later.user.UserRepository;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.later.testutil.TestDataProvider.getAddItemRequest;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
+import static ru.practicum.later.testutil.TestDataProvider.getUrlMetaData;
+import static ru.practicum.later.testutil.TestDataProvider.getUrlMetadata;
+
+class ResolveRetryWorkerTest extends BaseIntegTest {
+    @Autowired
+    private ResolveRetryWorker worker;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private UrlMetaDataRetriever urlMetaDataRetriever;
+
+    @Test
+    void addNewItem_transientFailure_savesItemAndFillsItInLater() {
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/later"))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenReturn(getUrlMetadata("http://test.com/later"));
+
+        ItemDto saved = itemService.addNewItem(user.getId(), getAddItemRequest("http://test.com/later", Set.of("tag")));
+
+        assertThat(saved.getTitle()).isNull();
+        assertThat(saved.getTags()).containsExactly("tag");
+        assertThat(jdbcTemplate.queryForObject("select last_error from resolve_retries where item_id = ?",
+                String.class, saved.getId())).isEqualTo("timeout");
+
+        long cursor = itemService.getChanges(user.getId(), 0, 10).getCursor();
+        makeRetriesDue();
+        worker.drain();
+
+        List<ItemDto> changed = itemService.getChanges(user.getId(), cursor, 10).getChanged();
+        assertThat(changed).extracting(ItemDto::getId).containsExactly(saved.getId());
+        assertThat(changed.get(0).getTitle()).isEqualTo("title");
+        assertThat(countRetries()).isZero();
+    }
+
+    @Test
+    void drain_redirectToAlreadySavedPage_mergesItems() {
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/page"))
+                .thenReturn(getUrlMetadata("http://test.com/page"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/short"))
+                .thenThrow(new TransientItemRetrieverException("503"))
+                .thenReturn(getUrlMetaData("http://test.com/short", "http://test.com/page",
+                        "text", "title", false, false));
+        ItemDto kept = itemService.addNewItem(user.getId(), getAddItemRequest("http://test.com/page", Set.of("one")));
+        ItemDto partial = itemService.addNewItem(user.getId(), getAddItemRequest("http://test.com/short", Set.of("two")));
+
+        makeRetriesDue();
+        worker.drain();
+
+        List<ItemDto> items = itemService.getItems(user.getId());
+        assertThat(items).extracting(ItemDto::getId).containsExactly(kept.getId());
+        assertThat(items.get(0).getTags()).containsExactlyInAnyOrder("one", "two");
+        assertThat(itemService.getChanges(user.getId(), 0, 10).getDeleted()).containsExactly(partial.getId());
+        assertThat(jdbcTemplate.queryForObject("select count(*) from urls", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void drain_placeholderOfTwoUsers_putsBothItemsIntoChanges() {
+        User one = userRepository.save(getUnsavedUser());
+        User two = userRepository.save(getUnsavedUser().setEmail("two@email.com"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/shared"))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenReturn(getUrlMetadata("http://test.com/shared"));
+        ItemDto first = itemService.addNewItem(one.getId(), getAddItemRequest("http://test.com/shared", Set.of()));
+        ItemDto second = itemService.addNewItem(two.getId(), getAddItemRequest("http://test.com/shared", Set.of()));
+        long cursor = itemService.getChanges(two.getId(), 0, 10).getCursor();
+
+        // Сначала загружается только заготовка первого пользователя.
+        jdbcTemplate.update("update resolve_retries set next_attempt_at = next_attempt_at - interval '1 day' " +
+                "where user_id = ?", one.getId());
+        worker.drain();
+
+        List<ItemDto> changed = itemService.getChanges(two.getId(), cursor, 10).getChanged();
+        assertThat(changed).extracting(ItemDto::getId).containsExactly(second.getId());
+        assertThat(changed.get(0).getTitle()).isEqualTo("title");
+        assertThat(itemService.getItems(one.getId()).get(0).getId()).isEqualTo(first.getId());
+        assertThat(itemService.getItems(one.getId()).get(0).getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void drain_pageLoadedMeanwhile_keepsItsMetadata() {
+        User one = userRepository.save(getUnsavedUser());
+        User two = userRepository.save(getUnsavedUser().setEmail("two@email.com"));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/short"))
+                .thenThrow(new TransientItemRetrieverException("503"))
+                .thenReturn(getUrlMetaData("http://test.com/short", "http://test.com/page",
+                        "text", "changed", false, false));
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/page"))
+                .thenReturn(getUrlMetadata("http://test.com/page"));
+        itemService.addNewItem(two.getId(), getAddItemRequest("http://test.com/page", Set.of()));
+        itemService.addNewItem(one.getId(), getAddItemRequest("http://test.com/short", Set.of()));
+
+        makeRetriesDue();
+        worker.drain();
+
+        assertThat(itemService.getItems(one.getId()).get(0).getTitle()).isEqualTo("title");
+        assertThat(itemService.getItems(two.getId()).get(0).getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void drain_transientFailureAgain_keepsRetryWithNextAttempt() {
+        User user = userRepository.save(getUnsavedUser());
+        Mockito
+                .when(urlMetaDataRetriever.retrieve("http://test.com/down"))
+                .thenThrow(new TransientItemRetrieverException("timeout"))
+                .thenThrow(new TransientItemRetrieverException("502"));
+        itemService.addNewItem(user.getId(), getAddItemRequest("http://test.com/down", Set.of()));
+
+        makeRetriesDue();
+        worker.drain();
+
+        assertThat(jdbcTemplate.queryForObject("select attempts from resolve_retries", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select last_error from resolve_retries", String.class))
+                .isEqualTo("502");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from resolve_retries where next_attempt_at > created_at",
+                Integer.class)).isEqualTo(1);
+    }
+
+    private void makeRetriesDue() {
+        jdbcTemplate.update("update resolve_retries set next_attempt_at = next_attempt_at - interval '1 day'");
+    }
+
+    private int countRetries() {
+        return jdbcTemplate.queryForObject("select count(*) from resolve_retries", Integer.class);
+    }
+}
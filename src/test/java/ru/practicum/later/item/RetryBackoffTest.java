@@ -0,0 +1,38 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBackoffTest {
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final RetryBackoff backoff = new RetryBackoff(30, 3600, 5);
+
+    @Test
+    void nextAttemptAt_doublesDelayWithJitter() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(delay(1)).isBetween(Duration.ofSeconds(15), Duration.ofSeconds(30));
+            assertThat(delay(3)).isBetween(Duration.ofSeconds(60), Duration.ofSeconds(120));
+        }
+    }
+
+    @Test
+    void nextAttemptAt_manyAttempts_isCappedByMaxDelay() {
+        assertThat(delay(10)).isBetween(Duration.ofMinutes(30), Duration.ofHours(1));
+        assertThat(delay(1000)).isBetween(Duration.ofMinutes(30), Duration.ofHours(1));
+    }
+
+    @Test
+    void isExhausted_afterMaxAttempts() {
+        assertThat(backoff.isExhausted(4)).isFalse();
+        assertThat(backoff.isExhausted(5)).isTrue();
+    }
+
+    private Duration delay(int attempts) {
+        return Duration.between(NOW, backoff.nextAttemptAt(NOW, attempts));
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SavedUrlFilterTest {
+    private final ItemRepository repository = Mockito.mock(ItemRepository.class);
+    private final AtomicLong now = new AtomicLong();
+    private final SavedUrlFilter filter = new SavedUrlFilter(repository, now::get, 0.01, 60, 2);
+
+    @Test
+    void mightContain_loadsFilterOnceUntilItExpires() {
+        Mockito.when(repository.findUrlsByUserId(1L))
+                .thenReturn(List.of("https://example.com/a"))
+                .thenReturn(List.of("https://example.com/a", "https://example.com/b"));
+
+        assertThat(filter.mightContain(1L, "https://example.com/a")).isTrue();
+        assertThat(filter.mightContain(1L, "https://example.com/b")).isFalse();
+        Mockito.verify(repository, Mockito.times(1)).findUrlsByUserId(1L);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertThat(filter.mightContain(1L, "https://example.com/b")).isTrue();
+        Mockito.verify(repository, Mockito.times(2)).findUrlsByUserId(1L);
+    }
+
+    @Test
+    void urlSaved_addsUrlToLoadedFilter() {
+        Mockito.when(repository.findUrlsByUserId(1L)).thenReturn(List.of());
+        assertThat(filter.mightContain(1L, "https://example.com/a")).isFalse();
+
+        filter.urlSaved(1L, "https://example.com/a");
+
+        assertThat(filter.mightContain(1L, "https://example.com/a")).isTrue();
+        Mockito.verify(repository, Mockito.times(1)).findUrlsByUserId(1L);
+    }
+
+    @Test
+    void mightContain_evictsLeastRecentlyUsedUser() {
+        Mockito.when(repository.findUrlsByUserId(Mockito.anyLong())).thenReturn(List.of());
+
+        filter.mightContain(1L, "https://example.com/a");
+        filter.mightContain(2L, "https://example.com/a");
+        filter.mightContain(1L, "https://example.com/a");
+        filter.mightContain(3L, "https://example.com/a");
+        filter.mightContain(1L, "https://example.com/a");
+        filter.mightContain(2L, "https://example.com/a");
+
+        Mockito.verify(repository, Mockito.times(1)).findUrlsByUserId(1L);
+        Mockito.verify(repository, Mockito.times(2)).findUrlsByUserId(2L);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlBloomFilterTest {
+
+    @Test
+    void mightContain_returnsTrueForEveryAddedUrl() {
+        UrlBloomFilter filter = new UrlBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("http://example.com/" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("http://example.com/" + i)).isTrue();
+        }
+        assertThat(filter.isOverfilled()).isFalse();
+    }
+
+    @Test
+    void mightContain_falsePositiveRateStaysNearConfigured() {
+        UrlBloomFilter filter = new UrlBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("http://example.com/" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("http://other.org/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void isOverfilled_afterMoreInsertionsThanExpected() {
+        UrlBloomFilter filter = new UrlBloomFilter(2, 0.01);
+        filter.put("a");
+        filter.put("b");
+        filter.put("c");
+
+        assertThat(filter.isOverfilled()).isTrue();
+    }
+}
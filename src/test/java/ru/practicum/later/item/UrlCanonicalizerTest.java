@@ -0,0 +1,62 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(
+            new String[]{"utm_*", "fbclid", "gclid"}, true, true);
+
+    @Test
+    void canonicalize_lowercasesSchemeAndHostButNotPath() {
+        assertThat(canonicalizer.canonicalize("HTTPS://Example.COM/Some/Path"))
+                .isEqualTo("https://example.com/Some/Path");
+    }
+
+    @Test
+    void canonicalize_dropsDefaultPortOnly() {
+        assertThat(canonicalizer.canonicalize("http://example.com:80/a")).isEqualTo("http://example.com/a");
+        assertThat(canonicalizer.canonicalize("https://example.com:443/a")).isEqualTo("https://example.com/a");
+        assertThat(canonicalizer.canonicalize("http://example.com:8080/a")).isEqualTo("http://example.com:8080/a");
+    }
+
+    @Test
+    void canonicalize_dropsFragmentAndTrailingSlash() {
+        assertThat(canonicalizer.canonicalize("http://example.com/a/#section")).isEqualTo("http://example.com/a");
+        assertThat(canonicalizer.canonicalize("http://example.com/")).isEqualTo("http://example.com");
+    }
+
+    @Test
+    void canonicalize_dropsTrackingParamsAndKeepsOthersInOrder() {
+        assertThat(canonicalizer.canonicalize(
+                "http://example.com/a?b=2&utm_source=x&UTM_Medium=y&a=1&fbclid=abc"))
+                .isEqualTo("http://example.com/a?b=2&a=1");
+        assertThat(canonicalizer.canonicalize("http://example.com/a?utm_source=x&gclid=1"))
+                .isEqualTo("http://example.com/a");
+    }
+
+    @Test
+    void canonicalize_keepsEncodingOfPathAndQuery() {
+        assertThat(canonicalizer.canonicalize("http://example.com/%D0%B0?q=%20x"))
+                .isEqualTo("http://example.com/%D0%B0?q=%20x");
+    }
+
+    @Test
+    void canonicalize_leavesOtherSchemesAndMalformedUrlsAsIs() {
+        assertThat(canonicalizer.canonicalize("file:/image.jpg")).isEqualTo("file:/image.jpg");
+        assertThat(canonicalizer.canonicalize("mailto:someone@example.com")).isEqualTo("mailto:someone@example.com");
+        assertThat(canonicalizer.canonicalize("https://www.test.com/ java-%%$^&& iuyi"))
+                .isEqualTo("https://www.test.com/ java-%%$^&& iuyi");
+    }
+
+    @Test
+    void canonicalize_withFragmentsAndSlashesKept_leavesThem() {
+        UrlCanonicalizer keeping = new UrlCanonicalizer(new String[0], false, false);
+
+        assertThat(keeping.canonicalize("http://Example.com#top")).isEqualTo("http://example.com/#top");
+        assertThat(keeping.canonicalize("http://example.com/a/?utm_source=x"))
+                .isEqualTo("http://example.com/a/?utm_source=x");
+    }
+}
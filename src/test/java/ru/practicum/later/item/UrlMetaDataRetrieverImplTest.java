@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -13,10 +14,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.net.URI;
+import java.net.UnknownHostException;
 import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -70,6 +73,16 @@ class UrlMetaDataRetrieverImplTest {
         assertThrows(ItemRetrieverException.class, () -> retriever.retrieve(VALID_IMAGE_URL));
     }
 
+    @SneakyThrows
+    @Test
+    void retrieve_whenHostCannotBeResolved_thenThrowsTransientItemRetrieverException() {
+        Mockito
+                .when(client.send(getRequest(VALID_IMAGE_URL, "HEAD"), HttpResponse.BodyHandlers.discarding()))
+                .thenThrow(UnknownHostException.class);
+
+        assertThrows(TransientItemRetrieverException.class, () -> retriever.retrieve(VALID_IMAGE_URL));
+    }
+
     @SneakyThrows
     @ParameterizedTest
     @MethodSource("getInvalidStatus")
@@ -102,7 +115,7 @@ class UrlMetaDataRetrieverImplTest {
                 .thenReturn(getHEADResponse(mimeType, VALID_TEXT_URL, 200));
 
         Mockito
-                .when(client.send(getRequest(VALID_TEXT_URL, "GET"), HttpResponse.BodyHandlers.ofString()))
+                .when(client.send(getRequest(VALID_TEXT_URL, "GET"), HttpResponse.BodyHandlers.ofByteArray()))
                 .thenReturn(getTextResponse());
 
         UrlMetaDataRetriever.UrlMetadata urlMetadata = retriever.retrieve(VALID_TEXT_URL);
@@ -150,6 +163,20 @@ class UrlMetaDataRetrieverImplTest {
         assertThat(urlMetadata.isHasVideo()).isFalse();
     }
 
+    @SneakyThrows
+    @Test
+    void revalidate_whenNotModified_returnsEmptyWithoutBody() {
+        Mockito
+                .when(client.send(ArgumentMatchers.argThat(request ->
+                                request.method().equals("HEAD")
+                                        && request.headers().firstValue("If-None-Match").orElse("").equals("\"v1\"")),
+                        ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+                .thenReturn(getHEADResponse("text/html", VALID_TEXT_URL, 304));
+
+        assertThat(retriever.revalidate(VALID_TEXT_URL, "\"v1\"", null)).isEmpty();
+        Mockito.verify(client, Mockito.times(1)).send(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
     @Test
     void retrieve_whenInvalidUrl_throwsItemRetrieverException() {
         assertThrows(ItemRetrieverException.class, () -> retriever.retrieve(INVALID_URL));
@@ -164,8 +191,8 @@ class UrlMetaDataRetrieverImplTest {
                 .build();
     }
 
-    private HttpResponse<String> getTextResponse() {
-        return new HttpResponse<String>() {
+    private HttpResponse<byte[]> getTextResponse() {
+        return new HttpResponse<byte[]>() {
             @Override
             public int statusCode() {
                 return 200;
@@ -177,7 +204,7 @@ class UrlMetaDataRetrieverImplTest {
             }
 
             @Override
-            public Optional<HttpResponse<String>> previousResponse() {
+            public Optional<HttpResponse<byte[]>> previousResponse() {
                 return Optional.empty();
             }
 
@@ -187,8 +214,8 @@ class UrlMetaDataRetrieverImplTest {
             }
 
             @Override
-            public String body() {
-                return HTML_NO_VIDEO_NO_IMAGES;
+            public byte[] body() {
+                return HTML_NO_VIDEO_NO_IMAGES.getBytes(StandardCharsets.UTF_8);
             }
 
             @Override
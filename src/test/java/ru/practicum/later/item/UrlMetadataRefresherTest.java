@@ -0,0 +1,100 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.item.dto.ItemDto;
+import ru.practicum.later.item.model.Item;
+import ru.practicum.later.user.User;
+import ru.practicum.later.user.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedItemOfUser;
+import static ru.practicum.later.testutil.TestDataProvider.getUnsavedUser;
+
+class UrlMetadataRefresherTest extends BaseIntegTest {
+    private static final Instant LONG_AGO = Instant.now().minus(30, ChronoUnit.DAYS);
+
+    @Autowired
+    private UrlMetadataRefresher refresher;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private UrlMetaDataRetriever urlMetaDataRetriever;
+
+    @Test
+    void refresh_changedPage_updatesMetadataAndChangeFeed() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = getUnsavedItemOfUser(user, "text", "Old title", "http://test.com/changed", LONG_AGO, true);
+        item.getPage().setEtag("\"v1\"");
+        item = itemRepository.save(item);
+        long cursor = itemService.getChanges(user.getId(), 0, 10).getCursor();
+        Mockito
+                .when(urlMetaDataRetriever.revalidate("http://test.com/changed", "\"v1\"", null))
+                .thenReturn(Optional.of(UrlMetaDataRetrieverImpl.UrlMetadataImpl.builder()
+                        .normalUrl("http://test.com/changed")
+                        .resolvedUrl("http://test.com/changed")
+                        .mimeType("text")
+                        .title("New title")
+                        .dateResolved(Instant.now())
+                        .etag("\"v2\"")
+                        .ttl(Duration.ofDays(2))
+                        .build()));
+
+        refresher.refresh();
+
+        List<ItemDto> changed = itemService.getChanges(user.getId(), cursor, 10).getChanged();
+        assertThat(changed).extracting(ItemDto::getId).containsExactly(item.getId());
+        assertThat(changed.get(0).getTitle()).isEqualTo("New title");
+        assertThat(jdbcTemplate.queryForObject("select etag from urls", String.class)).isEqualTo("\"v2\"");
+        Timestamp refreshAfter = jdbcTemplate.queryForObject("select refresh_after from urls", Timestamp.class);
+        assertThat(refreshAfter.toInstant()).isBetween(Instant.now().plus(Duration.ofHours(47)),
+                Instant.now().plus(Duration.ofHours(48)));
+    }
+
+    @Test
+    void refresh_notModifiedPage_onlyMovesDateResolved() {
+        User user = userRepository.save(getUnsavedUser());
+        Item item = getUnsavedItemOfUser(user, "text", "Title", "http://test.com/same", LONG_AGO, true);
+        item.getPage().setEtag("\"v1\"");
+        itemRepository.save(item);
+        long cursor = itemService.getChanges(user.getId(), 0, 10).getCursor();
+        Mockito
+                .when(urlMetaDataRetriever.revalidate("http://test.com/same", "\"v1\"", null))
+                .thenReturn(Optional.empty());
+
+        refresher.refresh();
+
+        assertThat(itemService.getChanges(user.getId(), cursor, 10).getChanged()).isEmpty();
+        assertThat(itemService.getItems(user.getId()).get(0).getTitle()).isEqualTo("Title");
+        Timestamp dateResolved = jdbcTemplate.queryForObject("select date_resolved from urls", Timestamp.class);
+        assertThat(dateResolved.toInstant()).isAfter(LONG_AGO.plus(1, ChronoUnit.DAYS));
+    }
+
+    @Test
+    void refresh_freshPage_isNotRequested() {
+        User user = userRepository.save(getUnsavedUser());
+        itemRepository.save(getUnsavedItemOfUser(user, "text", "Title", "http://test.com/fresh", Instant.now(), true));
+
+        refresher.refresh();
+
+        Mockito.verify(urlMetaDataRetriever, Mockito.never())
+                .revalidate(Mockito.anyString(), Mockito.any(), Mockito.any());
+    }
+}
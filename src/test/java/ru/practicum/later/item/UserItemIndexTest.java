@@ -0,0 +1,72 @@
+package ru.practicum.later.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import ru.practicum.later.item.dto.GetItemRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+class UserItemIndexTest {
+
+    private UserItemIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserItemIndex();
+        index.put(1L, true, "text", Set.of("tag1", "tag2"));
+        index.put(2L, false, "image", Set.of("tag2"));
+        index.put(3L, true, "video", Set.of("tag3"));
+    }
+
+    @Test
+    void select_whenSeveralTags_returnsUnionOfTags() {
+        List<Long> ids = select(GetItemRequest.State.ALL, GetItemRequest.ContentType.ALL, List.of("tag1", "tag3"));
+
+        assertThat(ids).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void select_whenStateAndContentType_intersectsWithTags() {
+        assertThat(select(GetItemRequest.State.UNREAD, GetItemRequest.ContentType.ALL, List.of("tag2")))
+                .containsExactly(1L);
+        assertThat(select(GetItemRequest.State.READ, GetItemRequest.ContentType.IMAGE, List.of("tag2")))
+                .containsExactly(2L);
+        assertThat(select(GetItemRequest.State.ALL, GetItemRequest.ContentType.VIDEO, List.of("tag2")))
+                .isEmpty();
+    }
+
+    @Test
+    void select_whenUnknownTag_returnsEmpty() {
+        assertThat(select(GetItemRequest.State.ALL, GetItemRequest.ContentType.ALL, List.of("unknown")))
+                .isEmpty();
+    }
+
+    @Test
+    void put_whenItemChanged_replacesPreviousState() {
+        index.put(1L, false, "text", Set.of("tag3"));
+
+        assertThat(select(GetItemRequest.State.ALL, GetItemRequest.ContentType.ALL, List.of("tag1"))).isEmpty();
+        assertThat(select(GetItemRequest.State.READ, GetItemRequest.ContentType.ALL, List.of("tag3")))
+                .containsExactly(1L);
+    }
+
+    @Test
+    void remove_removesItemFromAllBitmaps() {
+        index.remove(2L);
+
+        assertThat(select(GetItemRequest.State.ALL, GetItemRequest.ContentType.ALL, List.of("tag2")))
+                .containsExactly(1L);
+    }
+
+    private List<Long> select(GetItemRequest.State state, GetItemRequest.ContentType contentType, List<String> tags) {
+        Roaring64NavigableMap bitmap = index.select(state, contentType, tags);
+        List<Long> ids = new ArrayList<>();
+        bitmap.forEach(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.practicum.later.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.later.BaseIntegTest;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OutboxRelayTest extends BaseIntegTest {
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @MockBean
+    private OutboxSubscriber subscriber;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relay_deliversRecordedEventsToSubscribers() {
+        transactionTemplate.executeWithoutResult(status ->
+                outboxWriter.record(OutboxEventType.ITEM_DELETED, 42L, 7L, Map.of("id", 42L)));
+
+        outboxRelay.relay();
+
+        ArgumentCaptor<List<DomainEvent>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(subscriber, Mockito.timeout(5000)).onEvents(captor.capture());
+        DomainEvent event = captor.getValue().get(0);
+        assertThat(event.getType()).isEqualTo(OutboxEventType.ITEM_DELETED);
+        assertThat(event.getAggregateType()).isEqualTo("item");
+        assertThat(event.getAggregateId()).isEqualTo(42L);
+        assertThat(event.getUserId()).isEqualTo(7L);
+        assertThat(event.getPayload()).isEqualTo("{\"id\":42}");
+    }
+
+    @Test
+    void relay_whenSubscriberFails_redeliversBatch() {
+        Mockito.doThrow(new IllegalStateException("subscriber is down"))
+                .doNothing()
+                .when(subscriber).onEvents(Mockito.anyList());
+        transactionTemplate.executeWithoutResult(status ->
+                outboxWriter.record(OutboxEventType.ITEM_DELETED, 43L, 7L, Map.of("id", 43L)));
+
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        Mockito.verify(subscriber, Mockito.timeout(5000).atLeast(2)).onEvents(Mockito.argThat(events ->
+                events.size() == 1 && events.get(0).getAggregateId() == 43L));
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void record_withoutTransaction_throws() {
+        assertThrows(RuntimeException.class,
+                () -> outboxWriter.record(OutboxEventType.ITEM_DELETED, 1L, 1L, Map.of("id", 1L)));
+    }
+}
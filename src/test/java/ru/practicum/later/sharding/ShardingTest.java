@@ -0,0 +1,234 @@
+package ru.practicum.later.sharding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.practicum.later.BaseIntegTest;
+import ru.practicum.later.item.UrlMetaDataRetriever;
+import ru.practicum.later.user.UserDto;
+import ru.practicum.later.user.UserState;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.practicum.later.testutil.TestDataProvider.getAddItemRequest;
+import static ru.practicum.later.testutil.TestDataProvider.getUrlMetadata;
+
+// Два отдельных контейнера - шард 0 (он же карта шардов) и шард 1.
+// Новые пользователи создаются на шарде 1, кэш карты шардов выключен,
+// чтобы перенос не ждал.
+class ShardingTest extends BaseIntegTest {
+
+    static PostgreSQLContainer<?> shard0 = new PostgreSQLContainer<>("postgres:15.3");
+    static PostgreSQLContainer<?> shard1 = new PostgreSQLContainer<>("postgres:15.3");
+
+    @DynamicPropertySource
+    static void shardProperties(DynamicPropertyRegistry registry) {
+        shard0.start();
+        shard1.start();
+        registry.add("spring.datasource.url", shard0::getJdbcUrl);
+        registry.add("spring.datasource.username", shard0::getUsername);
+        registry.add("spring.datasource.password", shard0::getPassword);
+        registry.add("later.sharding.enabled", () -> "true");
+        registry.add("later.sharding.shards.1.url", shard1::getJdbcUrl);
+        registry.add("later.sharding.shards.1.username", shard1::getUsername);
+        registry.add("later.sharding.shards.1.password", shard1::getPassword);
+        registry.add("later.sharding.new-user-shards", () -> "1");
+        registry.add("later.sharding.map-cache-ttl-ms", () -> "0");
+    }
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private ObjectMapper mapper;
+    @Autowired
+    private UserShardMover mover;
+    @Autowired
+    private Shards shards;
+    @MockBean
+    private UrlMetaDataRetriever urlMetaDataRetriever;
+
+    private JdbcTemplate shard0Jdbc;
+    private JdbcTemplate shard1Jdbc;
+
+    @BeforeEach
+    void setUp() {
+        shard0Jdbc = jdbc(shard0);
+        shard1Jdbc = jdbc(shard1);
+        Mockito.when(urlMetaDataRetriever.retrieve(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> getUrlMetadata(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String table : new String[]{"resolve_retries", "tags", "item_notes", "items", "urls", "item_tombstones", "item_list_versions", "users", "outbox_events"}) {
+            shard1Jdbc.update("delete from " + table);
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void newUserAndTheirItems_areStoredOnTheirShard() {
+        long userId = createUser("one@email.com");
+        addItem(userId, "http://example.com/one");
+
+        assertThat(count(shard1Jdbc, "select count(*) from items where user_id = ?", userId)).isEqualTo(1);
+        assertThat(count(shard0Jdbc, "select count(*) from items where user_id = ?", userId)).isZero();
+        assertThat(count(shard0Jdbc, "select count(*) from user_shards where user_id = ? and shard_id = 1", userId))
+                .isEqualTo(1);
+        assertThat(Math.floorMod(userId, ShardInitializer.MAX_SHARDS)).isEqualTo(1);
+
+        mvc.perform(get("/items").header("X-Later-User-Id", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].tags", contains("tag")));
+    }
+
+    @SneakyThrows
+    @Test
+    void movedUser_isServedFromTargetShard() {
+        long userId = createUser("moved@email.com");
+        addItem(userId, "http://example.com/moved");
+
+        mover.move(userId, 0);
+
+        assertThat(count(shard0Jdbc, "select count(*) from tags where user_id = ?", userId)).isEqualTo(1);
+        assertThat(count(shard1Jdbc, "select count(*) from users where id = ?", userId)).isZero();
+        assertThat(count(shard1Jdbc, "select count(*) from items where user_id = ?", userId)).isZero();
+
+        mvc.perform(get("/items").header("X-Later-User-Id", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].tags", contains("tag")));
+        addItem(userId, "http://example.com/after-move");
+        assertThat(count(shard0Jdbc, "select count(*) from items where user_id = ?", userId)).isEqualTo(2);
+    }
+
+    @SneakyThrows
+    @Test
+    void userList_isGatheredFromAllShards() {
+        long first = createUser("first@email.com");
+        long second = createUser("second@email.com");
+        mover.move(first, 0);
+
+        mvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains((int) first, (int) second)));
+    }
+
+    @SneakyThrows
+    @Test
+    void userList_isNotBlockedByBackgroundTasksOnAllShards() {
+        long userId = createUser("first@email.com");
+        ExecutorService background = Executors.newFixedThreadPool(3);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> fetch = background.submit(() -> shards.onEachShard(() -> {
+                started.countDown();
+                await(release);
+                return null;
+            }, background));
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+            mvc.perform(get("/users"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[*].id", contains((int) userId)));
+
+            release.countDown();
+            fetch.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            background.shutdownNow();
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void itemsByLastName_areGatheredFromAllShardsInSortOrder() {
+        long first = createUser("first@email.com");
+        long second = createUser("second@email.com");
+        addItem(first, "http://example.com/a");
+        addItem(second, "http://example.com/b");
+        addItem(first, "http://example.com/c");
+        mover.move(first, 0);
+
+        mvc.perform(get("/items")
+                        .param("lastName", "La")
+                        .param("sort", "site")
+                        .param("from", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].resolvedUrl", contains("http://example.com/b", "http://example.com/c")));
+    }
+
+    @Test
+    void backgroundWrites_areAllowedOnlyOnShardOfUserThatIsNotMoving() {
+        long userId = createUser("writable@email.com");
+
+        assertThat(shards.onEachShard(() -> shards.isWritable(userId))).containsExactly(false, true);
+
+        shard0Jdbc.update("update user_shards set moving = true where user_id = ?", userId);
+        assertThat(shards.onEachShard(() -> shards.isWritable(userId))).containsExactly(false, false);
+    }
+
+    @SneakyThrows
+    private long createUser(String email) {
+        UserDto user = new UserDto(null, email, "First", "Last", null, UserState.ACTIVE);
+        String body = mvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return mapper.readValue(body, UserDto.class).getId();
+    }
+
+    @SneakyThrows
+    private void addItem(long userId, String url) {
+        mvc.perform(post("/items")
+                        .header("X-Later-User-Id", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(getAddItemRequest(url, Set.of("tag")))))
+                .andExpect(status().isOk());
+    }
+
+    @SneakyThrows
+    private static void await(CountDownLatch latch) {
+        latch.await();
+    }
+
+    private static long count(JdbcTemplate jdbc, String sql, Object... args) {
+        return jdbc.queryForObject(sql, Long.class, args);
+    }
+
+    private static JdbcTemplate jdbc(PostgreSQLContainer<?> container) {
+        return new JdbcTemplate(new DriverManagerDataSource(
+                container.getJdbcUrl(), container.getUsername(), container.getPassword()));
+    }
+}
@@ -4,10 +4,12 @@ import ru.practicum.later.item.UrlMetaDataRetriever;
 import ru.practicum.later.item.UrlMetaDataRetrieverImpl;
 import ru.practicum.later.item.dto.AddItemRequest;
 import ru.practicum.later.item.model.Item;
+import ru.practicum.later.item.model.WebPage;
 import ru.practicum.later.user.User;
 import ru.practicum.later.user.UserState;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Set;
 
 public class TestDataProvider {
@@ -61,26 +63,27 @@ public class TestDataProvider {
                                       boolean unread) {
         return new Item()
                 .setUser(user)
-                .setResolvedUrl(resolvedUrl)
-                .setMimeType(mime)
-                .setTitle(title)
-                .setHasImage(false)
-                .setHasVideo(false)
+                .setPage(getUnsavedPage(resolvedUrl, mime, title, dateResolved))
                 .setUnread(unread)
-                .setDateResolved(dateResolved)
                 .setTags(Set.of("tag1", "tag2"));
     }
 
     public static Item getUnsavedItemOfUser(User user) {
         return new Item()
                 .setUser(user)
-                .setResolvedUrl("http://resolved.com/text.html")
-                .setMimeType("text")
-                .setTitle("Title")
+                .setPage(getUnsavedPage("http://resolved.com/text.html", "text", "Title", DATE_RESOLVED))
+                .setTags(Set.of("tag1", "tag2"));
+    }
+
+    public static WebPage getUnsavedPage(String resolvedUrl, String mime, String title, Instant dateResolved) {
+        return new WebPage()
+                .setResolvedUrl(resolvedUrl)
+                .setMimeType(mime)
+                .setTitle(title)
                 .setHasImage(false)
                 .setHasVideo(false)
-                .setDateResolved(DATE_RESOLVED)
-                .setTags(Set.of("tag1", "tag2"));
+                .setDateResolved(dateResolved)
+                .setRefreshAfter(dateResolved.plus(7, ChronoUnit.DAYS));
     }
 
     public static User getUnsavedUser() {
@@ -9,8 +9,10 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.later.common.TimestampFormat;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
@@ -34,7 +36,7 @@ class UserControllerTest  {
             "john.doe@mail.com",
             "John",
             "Doe",
-            "2022.07.03 19:55:00",
+            Instant.parse("2022-07-03T19:55:00Z"),
             UserState.ACTIVE);
 
     @BeforeEach
@@ -44,7 +46,7 @@ class UserControllerTest  {
                 "john.doe@mail.com",
                 "John",
                 "Doe",
-                "2022.07.03 19:55:00",
+                Instant.parse("2022-07-03T19:55:00Z"),
                 UserState.ACTIVE);
     }
 
@@ -62,6 +64,22 @@ class UserControllerTest  {
                 .andExpect(jsonPath("$.id", is(userDto.getId()), Long.class))
                 .andExpect(jsonPath("$.firstName", is(userDto.getFirstName())))
                 .andExpect(jsonPath("$.lastName", is(userDto.getLastName())))
-                .andExpect(jsonPath("$.email", is(userDto.getEmail())));
+                .andExpect(jsonPath("$.email", is(userDto.getEmail())))
+                .andExpect(jsonPath("$.registrationDate", is("2022-07-03T19:55:00Z")));
+    }
+
+    @Test
+    void saveNewUser_whenEpochMillisRequested_returnsNumericDate() throws Exception {
+        when(userService.saveUser(any()))
+                .thenReturn(userDto);
+
+        mvc.perform(post("/users")
+                        .header(TimestampFormat.HEADER, "epoch-millis")
+                        .content(mapper.writeValueAsString(userDto))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.registrationDate", is(userDto.getRegistrationDate().toEpochMilli()), Long.class));
     }
 }
\ No newline at end of file
@@ -45,7 +45,7 @@ class UserServiceImplTest extends BaseIntegTest {
     }
 
     @Test
-    void getAllUsers() {
+    void getUsers() {
         // given
         List<UserDto> sourceUsers = List.of(
                 makeUserDto("ivan@email", "Ivan", "Ivanov"),
@@ -60,7 +60,7 @@ class UserServiceImplTest extends BaseIntegTest {
         em.flush();
 
         // when
-        List<UserDto> targetUsers = service.getAllUsers();
+        List<UserDto> targetUsers = service.getUsers(0, 20, null, null);
 
         // then
         assertThat(targetUsers, hasSize(sourceUsers.size()));
@@ -74,6 +74,39 @@ class UserServiceImplTest extends BaseIntegTest {
         }
     }
 
+    @Test
+    void getUsers_returnsNextPageAfterGivenId() {
+        List<User> users = List.of(
+                UserMapper.mapToNewUser(makeUserDto("ivan@email", "Ivan", "Ivanov")),
+                UserMapper.mapToNewUser(makeUserDto("petr@email", "Petr", "Petrov")),
+                UserMapper.mapToNewUser(makeUserDto("vasilii@email", "Vasilii", "Vasiliev"))
+        );
+        users.forEach(em::persist);
+        em.flush();
+
+        List<UserDto> firstPage = service.getUsers(0, 2, null, null);
+        List<UserDto> secondPage = service.getUsers(firstPage.get(1).getId(), 2, null, null);
+
+        assertThat(firstPage, contains(
+                hasProperty("id", equalTo(users.get(0).getId())),
+                hasProperty("id", equalTo(users.get(1).getId()))));
+        assertThat(secondPage, contains(hasProperty("id", equalTo(users.get(2).getId()))));
+    }
+
+    @Test
+    void getUsers_whenEmailAndStateGiven_returnsMatchingUsers() {
+        User ivan = UserMapper.mapToNewUser(makeUserDto("Ivan@Email", "Ivan", "Ivanov"));
+        User petr = UserMapper.mapToNewUser(makeUserDto("petr@email", "Petr", "Petrov"));
+        User blocked = UserMapper.mapToNewUser(makeUserDto("ivan.blocked@email", "Ivan", "Blocked"));
+        blocked.setState(UserState.BLOCKED);
+        List.of(ivan, petr, blocked).forEach(em::persist);
+        em.flush();
+
+        List<UserDto> found = service.getUsers(0, 20, "IVAN", UserState.ACTIVE);
+
+        assertThat(found, contains(hasProperty("id", equalTo(ivan.getId()))));
+    }
+
     private UserDto makeUserDto(String email, String firstName, String lastName) {
         UserDto dto = new UserDto();
         dto.setEmail(email);
@@ -1,4 +1,10 @@
+DELETE FROM resolve_retries;
 DELETE FROM tags;
 DELETE FROM item_notes;
 DELETE FROM items;
+DELETE FROM urls;
+DELETE FROM item_tombstones;
+DELETE FROM item_list_versions;
 DELETE FROM users;
+DELETE FROM outbox_events;
+DELETE FROM user_shards;